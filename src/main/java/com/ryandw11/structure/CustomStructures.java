@@ -7,6 +7,7 @@ import com.ryandw11.structure.citizens.CitizensNpcHook;
 import com.ryandw11.structure.commands.SCommand;
 import com.ryandw11.structure.commands.SCommandTab;
 import com.ryandw11.structure.ignoreblocks.*;
+import com.ryandw11.structure.io.ClipboardCache;
 import com.ryandw11.structure.listener.ChunkLoad;
 import com.ryandw11.structure.listener.PlayerJoin;
 import com.ryandw11.structure.loottables.LootTablesHandler;
@@ -15,6 +16,8 @@ import com.ryandw11.structure.mythicalmobs.MMDisabled;
 import com.ryandw11.structure.mythicalmobs.MMEnabled;
 import com.ryandw11.structure.mythicalmobs.MythicalMobHook;
 import com.ryandw11.structure.structure.StructureHandler;
+import com.ryandw11.structure.threading.PasteScheduler;
+import com.ryandw11.structure.threading.SpawnQueue;
 import com.ryandw11.structure.utils.SpawnYConversion;
 import me.clip.placeholderapi.PlaceholderAPI;
 import org.apache.commons.io.FileUtils;
@@ -55,6 +58,9 @@ public class CustomStructures extends JavaPlugin {
     private CustomItemManager customItemManager;
     private IgnoreBlocks blockIgnoreManager;
     private AddonHandler addonHandler;
+    private ClipboardCache clipboardCache;
+    private PasteScheduler pasteScheduler;
+    private SpawnQueue spawnQueue;
 
     private Metrics metrics;
 
@@ -65,7 +71,7 @@ public class CustomStructures extends JavaPlugin {
     /**
      * The current version of the compiled structure format.
      */
-    public static final int COMPILED_STRUCT_VER = 1;
+    public static final int COMPILED_STRUCT_VER = 2;
 
     /**
      * The current version of the structure configuration format.
@@ -132,6 +138,13 @@ public class CustomStructures extends JavaPlugin {
         this.npcHandler = new NpcHandler(getDataFolder(), plugin);
         this.lootTablesHandler = new LootTablesHandler();
         this.addonHandler = new AddonHandler();
+        this.clipboardCache = new ClipboardCache(getConfig().getInt("schematicCacheSize", 32));
+        this.pasteScheduler = new PasteScheduler(this, getConfig().getLong("pasteTimeBudget", 10));
+        this.pasteScheduler.runTaskTimer(this, 1, 1);
+        this.spawnQueue = new SpawnQueue(this, getConfig().getLong("chunkEvaluationTimeBudget", 5),
+                getConfig().getInt("maxConcurrentSpawns", 2));
+        this.spawnQueue.setAsyncEvaluation(getConfig().getBoolean("asyncChunkEvaluation", false));
+        this.spawnQueue.runTaskTimer(this, 1, 1);
 
         // Run this after the loading of all plugins.
         Bukkit.getScheduler().scheduleSyncDelayedTask(this, () -> {
@@ -273,6 +286,13 @@ public class CustomStructures extends JavaPlugin {
         this.npcHandler.cleanUp();
         this.npcHandler = new NpcHandler(getDataFolder(), plugin);
         this.structureHandler.cleanup();
+        // The clipboard cache is created first so the structure handler can fill it.
+        this.clipboardCache = new ClipboardCache(getConfig().getInt("schematicCacheSize", 32));
+        // Pastes that are still in progress are kept, only the time budget changes.
+        this.pasteScheduler.setTimeBudget(getConfig().getLong("pasteTimeBudget", 10));
+        this.spawnQueue.setTimeBudget(getConfig().getLong("chunkEvaluationTimeBudget", 5));
+        this.spawnQueue.setAsyncEvaluation(getConfig().getBoolean("asyncChunkEvaluation", false));
+        this.spawnQueue.setMaxConcurrentSpawns(getConfig().getInt("maxConcurrentSpawns", 2));
         this.structureHandler = new StructureHandler(getConfig().getStringList("Structures"), this);
         this.lootTablesHandler = new LootTablesHandler();
     }
@@ -651,6 +671,33 @@ public class CustomStructures extends JavaPlugin {
         return addonHandler;
     }
 
+    /**
+     * Get the cache of decoded schematic clipboards.
+     *
+     * @return The clipboard cache.
+     */
+    public ClipboardCache getClipboardCache() {
+        return clipboardCache;
+    }
+
+    /**
+     * Get the scheduler that spreads the pasting of structures over multiple ticks.
+     *
+     * @return The paste scheduler.
+     */
+    public PasteScheduler getPasteScheduler() {
+        return pasteScheduler;
+    }
+
+    /**
+     * Get the queue that limits how many structures are spawned at the same time.
+     *
+     * @return The spawn queue.
+     */
+    public SpawnQueue getSpawnQueue() {
+        return spawnQueue;
+    }
+
     /**
      * Get the hook for mythical mobs.
      *
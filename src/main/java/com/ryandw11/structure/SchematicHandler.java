@@ -4,7 +4,8 @@ import com.ryandw11.structure.api.LootPopulateEvent;
 import com.ryandw11.structure.api.StructureSpawnEvent;
 import com.ryandw11.structure.api.holder.StructureSpawnHolder;
 import com.ryandw11.structure.bottomfill.BottomFillProvider;
-import com.ryandw11.structure.io.BlockTag;
+import com.ryandw11.structure.io.CompiledSchematic;
+import com.ryandw11.structure.io.SchematicCompiler;
 import com.ryandw11.structure.loottables.LootTable;
 import com.ryandw11.structure.loottables.LootTableType;
 import com.ryandw11.structure.structure.Structure;
@@ -12,6 +13,7 @@ import com.ryandw11.structure.structure.properties.AdvancedSubSchematics;
 import com.ryandw11.structure.structure.properties.MaskProperty;
 import com.ryandw11.structure.structure.properties.SubSchematics;
 import com.ryandw11.structure.structure.properties.schematics.SubSchematic;
+import com.ryandw11.structure.threading.PasteTask;
 import com.ryandw11.structure.utils.CSUtils;
 import com.ryandw11.structure.utils.NumberStylizer;
 import com.ryandw11.structure.utils.RandomCollection;
@@ -28,17 +30,11 @@ import com.sk89q.worldedit.function.mask.Mask;
 import com.sk89q.worldedit.function.mask.MaskIntersection;
 import com.sk89q.worldedit.function.mask.MaskUnion;
 import com.sk89q.worldedit.function.operation.ForwardExtentCopy;
-import com.sk89q.worldedit.function.operation.Operation;
 import com.sk89q.worldedit.function.operation.Operations;
 import com.sk89q.worldedit.math.BlockVector3;
 import com.sk89q.worldedit.math.transform.AffineTransform;
 import com.sk89q.worldedit.regions.CuboidRegion;
 import com.sk89q.worldedit.regions.Region;
-import com.sk89q.worldedit.session.ClipboardHolder;
-import me.ryandw11.ods.ObjectDataStructure;
-import me.ryandw11.ods.tags.IntTag;
-import me.ryandw11.ods.tags.ListTag;
-import me.ryandw11.ods.tags.ObjectTag;
 import org.bukkit.*;
 import org.bukkit.block.*;
 import org.bukkit.block.data.type.WallSign;
@@ -49,9 +45,9 @@ import org.bukkit.entity.Player;
 import org.bukkit.inventory.*;
 import org.bukkit.inventory.meta.ItemMeta;
 import org.bukkit.util.Vector;
+import org.jetbrains.annotations.Nullable;
 
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.util.*;
@@ -70,6 +66,7 @@ public class SchematicHandler {
 
     /**
      * Handles the actual pasting of the structure.
+     * <p>The schematic is queued in the paste scheduler, so it is pasted over the next few ticks.</p>
      * <p>This method is to be called on the main Server thread.</p>
      *
      * @param loc       - The location
@@ -82,13 +79,175 @@ public class SchematicHandler {
      */
     public void schemHandle(Location loc, String filename, boolean useAir, Structure structure, int iteration)
             throws IOException, WorldEditException {
+        schemHandle(loc, filename, useAir, structure, iteration, new StructurePieces(loc, () -> {
+        }));
+    }
+
+    /**
+     * Handles the actual pasting of a structure or one of its sub-schematics.
+     *
+     * @param loc       The location.
+     * @param filename  The file name. Ex: demo.schematic
+     * @param useAir    If air is to be used in the schematic.
+     * @param structure The structure that is getting spawned.
+     * @param iteration The number of iterations in a structure.
+     * @param pieces    The pieces of the structure. This piece must already be added to it, it is finished once
+     *                  its containers and signs are processed or once it failed to paste.
+     * @throws WorldEditException If world edit has a problem pasting the schematic.
+     * @throws IOException        If an error occurs during file reading.
+     */
+    private void schemHandle(Location loc, String filename, boolean useAir, Structure structure, int iteration,
+                             StructurePieces pieces) throws IOException, WorldEditException {
+        try {
+            if (!pasteSchematicFile(loc, filename, useAir, structure, iteration, pieces))
+                pieces.finish();
+        } catch (IOException | WorldEditException | RuntimeException ex) {
+            pieces.finish();
+            throw ex;
+        }
+    }
 
+    /**
+     * Read a schematic and queue it to be pasted.
+     *
+     * @param loc       The location.
+     * @param filename  The file name. Ex: demo.schematic
+     * @param useAir    If air is to be used in the schematic.
+     * @param structure The structure that is getting spawned.
+     * @param iteration The number of iterations in a structure.
+     * @param pieces    The pieces of the structure.
+     * @return If the schematic was queued to be pasted.
+     * @throws WorldEditException If world edit has a problem pasting the schematic.
+     * @throws IOException        If an error occurs during file reading.
+     */
+    private boolean pasteSchematicFile(Location loc, String filename, boolean useAir, Structure structure, int iteration,
+                                       StructurePieces pieces) throws IOException, WorldEditException {
         if (iteration > structure.getStructureLimitations().getIterationLimit()) {
             plugin.getLogger().severe("Critical Error: StackOverflow detected. Automatically terminating the spawning of the structure.");
             plugin.getLogger().severe("The structure '" + structure.getName() + "' has spawned too many sub structure via recursion.");
+            return false;
+        }
+
+        File schematicFile = getSchematicFile(filename, iteration);
+        if (schematicFile == null)
+            return false;
+
+        // The clipboard is shared with other pastes of the same schematic, it must not be modified.
+        Clipboard clipboard = plugin.getClipboardCache().getClipboard(schematicFile);
+
+        if (clipboard == null) {
+            plugin.getLogger().warning("Invalid schematic format for schematic " + filename + "!");
+            plugin.getLogger().warning("Please create a valid schematic using the in-game commands!");
+            return false;
+        }
+
+        double rotY = getRotation(structure, iteration);
+        Clipboard rotatedClipboard = getRotatedClipboard(schematicFile, rotY, structure, iteration);
+        Clipboard replacedClipboard = getReplacedClipboard(schematicFile, rotY, rotatedClipboard != null, structure);
+
+        CompiledSchematic compiledSchematic = iteration == 0 ? structure.getCompiledSchematicData() : null;
+
+        pasteSchematic(loc, clipboard, rotatedClipboard, replacedClipboard, rotY, compiledSchematic, filename, useAir,
+                structure, iteration, pieces);
+        return true;
+    }
+
+    /**
+     * Handles the schematic.
+     * <p>This method is to be called on the main Server thread.</p>
+     *
+     * @param loc       - The location
+     * @param filename  - The file name. Ex: demo.schematic
+     * @param useAir    - if air is to be used in the schematic
+     * @param structure - The structure that is getting spawned.
+     * @throws WorldEditException If world edit has a problem pasting the schematic.
+     * @throws IOException        If an error occurs during file reading.
+     */
+    public void schemHandle(Location loc, String filename, boolean useAir, Structure structure)
+            throws IOException, WorldEditException {
+        schemHandle(loc, filename, useAir, structure, 0);
+    }
+
+    /**
+     * Handles the schematic without reading or decoding any files on the main Server thread.
+     *
+     * <p>The schematic (and the compiled schematic if the structure has one) is read on an async worker
+     * thread. Only the paste itself is done on the main Server thread once the data is ready.</p>
+     * <p>This method is to be called on the main Server thread.</p>
+     *
+     * @param loc       - The location
+     * @param filename  - The file name. Ex: demo.schematic
+     * @param useAir    - if air is to be used in the schematic
+     * @param structure - The structure that is getting spawned.
+     */
+    public void schemHandleAsync(Location loc, String filename, boolean useAir, Structure structure) {
+        schemHandleAsync(loc, filename, useAir, structure, () -> {
+        });
+    }
+
+    /**
+     * Handles the schematic without reading or decoding any files on the main Server thread.
+     *
+     * <p>The schematic (and the compiled schematic if the structure has one) is read on an async worker
+     * thread. Only the paste itself is done on the main Server thread once the data is ready.</p>
+     * <p>This method is to be called on the main Server thread.</p>
+     *
+     * @param loc       - The location
+     * @param filename  - The file name. Ex: demo.schematic
+     * @param useAir    - if air is to be used in the schematic
+     * @param structure - The structure that is getting spawned.
+     * @param onSpawned - Ran on the main Server thread once the containers and signs of the structure and all of its
+     *                  sub-schematics are processed, or once the structure failed to spawn.
+     */
+    public void schemHandleAsync(Location loc, String filename, boolean useAir, Structure structure, Runnable onSpawned) {
+        File schematicFile = getSchematicFile(filename, 0);
+        if (schematicFile == null) {
+            onSpawned.run();
             return;
         }
 
+        double rotY = getRotation(structure, 0);
+
+        Bukkit.getScheduler().runTaskAsynchronously(plugin, () -> {
+            Clipboard clipboard;
+            Clipboard rotatedClipboard;
+            Clipboard replacedClipboard;
+            CompiledSchematic compiledSchematic;
+            try {
+                clipboard = plugin.getClipboardCache().getClipboard(schematicFile);
+                if (clipboard == null) {
+                    plugin.getLogger().warning("Invalid schematic format for schematic " + filename + "!");
+                    plugin.getLogger().warning("Please create a valid schematic using the in-game commands!");
+                    Bukkit.getScheduler().runTask(plugin, onSpawned);
+                    return;
+                }
+                rotatedClipboard = getRotatedClipboard(schematicFile, rotY, structure, 0);
+                replacedClipboard = getReplacedClipboard(schematicFile, rotY, rotatedClipboard != null, structure);
+                compiledSchematic = structure.getCompiledSchematicData();
+            } catch (Exception ex) {
+                plugin.getLogger().severe("An error was encountered when reading the schematic " + filename + "!");
+                if (plugin.isDebug())
+                    ex.printStackTrace();
+                Bukkit.getScheduler().runTask(plugin, onSpawned);
+                return;
+            }
+
+            CompiledSchematic finalCompiledSchematic = compiledSchematic;
+            Bukkit.getScheduler().runTask(plugin, () -> pasteSchematic(loc, clipboard, rotatedClipboard, replacedClipboard,
+                    rotY, finalCompiledSchematic, filename, useAir, structure, 0, new StructurePieces(loc, onSpawned)));
+        });
+    }
+
+    /**
+     * Get the file of a schematic and ensure that it exists.
+     *
+     * <p>If the schematic of a structure does not exist, the plugin is disabled to prevent damage to the server.</p>
+     *
+     * @param filename  The file name. Ex: demo.schematic
+     * @param iteration The number of iterations in a structure.
+     * @return The schematic file. (Null if the schematic of the structure does not exist).
+     */
+    private File getSchematicFile(String filename, int iteration) {
         File schematicFile = new File(plugin.getDataFolder() + "/schematics/" + filename);
         // Check to see if the schematic is a thing.
         if (!schematicFile.exists() && iteration == 0) {
@@ -102,69 +261,161 @@ public class SchematicHandler {
                     "If you need help look at the wiki: https://github.com/ryandw11/CustomStructures/wiki or contact Ryandw11 on spigot!");
             plugin.getLogger().warning("The plugin will now disable to prevent damage to the server.");
             Bukkit.getPluginManager().disablePlugin(plugin);
-            return;
+            return null;
         } else if (!schematicFile.exists()) {
             plugin.getLogger().warning("Error: The schematic " + filename + " does not exist!");
             throw new RuntimeException("Cannot find schematic file!");
         }
+        return schematicFile;
+    }
 
-        ClipboardFormat format = ClipboardFormats.findByFile(schematicFile);
-        Clipboard clipboard;
-
-        if (format == null) {
-            plugin.getLogger().warning("Invalid schematic format for schematic " + filename + "!");
-            plugin.getLogger().warning("Please create a valid schematic using the in-game commands!");
-            return;
-        }
-
-        try (ClipboardReader reader = format.getReader(new FileInputStream(schematicFile))) {
-            clipboard = reader.read();
-        }
-
-        ClipboardHolder ch = new ClipboardHolder(clipboard);
-        AffineTransform transform = new AffineTransform();
-
+    /**
+     * Get the rotation that a schematic should be pasted with.
+     *
+     * @param structure The structure that is getting spawned.
+     * @param iteration The number of iterations in a structure.
+     * @return The rotation in degrees.
+     */
+    private double getRotation(Structure structure, int iteration) {
         // Define rotation y with the default base rotation.
         double rotY = Math.toDegrees(structure.getBaseRotation());
 
-        // If random rotation is enabled, rotate the clipboard
+        // If random rotation is enabled, pick a random rotation.
         if (structure.getStructureProperties().isRandomRotation() && iteration == 0) {
             rotY = new Random().nextInt(4) * 90;
-            transform = transform.rotateY(rotY);
-            ch.setTransform(ch.getTransform().combine(transform));
         } else if (iteration != 0) {
             rotY = Math.toDegrees(structure.getSubSchemRotation());
+        }
+        return rotY;
+    }
+
+    /**
+     * Check if the schematic is rotated while it is pasted.
+     *
+     * @param structure The structure that is getting spawned.
+     * @param iteration The number of iterations in a structure.
+     * @return If the schematic is rotated while it is pasted.
+     */
+    private boolean isRotatedWhilePasting(Structure structure, int iteration) {
+        return structure.getStructureProperties().isRandomRotation() || iteration != 0;
+    }
+
+    /**
+     * Get the pre-rotated clipboard of a schematic from the clipboard cache.
+     *
+     * <p>This is only done if the structure has the cacheRotations property enabled, the schematic
+     * is rotated while pasting and the rotation is a multiple of 90 degrees.</p>
+     *
+     * @param schematicFile The schematic file.
+     * @param rotY          The rotation in degrees.
+     * @param structure     The structure that is getting spawned.
+     * @param iteration     The number of iterations in a structure.
+     * @return The pre-rotated clipboard. (Null if the clipboard should be rotated while pasting).
+     * @throws IOException If an error occurs during file reading.
+     */
+    @Nullable
+    private Clipboard getRotatedClipboard(File schematicFile, double rotY, Structure structure, int iteration) throws IOException {
+        if (!structure.getStructureProperties().isCachingRotations())
+            return null;
+        if (!isRotatedWhilePasting(structure, iteration))
+            return null;
+        int quarterTurns = getQuarterTurns(rotY);
+        if (quarterTurns == -1)
+            return null;
+        return plugin.getClipboardCache().getClipboard(schematicFile, quarterTurns);
+    }
+
+    /**
+     * Get the clipboard of a schematic with the 'replacement_blocks' of a structure applied from the clipboard cache.
+     *
+     * @param schematicFile The schematic file.
+     * @param rotY          The rotation in degrees.
+     * @param rotated       If the pre-rotated clipboard is being pasted.
+     * @param structure     The structure that is getting spawned.
+     * @return The clipboard with the blocks replaced. (Null if the structure does not replace any blocks).
+     * @throws IOException If an error occurs during file reading.
+     */
+    @Nullable
+    private Clipboard getReplacedClipboard(File schematicFile, double rotY, boolean rotated, Structure structure) throws IOException {
+        Map<Material, Material> replacements = structure.getStructureLimitations().getBlockReplacement();
+        if (replacements.isEmpty())
+            return null;
+        return plugin.getClipboardCache().getClipboard(schematicFile, rotated ? getQuarterTurns(rotY) : 0, replacements);
+    }
+
+    /**
+     * Paste an already loaded schematic.
+     * <p>The paste is queued in the {@link com.ryandw11.structure.threading.PasteScheduler}. The containers,
+     * signs, bottom fill and sub-schematics are only processed once the structure is fully pasted.</p>
+     * <p>This method is to be called on the main Server thread.</p>
+     *
+     * @param loc               The location.
+     * @param clipboard         The clipboard of the schematic.
+     * @param rotatedClipboard  The clipboard already rotated by rotY. (Null if the clipboard should be rotated while pasting).
+     * @param replacedClipboard The clipboard that is pasted with the blocks replaced. (Null if no blocks are replaced).
+     * @param rotY              The rotation in degrees.
+     * @param compiledSchematic The compiled schematic data. (Null if the schematic is not compiled).
+     * @param filename          The file name. Ex: demo.schematic
+     * @param useAir            If air is to be used in the schematic.
+     * @param structure         The structure that is getting spawned.
+     * @param iteration         The number of iterations in a structure.
+     * @param pieces            The pieces of the structure. This piece is finished once its containers and signs
+     *                          are processed, or once the paste failed.
+     */
+    private void pasteSchematic(Location loc, Clipboard clipboard, @Nullable Clipboard rotatedClipboard,
+                                @Nullable Clipboard replacedClipboard, double rotY,
+                                @Nullable CompiledSchematic compiledSchematic, String filename, boolean useAir,
+                                Structure structure, int iteration, StructurePieces pieces) {
+        // A pre-rotated clipboard is pasted as is, so its bounds do not need to be rotated either.
+        Clipboard sourceClipboard = rotatedClipboard != null ? rotatedClipboard : clipboard;
+        double pasteRotY = rotatedClipboard != null ? 0 : rotY;
+        // Replaced blocks are pasted from a copy of the clipboard, the masks still check the original blocks.
+        Clipboard pasteClipboard = replacedClipboard != null ? replacedClipboard : sourceClipboard;
+
+        AffineTransform transform = new AffineTransform();
+        if (rotatedClipboard == null && isRotatedWhilePasting(structure, iteration)) {
             transform = transform.rotateY(rotY);
-            ch.setTransform(ch.getTransform().combine(transform));
         }
 
-        // Paste the schematic
-        try (EditSession editSession = WorldEdit.getInstance().getEditSessionFactory()
-                .getEditSession(BukkitAdapter.adapt(Objects.requireNonNull(loc.getWorld())), -1)) {
-             /*
-                Handle the masks of the structure.
-             */
-            Mask mi = null;
+        // The paste is spread out over multiple ticks, everything else is done once the structure is fully placed.
+        plugin.getPasteScheduler().schedule(new PasteTask(pasteClipboard, transform, loc, () -> {
+            // Handle the masks of the structure.
             if (structure.getMaskProperties().getUnionType() == MaskProperty.MaskUnion.AND) {
-                mi = new MaskIntersection(structure.getMaskProperties().getMasks(clipboard));
+                return new MaskIntersection(structure.getMaskProperties().getMasks(sourceClipboard));
             } else if (structure.getMaskProperties().getUnionType() == MaskProperty.MaskUnion.OR) {
-                mi = new MaskUnion(structure.getMaskProperties().getMasks(clipboard));
+                return new MaskUnion(structure.getMaskProperties().getMasks(sourceClipboard));
             }
-
-            Operation operation = ch.createPaste(editSession)
-                    .to(BlockVector3.at(loc.getX(), loc.getY(), loc.getZ())).maskSource(mi).ignoreAirBlocks(!useAir).build();
-
-            Operations.complete(operation);
-
+            return null;
+        }, !useAir, () -> {
             if (plugin.getConfig().getBoolean("debug")) {
                 plugin.getLogger().info(String.format("(%s) Created an instance of %s at %s, %s, %s with rotation %s", loc.getWorld().getName(), filename, loc.getBlockX(), loc.getBlockY(), loc.getBlockZ(), rotY));
             }
-        }
+            postProcess(loc, clipboard, pasteClipboard, rotY, pasteRotY, compiledSchematic, structure, iteration, pieces);
+        }, pieces::finish));
+    }
 
+    /**
+     * Fill the bottom space and schedule the processing of the containers and signs of a structure.
+     * <p>This is called once the structure is fully pasted.</p>
+     *
+     * @param loc               The location.
+     * @param clipboard         The clipboard of the schematic.
+     * @param pasteClipboard    The clipboard that was pasted.
+     * @param rotY              The rotation in degrees.
+     * @param pasteRotY         The rotation in degrees that was applied while pasting.
+     * @param compiledSchematic The compiled schematic data. (Null if the schematic is not compiled).
+     * @param structure         The structure that was spawned.
+     * @param iteration         The number of iterations in a structure.
+     * @param pieces            The pieces of the structure. This piece is finished once the containers and signs
+     *                          are processed.
+     */
+    private void postProcess(Location loc, Clipboard clipboard, Clipboard pasteClipboard, double rotY, double pasteRotY,
+                             @Nullable CompiledSchematic compiledSchematic, Structure structure, int iteration,
+                             StructurePieces pieces) {
         // If enabled, perform a bottom space fill.
         if (structure.getBottomSpaceFill().isEnabled()) {
-            Location minLoc = getMinimumLocation(clipboard, loc, rotY);
-            Location maxLoc = getMaximumLocation(clipboard, loc, rotY);
+            Location minLoc = getMinimumLocation(pasteClipboard, loc, pasteRotY);
+            Location maxLoc = getMaximumLocation(pasteClipboard, loc, pasteRotY);
             int lowX = Math.min(minLoc.getBlockX(), maxLoc.getBlockX());
             int lowY = Math.min(minLoc.getBlockY(), maxLoc.getBlockY());
             int lowZ = Math.min(minLoc.getBlockZ(), maxLoc.getBlockZ());
@@ -175,80 +426,89 @@ public class SchematicHandler {
         }
 
         //Schedule the signs & containers replacement task
-        double finalRotY = rotY;
         // Run a task later. This is done so async plugins have time to paste as needed.
         Bukkit.getScheduler().runTaskLater(plugin, () -> {
-            List<Location> containersAndSignsLocations = new ArrayList<>();
-            // If the structure is compiled, then grab the data from the cschem file.
-            if (structure.isCompiled()) {
-                ObjectDataStructure ods = new ObjectDataStructure(new File(plugin.getDataFolder() + "/schematics/" + structure.getCompiledSchematic()));
-                ListTag<ObjectTag> containers = ods.get("containers");
-                ListTag<ObjectTag> signs = ods.get("signs");
-                // Get both the max and minimum points.
-                Location minimumPoint = getMinimumLocation(clipboard, loc, 0);
-                Location maximumPoint = getMaximumLocation(clipboard, loc, 0);
-
-                // Find the minimum of all three axises.
-                int minX = Math.min(minimumPoint.getBlockX(), maximumPoint.getBlockX());
-                int minY = Math.min(minimumPoint.getBlockY(), maximumPoint.getBlockY());
-                int minZ = Math.min(minimumPoint.getBlockZ(), maximumPoint.getBlockZ());
-
-                for (ObjectTag con : containers.getValue()) {
-                    // Rotate con around the point and add the rotated min values.
-                    containersAndSignsLocations.add(rotateAround(new BlockTag(con).getLocation(loc.getWorld()).add(minX, minY, minZ), loc, finalRotY));
-                }
-                for (ObjectTag sign : signs.getValue()) {
-                    containersAndSignsLocations.add(rotateAround(new BlockTag(sign).getLocation(loc.getWorld()).add(minX, minY, minZ), loc, finalRotY));
+            try {
+                List<Location> containersAndSignsLocations = new ArrayList<>();
+                // Signs that are known to not do anything, so they can be skipped.
+                Set<Location> inertSigns = new HashSet<>();
+                // The loot table types and sign text stored in the cschem file, so the block state is not read for them.
+                Map<Location, LootTableType> compiledLootTableTypes = new HashMap<>();
+                Map<Location, List<String>> compiledSignLines = new HashMap<>();
+                // If the structure is compiled, then use the data from the cschem file.
+                if (compiledSchematic != null) {
+                    // Get both the max and minimum points.
+                    Location minimumPoint = getMinimumLocation(clipboard, loc, 0);
+                    Location maximumPoint = getMaximumLocation(clipboard, loc, 0);
+
+                    // Find the minimum of all three axises.
+                    int minX = Math.min(minimumPoint.getBlockX(), maximumPoint.getBlockX());
+                    int minY = Math.min(minimumPoint.getBlockY(), maximumPoint.getBlockY());
+                    int minZ = Math.min(minimumPoint.getBlockZ(), maximumPoint.getBlockZ());
+
+                    Location compiledMinimum = new Location(loc.getWorld(), minX, minY, minZ);
+
+                    int[] containerPositions = compiledSchematic.getContainerPositions();
+                    for (int i = 0; i < containerPositions.length; i += 3) {
+                        Location containerLocation = getCompiledLocation(containerPositions, i, compiledMinimum, loc, rotY);
+                        containersAndSignsLocations.add(containerLocation);
+                        compiledLootTableTypes.put(containerLocation, compiledSchematic.getContainerLootTableType(i / 3));
+                    }
+                    int[] signPositions = compiledSchematic.getSignPositions();
+                    for (int i = 0; i < signPositions.length; i += 3) {
+                        Location signLocation = getCompiledLocation(signPositions, i, compiledMinimum, loc, rotY);
+                        containersAndSignsLocations.add(signLocation);
+                        if (!compiledSchematic.isActionSign(i / 3))
+                            inertSigns.add(signLocation);
+                        else if (compiledSchematic.getSignLines(i / 3) != null)
+                            compiledSignLines.put(signLocation, compiledSchematic.getSignLines(i / 3));
+                    }
+                } else {
+                    // else find the data from the paste.
+                    containersAndSignsLocations = getContainersAndSignsLocations(pasteClipboard, loc, pasteRotY);
                 }
-                // Replace the blocks of the structure (if enabled).
-                replaceBlocks(clipboard, loc, finalRotY, structure);
-            } else {
-                // else find the data from the paste.
-                containersAndSignsLocations = getContainersAndSignsLocations(ch.getClipboard(), loc, finalRotY, structure);
-            }
 
-            for (Location location : containersAndSignsLocations) {
-                if (location.getBlock().getState() instanceof Container) {
-                    replaceContainerContent(structure, location);
-                }
-                if (location.getBlock().getState() instanceof Sign) {
-                    Location minLoc = getMinimumLocation(clipboard, loc, finalRotY);
-                    Location maxLoc = getMaximumLocation(clipboard, loc, finalRotY);
-                    processAndReplaceSign(location, minLoc, maxLoc);
+                Location minLoc = getMinimumLocation(pasteClipboard, loc, pasteRotY);
+                Location maxLoc = getMaximumLocation(pasteClipboard, loc, pasteRotY);
+                for (Location location : containersAndSignsLocations) {
+                    if (inertSigns.contains(location))
+                        continue;
+                    List<String> compiledLines = compiledSignLines.get(location);
+                    if (compiledLines != null) {
+                        // The text is known from the cschem file, only check that the sign was not replaced.
+                        if (Tag.SIGNS.isTagged(location.getBlock().getType()))
+                            processSign(location, compiledLines, minLoc, maxLoc, structure, iteration, pieces);
+                        continue;
+                    }
+                    BlockState blockState = location.getBlock().getState();
+                    if (blockState instanceof Container container) {
+                        LootTableType lootTableType = compiledLootTableTypes.containsKey(location)
+                                ? compiledLootTableTypes.get(location) : LootTableType.valueOf(blockState.getType());
+                        replaceContainerContent(structure, location, container, lootTableType);
+                    } else if (blockState instanceof Sign sign) {
+                        processSign(location, Arrays.asList(sign.getLines()), minLoc, maxLoc, structure, iteration, pieces);
+                    }
                 }
-                // If the sign still exists, it could be a sub-schematic sign.
-                if (location.getBlock().getState() instanceof Sign) {
-                    replaceSignWithSchematic(location, structure, iteration);
+
+                // Call the event for use by other plugins (only if it is the first iteration though.)
+                if (iteration < 1) {
+                    StructureSpawnHolder structureSpawnHolder = new StructureSpawnHolder(getMinimumLocation(clipboard, loc, 0),
+                            getMaximumLocation(clipboard, loc, 0), containersAndSignsLocations);
+                    StructureSpawnEvent structureSpawnEvent = new StructureSpawnEvent(structure, loc, rotY, structureSpawnHolder);
+                    Bukkit.getServer().getPluginManager().callEvent(structureSpawnEvent);
                 }
-            }
 
-            // Call the event for use by other plugins (only if it is the first iteration though.)
-            if (iteration < 1) {
-                StructureSpawnHolder structureSpawnHolder = new StructureSpawnHolder(getMinimumLocation(clipboard, loc, 0),
-                        getMaximumLocation(clipboard, loc, 0), containersAndSignsLocations);
-                StructureSpawnEvent structureSpawnEvent = new StructureSpawnEvent(structure, loc, finalRotY, structureSpawnHolder);
-                Bukkit.getServer().getPluginManager().callEvent(structureSpawnEvent);
+                // Log the blocks the structure and its sub-schematics take up, so plugins can find the structures at a block.
+                if (plugin.getStructureHandler() != null)
+                    plugin.getStructureHandler().getStructureFileReader()
+                            .ifPresent(reader -> reader.addBounds(pieces.origin, structure, minLoc, maxLoc));
+            } finally {
+                // The sub-schematics of this piece were added above, so this only finishes the structure once they are done.
+                pieces.finish();
             }
-
         }, Math.round(structure.getStructureLimitations().getReplacementBlocksDelay() * 20));
     }
 
-    /**
-     * Handles the schematic.
-     * <p>This method is to be called on the main Server thread.</p>
-     *
-     * @param loc       - The location
-     * @param filename  - The file name. Ex: demo.schematic
-     * @param useAir    - if air is to be used in the schematic
-     * @param structure - The structure that is getting spawned.
-     * @throws WorldEditException If world edit has a problem pasting the schematic.
-     * @throws IOException        If an error occurs during file reading.
-     */
-    public void schemHandle(Location loc, String filename, boolean useAir, Structure structure)
-            throws IOException, WorldEditException {
-        schemHandle(loc, filename, useAir, structure, 0);
-    }
-
     /**
      * Create a schematic and save it to the schematics folder in the CustomStructures plugin.
      *
@@ -263,21 +523,7 @@ public class SchematicHandler {
             WorldEditPlugin worldEditPlugin = (WorldEditPlugin) Bukkit.getServer().getPluginManager().getPlugin("WorldEdit");
             assert worldEditPlugin != null;
             Region selection = worldEditPlugin.getSession(player).getSelection(BukkitAdapter.adapt(w));
-            CuboidRegion region = new CuboidRegion(selection.getWorld(), selection.getMinimumPoint(), selection.getMaximumPoint());
-            BlockArrayClipboard clipboard = new BlockArrayClipboard(region);
-
-            // Set the origin point to where the player is standing.
-            clipboard.setOrigin(BlockVector3.at(player.getLocation().getX(), player.getLocation().getY(), player.getLocation().getZ()));
-
-            try (EditSession editSession = WorldEdit.getInstance().getEditSessionFactory().getEditSession(selection.getWorld(), -1)) {
-                ForwardExtentCopy forwardExtentCopy = new ForwardExtentCopy(
-                        editSession, region, clipboard, region.getMinimumPoint()
-                );
-                // configure here
-                Operations.complete(forwardExtentCopy);
-            } catch (WorldEditException e) {
-                e.printStackTrace();
-            }
+            Clipboard clipboard = copySelection(selection, player.getLocation());
 
             File file = new File(plugin.getDataFolder() + File.separator + "schematics" + File.separator + name + ".schem");
 
@@ -288,7 +534,7 @@ public class SchematicHandler {
             }
 
             if (compile)
-                compileSchem(player.getLocation(), selection, name);
+                compileAsync(clipboard, name);
             return true;
         } catch (IncompleteRegionException ex) {
             return false;
@@ -298,6 +544,8 @@ public class SchematicHandler {
     /**
      * Only compile a selection into a compiled schematic.
      *
+     * <p>The selection is copied on the main thread, the compiling itself is done on an async worker thread.</p>
+     *
      * @param name   The name of the schematic.
      * @param player The player.
      * @param w      The world
@@ -309,7 +557,7 @@ public class SchematicHandler {
             assert worldEditPlugin != null;
             Region selection = worldEditPlugin.getSession(player).getSelection(BukkitAdapter.adapt(w));
 
-            compileSchem(player.getLocation(), selection, name);
+            compileAsync(copySelection(selection, player.getLocation()), name);
             return true;
         } catch (IncompleteRegionException ex) {
             return false;
@@ -317,73 +565,69 @@ public class SchematicHandler {
     }
 
     /**
-     * Compiles a schematic
+     * Copy a selection into a new clipboard.
      *
-     * @param loc  The location of the player.
-     * @param reg  The region of the schematic.
-     * @param name The name of the schematic.
+     * @param selection The selection to copy.
+     * @param origin    The origin of the clipboard.
+     * @return The clipboard.
      */
-    private void compileSchem(Location loc, Region reg, String name) {
-        IntTag intTag = new IntTag("ver", CustomStructures.COMPILED_STRUCT_VER);
-        ListTag<BlockTag> containers = new ListTag<>("containers", new ArrayList<>());
-        ListTag<BlockTag> signs = new ListTag<>("signs", new ArrayList<>());
-
-        List<Location> locations = new ArrayList<>();
-
-        Location minLoc = new Location(loc.getWorld(), reg.getMinimumPoint().getX(), reg.getMinimumPoint().getY(), reg.getMinimumPoint().getZ());
-
-        for (int x = reg.getMinimumPoint().getX(); x <= reg.getMaximumPoint().getX(); x++) {
-            for (int y = reg.getMinimumPoint().getY(); y <= reg.getMaximumPoint().getY(); y++) {
-                for (int z = reg.getMinimumPoint().getZ(); z <= reg.getMaximumPoint().getZ(); z++) {
-                    Location location = new Location(loc.getWorld(), x, y, z);
-                    Block block = location.getBlock();
-                    BlockState blockState = location.getBlock().getState();
-
-                    if (blockState instanceof Container) {
-                        if (blockState instanceof Chest chestBlockState) {
-                            InventoryHolder holder = chestBlockState.getInventory().getHolder();
-                            if (holder instanceof DoubleChest doubleChest) {
-                                Location leftSideLocation = ((Chest) doubleChest.getLeftSide()).getLocation();
-                                Location rightSideLocation = ((Chest) doubleChest.getRightSide()).getLocation();
-
-                                Location roundedLocation = new Location(location.getWorld(),
-                                        Math.floor(location.getX()), Math.floor(location.getY()),
-                                        Math.floor(location.getZ()));
-
-                                // Check to see if this (or the other) side of the chest is already in the list
-                                if (leftSideLocation.distance(roundedLocation) < 1) {
-                                    if (this.isNotAlreadyIn(locations, rightSideLocation)) {
-                                        locations.add(roundedLocation);
-                                        containers.addTag(new BlockTag(Material.CHEST, location.subtract(minLoc)));
-                                    }
+    private Clipboard copySelection(Region selection, Location origin) {
+        CuboidRegion region = new CuboidRegion(selection.getWorld(), selection.getMinimumPoint(), selection.getMaximumPoint());
+        BlockArrayClipboard clipboard = new BlockArrayClipboard(region);
+
+        // Set the origin point to where the player is standing.
+        clipboard.setOrigin(BlockVector3.at(origin.getX(), origin.getY(), origin.getZ()));
+
+        try (EditSession editSession = WorldEdit.getInstance().getEditSessionFactory().getEditSession(selection.getWorld(), -1)) {
+            ForwardExtentCopy forwardExtentCopy = new ForwardExtentCopy(
+                    editSession, region, clipboard, region.getMinimumPoint()
+            );
+            // configure here
+            Operations.complete(forwardExtentCopy);
+        } catch (WorldEditException e) {
+            e.printStackTrace();
+        }
+        return clipboard;
+    }
 
-                                } else if (rightSideLocation.distance(roundedLocation) < 1) {
-                                    if (this.isNotAlreadyIn(locations, leftSideLocation)) {
-                                        locations.add(roundedLocation);
-                                        containers.addTag(new BlockTag(Material.CHEST, location.subtract(minLoc)));
-                                    }
-                                }
+    /**
+     * Compile a clipboard into a compiled schematic on an async worker thread.
+     *
+     * <p>This method is to be called on the main Server thread.</p>
+     *
+     * @param clipboard The clipboard to compile. It must not be modified while it is compiled.
+     * @param name      The name of the schematic. (Without the extension).
+     */
+    public void compileAsync(Clipboard clipboard, String name) {
+        File output = new File(plugin.getDataFolder() + File.separator + "schematics" + File.separator + name + ".cschem");
 
-                            } else if (holder instanceof Chest) {
-                                locations.add(location);
-                                containers.addTag(new BlockTag(Material.CHEST, location.subtract(minLoc)));
-                            }
-                        } else {
-                            locations.add(location);
-                            containers.addTag(new BlockTag(block.getType(), location.subtract(minLoc)));
-                        }
-                    } else if (blockState instanceof Sign) {
-                        locations.add(location);
-                        signs.addTag(new BlockTag(block.getType(), location.subtract(minLoc)));
-                    }
+        Bukkit.getScheduler().runTaskAsynchronously(plugin, () -> {
+            try {
+                SchematicCompiler.compile(clipboard, output);
+                if (plugin.isDebug()) {
+                    plugin.getLogger().info("Successfully compiled the schematic: " + name);
                 }
+            } catch (IOException ex) {
+                plugin.getLogger().severe("Unable to compile the schematic: " + name);
+                if (plugin.isDebug())
+                    ex.printStackTrace();
             }
-        }
-        ObjectDataStructure ods = new ObjectDataStructure(new File(plugin.getDataFolder() + File.separator + "schematics" + File.separator + name + ".cschem"));
-        ods.save(Arrays.asList(intTag, containers, signs));
-        if (plugin.isDebug()) {
-            plugin.getLogger().info("Successfully compiled the schematic: " + name);
-        }
+        });
+    }
+
+    /**
+     * Get the world location of a position stored in a compiled schematic.
+     *
+     * @param positions     The packed relative positions of the compiled schematic.
+     * @param offset        The offset of the position in the array.
+     * @param minimum       The unrotated minimum point of the pasted schematic.
+     * @param pasteLocation The paste location.
+     * @param rotation      The rotation of the structure.
+     * @return The world location.
+     */
+    private Location getCompiledLocation(int[] positions, int offset, Location minimum, Location pasteLocation, double rotation) {
+        return rotateAround(new Location(pasteLocation.getWorld(), positions[offset] + minimum.getBlockX(),
+                positions[offset + 1] + minimum.getBlockY(), positions[offset + 2] + minimum.getBlockZ()), pasteLocation, rotation);
     }
 
     /**
@@ -430,49 +674,15 @@ public class SchematicHandler {
         return new Location(pasteLocation.getWorld(), newRotatedMaximumPoint.getX(), newRotatedMaximumPoint.getY(), newRotatedMaximumPoint.getZ());
     }
 
-    /**
-     * Replace the blocks according to the 'replacement_blocks' section.
-     * <p>Note: This is to be used by compiled schematics. Non compiled schematics are replaced in
-     * the {@link #getContainersAndSignsLocations(Clipboard, Location, double, Structure)} method to save time.</p>
-     *
-     * @param clipboard     The clipboard of the paste.
-     * @param pasteLocation The paste location.
-     * @param rotation      The rotation of the structure.
-     * @param structure     The structure itself.
-     */
-    private void replaceBlocks(Clipboard clipboard, Location pasteLocation, double rotation, Structure structure) {
-        if (structure.getStructureLimitations().getBlockReplacement().isEmpty()) return;
-
-        Location minLoc = getMinimumLocation(clipboard, pasteLocation, rotation);
-        Location maxLoc = getMaximumLocation(clipboard, pasteLocation, rotation);
-
-        int lowX = Math.min(minLoc.getBlockX(), maxLoc.getBlockX());
-        int lowY = Math.min(minLoc.getBlockY(), maxLoc.getBlockY());
-        int lowZ = Math.min(minLoc.getBlockZ(), maxLoc.getBlockZ());
-
-        for (int x = 0; x <= Math.abs(minLoc.getBlockX() - maxLoc.getBlockX()); x++) {
-            for (int y = 0; y <= Math.abs(minLoc.getBlockY() - maxLoc.getBlockY()); y++) {
-                for (int z = 0; z <= Math.abs(minLoc.getBlockZ() - maxLoc.getBlockZ()); z++) {
-                    Block block = Objects.requireNonNull(pasteLocation.getWorld()).getBlockAt(lowX + x, lowY + y, lowZ + z);
-                    if (structure.getStructureLimitations().getBlockReplacement().containsKey(block.getType())) {
-                        block.setType(structure.getStructureLimitations().getBlockReplacement().get(block.getType()));
-                        block.getState().update();
-                    }
-                }
-            }
-        }
-    }
-
     /**
      * Get the location of containers and signs.
-     * <p>This will also replace blocks from the replacement_blocks section.</p>
      *
      * @param clipboard     The worldedit clipboard
      * @param pasteLocation The location of the paste
      * @param rotation      The rotate value (in degrees).
      * @return The list of locations
      */
-    private List<Location> getContainersAndSignsLocations(Clipboard clipboard, Location pasteLocation, double rotation, Structure structure) {
+    private List<Location> getContainersAndSignsLocations(Clipboard clipboard, Location pasteLocation, double rotation) {
         Location minLoc = getMinimumLocation(clipboard, pasteLocation, rotation);
         Location maxLoc = getMaximumLocation(clipboard, pasteLocation, rotation);
         List<Location> locations = new ArrayList<>();
@@ -485,7 +695,6 @@ public class SchematicHandler {
             for (int y = 0; y <= Math.abs(minLoc.getBlockY() - maxLoc.getBlockY()); y++) {
                 for (int z = 0; z <= Math.abs(minLoc.getBlockZ() - maxLoc.getBlockZ()); z++) {
                     Location location = new Location(pasteLocation.getWorld(), lowX + x, lowY + y, lowZ + z);
-                    Block block = location.getBlock();
                     BlockState blockState = location.getBlock().getState();
 
                     if (blockState instanceof Container) {
@@ -519,14 +728,6 @@ public class SchematicHandler {
                         }
                     } else if (blockState instanceof Sign) {
                         locations.add(location);
-                    } else {
-                        // For the block replacement system.
-                        if (!structure.getStructureLimitations().getBlockReplacement().isEmpty()) {
-                            if (structure.getStructureLimitations().getBlockReplacement().containsKey(block.getType())) {
-                                block.setType(structure.getStructureLimitations().getBlockReplacement().get(block.getType()));
-                                block.getState().update();
-                            }
-                        }
                     }
                 }
             }
@@ -555,14 +756,13 @@ public class SchematicHandler {
      *
      * @param structure The structure that is being spawned.
      * @param location  The location of the container.
+     * @param container The state of the container.
+     * @param blockType The loot table type of the container. (Null if the container has no loot table type).
      */
-    private void replaceContainerContent(Structure structure, Location location) {
+    private void replaceContainerContent(Structure structure, Location location, Container container,
+                                         @Nullable LootTableType blockType) {
 
-        BlockState blockState = location.getBlock().getState();
-        Container container = (Container) blockState;
         Inventory containerInventory = container.getInventory();
-        Block block = location.getBlock();
-        LootTableType blockType = LootTableType.valueOf(block.getType());
 
         boolean explictLoottableDefined = false;
         LootTable lootTable = null;
@@ -613,24 +813,50 @@ public class SchematicHandler {
 
     }
 
+    /**
+     * Process a sign and, if it is still there afterwards, replace it with a sub-schematic.
+     *
+     * @param location  The location of the sign.
+     * @param lines     The lines of the sign.
+     * @param minLoc    The minimum location of the structure.
+     * @param maxLoc    The maximum location of the structure.
+     * @param structure The structure that is being spawned.
+     * @param iteration The iteration of schematic pasting.
+     * @param pieces    The pieces of the structure.
+     */
+    private void processSign(Location location, List<String> lines, Location minLoc, Location maxLoc,
+                             Structure structure, int iteration, StructurePieces pieces) {
+        processAndReplaceSign(location, lines, minLoc, maxLoc);
+        // If the sign still exists, it could be a sub-schematic sign.
+        if (Tag.SIGNS.isTagged(location.getBlock().getType())) {
+            replaceSignWithSchematic(location, lines, structure, iteration, pieces);
+        }
+    }
+
+    /**
+     * Get a trimmed line of a sign.
+     *
+     * @param lines The lines of the sign.
+     * @param index The index of the line.
+     * @return The trimmed line. (Empty if the sign does not have the line).
+     */
+    private static String getSignLine(List<String> lines, int index) {
+        return index < lines.size() && lines.get(index) != null ? lines.get(index).trim() : "";
+    }
+
     /**
      * Process a sign and spawn mobs, execute commands etc.
      *
      * @param location The location of the sign.
+     * @param lines    The lines of the sign.
+     * @param minLoc   The minimum location of the structure.
+     * @param maxLoc   The maximum location of the structure.
      */
-    private void processAndReplaceSign(Location location, Location minLoc, Location maxLoc) {
-        Sign sign = (Sign) location.getBlock().getState();
-        String firstLine;
-        String secondLine;
-        String thirdLine;
-        String fourthLine;
-
-        if (location.getBlock().getState() instanceof Sign || location.getBlock().getState() instanceof WallSign) {
-            firstLine = sign.getLine(0).trim();
-            secondLine = sign.getLine(1).trim();
-            thirdLine = sign.getLine(2).trim();
-            fourthLine = sign.getLine(3).trim();
-        } else return;
+    private void processAndReplaceSign(Location location, List<String> lines, Location minLoc, Location maxLoc) {
+        String firstLine = getSignLine(lines, 0);
+        String secondLine = getSignLine(lines, 1);
+        String thirdLine = getSignLine(lines, 2);
+        String fourthLine = getSignLine(lines, 3);
 
         // Process the type of sign.
         // Normal Mob Sign
@@ -712,16 +938,18 @@ public class SchematicHandler {
      * Replace a sign with a schematic.
      *
      * @param location        The location of the sign.
+     * @param lines           The lines of the sign.
      * @param parentStructure The parent structure.
      * @param iteration       The iteration of schematic pasting.
+     * @param pieces          The pieces of the parent structure.
      */
-    private void replaceSignWithSchematic(Location location, Structure parentStructure, int iteration) {
+    private void replaceSignWithSchematic(Location location, List<String> lines, Structure parentStructure, int iteration,
+                                          StructurePieces pieces) {
         SubSchematics subSchematics = parentStructure.getSubSchematics();
         AdvancedSubSchematics advancedSubSchematics = parentStructure.getAdvancedSubSchematics();
 
-        Sign sign = (Sign) location.getBlock().getState();
-        String firstLine = sign.getLine(0).trim();
-        String secondLine = sign.getLine(1).trim();
+        String firstLine = getSignLine(lines, 0);
+        String secondLine = getSignLine(lines, 1);
 
         // Allow this to work with both wall signs and normal signs.
         if (location.getBlock().getBlockData() instanceof org.bukkit.block.data.type.Sign signData) {
@@ -783,7 +1011,8 @@ public class SchematicHandler {
             if (!subSchem.isUsingRotation())
                 parentStructure.setSubSchemRotation(0);
             try {
-                schemHandle(location, subSchem.getFile(), subSchem.isPlacingAir(), parentStructure, iteration + 1);
+                pieces.add();
+                schemHandle(location, subSchem.getFile(), subSchem.isPlacingAir(), parentStructure, iteration + 1, pieces);
             } catch (Exception ex) {
                 plugin.getLogger().warning("An error has occurred when attempting to paste a sub schematic.");
                 if (plugin.isDebug()) {
@@ -806,7 +1035,8 @@ public class SchematicHandler {
             if (!subSchem.isUsingRotation())
                 parentStructure.setSubSchemRotation(0);
             try {
-                schemHandle(location, subSchem.getFile(), subSchem.isPlacingAir(), parentStructure, iteration + 1);
+                pieces.add();
+                schemHandle(location, subSchem.getFile(), subSchem.isPlacingAir(), parentStructure, iteration + 1, pieces);
             } catch (Exception ex) {
                 plugin.getLogger().warning("An error has occurred when attempting to paste a sub schematic.");
                 if (plugin.isDebug()) {
@@ -916,15 +1146,37 @@ public class SchematicHandler {
         }
     }
 
+    /**
+     * Get the number of 90 degree turns that make up an angle.
+     *
+     * @param angle The angle in degrees.
+     * @return The number of turns (0 to 3), or -1 if the angle is not a multiple of 90 degrees.
+     */
+    private static int getQuarterTurns(double angle) {
+        double turns = angle / 90;
+        long roundedTurns = Math.round(turns);
+        if (Math.abs(turns - roundedTurns) > 1.0E-6)
+            return -1;
+        return (int) Math.floorMod(roundedTurns, 4L);
+    }
+
     /**
      * Rotate the point around the center.
      *
+     * <p>Multiples of 90 degrees are rotated exactly using integer math.</p>
+     *
      * @param point  The point
      * @param center The center
      * @param angle  The angle to rotate by.
      * @return The final position.
      */
     private BlockVector3 rotateAround(BlockVector3 point, BlockVector3 center, double angle) {
+        int quarterTurns = getQuarterTurns(angle);
+        if (quarterTurns != -1) {
+            int[] offset = rotateQuarterTurns(point.getX() - center.getX(), point.getZ() - center.getZ(), quarterTurns);
+            return BlockVector3.at(center.getX() + offset[0], point.getY(), center.getZ() + offset[1]);
+        }
+
         angle = Math.toRadians(angle * -1);
         double rotatedX = Math.cos(angle) * (point.getX() - center.getX()) - Math.sin(angle) * (point.getZ() - center.getZ()) + center.getX();
         double rotatedZ = Math.sin(angle) * (point.getX() - center.getX()) + Math.cos(angle) * (point.getZ() - center.getZ()) + center.getZ();
@@ -935,16 +1187,84 @@ public class SchematicHandler {
     /**
      * Rotate the point around a center.
      *
+     * <p>Multiples of 90 degrees are rotated exactly using integer math.</p>
+     *
      * @param point  The point
      * @param center The center
      * @param angle  The angle to rotate by.
      * @return The final position (in Location form).
      */
     private Location rotateAround(Location point, Location center, double angle) {
+        int quarterTurns = getQuarterTurns(angle);
+        if (quarterTurns != -1) {
+            int[] offset = rotateQuarterTurns(point.getBlockX() - center.getBlockX(), point.getBlockZ() - center.getBlockZ(), quarterTurns);
+            return new Location(point.getWorld(), center.getBlockX() + offset[0], point.getY(), center.getBlockZ() + offset[1]);
+        }
+
         angle = Math.toRadians(angle * -1);
         double rotatedX = Math.cos(angle) * (point.getBlockX() - center.getBlockX()) - Math.sin(angle) * (point.getBlockZ() - center.getBlockZ()) + center.getBlockX();
         double rotatedZ = Math.sin(angle) * (point.getBlockX() - center.getBlockX()) + Math.cos(angle) * (point.getBlockZ() - center.getBlockZ()) + center.getBlockZ();
 
         return new Location(point.getWorld(), Math.floor(rotatedX), point.getY(), Math.floor(rotatedZ));
     }
-}
\ No newline at end of file
+
+    /**
+     * Rotate an offset on the X/Z plane by a number of 90 degree turns.
+     * <p>This matches the direction of {@link #rotateAround(BlockVector3, BlockVector3, double)}.</p>
+     *
+     * @param x            The x offset.
+     * @param z            The z offset.
+     * @param quarterTurns The number of turns (0 to 3).
+     * @return The rotated offset as {x, z}.
+     */
+    private static int[] rotateQuarterTurns(int x, int z, int quarterTurns) {
+        return switch (quarterTurns) {
+            case 1 -> new int[]{z, -x};
+            case 2 -> new int[]{-x, -z};
+            case 3 -> new int[]{-z, x};
+            default -> new int[]{x, z};
+        };
+    }
+
+    /**
+     * The pieces of a structure that are being pasted: the structure itself and its sub-schematics.
+     *
+     * <p>The structure is only done once every piece is pasted and its containers and signs are processed. A
+     * sub-schematic is added while the piece it is in is still processing its signs, so the count cannot reach zero
+     * before the sub-schematics are queued.</p>
+     *
+     * <p>This is only used on the main Server thread.</p>
+     */
+    private static class StructurePieces {
+        // The location of the structure, which the bounding box of every piece is logged under.
+        private final Location origin;
+        private final Runnable onSpawned;
+        private int pending = 1;
+
+        /**
+         * Construct the pieces of a structure, starting with the structure itself.
+         *
+         * @param origin    The location of the structure.
+         * @param onSpawned Ran once every piece is done.
+         */
+        private StructurePieces(Location origin, Runnable onSpawned) {
+            this.origin = origin;
+            this.onSpawned = onSpawned;
+        }
+
+        /**
+         * Add a piece that is going to be pasted.
+         */
+        private void add() {
+            pending++;
+        }
+
+        /**
+         * Mark a piece as done, either because it was processed or because it failed to paste.
+         */
+        private void finish() {
+            if (--pending == 0)
+                onSpawned.run();
+        }
+    }
+}
@@ -45,8 +45,8 @@ public class DefaultBottomFill extends BukkitRunnable implements BottomFillImpl
                 // If the block is not empty
                     !location.getWorld().getBlockAt(currentX, currentY, currentZ).isEmpty()
                             // and the block is not in the list of ignore blocks.
-                            && !CustomStructures.getInstance().getBlockIgnoreManager().getBlocks()
-                            .contains(location.getWorld().getBlockAt(currentX, currentY, currentZ).getType())
+                            && !CustomStructures.getInstance().getBlockIgnoreManager()
+                            .isIgnored(location.getWorld().getBlockAt(currentX, currentY, currentZ).getType())
                             // And not water (if it is set to be ignored)
                             && !(structure.getStructureProperties().shouldIgnoreWater()
                             && location.getWorld().getBlockAt(currentX, currentY, currentZ).getType() == Material.WATER)
@@ -45,6 +45,9 @@ public class SCommand implements CommandExecutor {
         this.commandHandler.registerCommand("createschem", new CreateSchematicCommand(plugin));
         this.commandHandler.registerCommand("create", new CreateCommand(plugin));
         this.commandHandler.registerCommand("testspawn", new TestSpawnCommand(plugin));
+        this.commandHandler.registerCommand("compileall", new CompileAllCommand(plugin));
+        this.commandHandler.registerCommand("stats", new StatsCommand(plugin));
+        this.commandHandler.registerCommand("locate", new LocateCommand(plugin));
         this.commandHandler.registerCommand(new AddonsCommand(plugin), "addon", "addons");
         this.commandHandler.registerCommand(new SetLoottableCommand(plugin), "setloottable", "setloot", "setlt");
     }
@@ -81,6 +84,10 @@ public class SCommand implements CommandExecutor {
                         "&3/cstructure getItem {key} - &2Get the item of the key specified."));
                 sender.sendMessage(ChatColor.translateAlternateColorCodes('&',
                         "&3/cstructure createschem {name} [-options] - &2Create a schematic from the current worldedit selection (This is automatically save to the CustomStructures schematic folder)."));
+                sender.sendMessage(ChatColor.translateAlternateColorCodes('&',
+                        "&3/cstructure compileall - &2Compile every schematic in the CustomStructures schematic folder."));
+                sender.sendMessage(ChatColor.translateAlternateColorCodes('&',
+                        "&3/cstructure stats [structure] - &2View the progress of the structures that are being pasted, or the spawn checks of a structure."));
                 sender.sendMessage(ChatColor.translateAlternateColorCodes('&',
                         "&3/cstructure create {name} {schematic} - &2Create a structure using the default settings."));
                 sender.sendMessage(ChatColor.translateAlternateColorCodes('&',
@@ -102,7 +109,9 @@ public class SCommand implements CommandExecutor {
                 sender.sendMessage(ChatColor.translateAlternateColorCodes('&',
                         "&3/cstructure testspawn (name) - &2Test the spawn conditions of a structure."));
                 sender.sendMessage(ChatColor.translateAlternateColorCodes('&',
-                        "&3/cstructure nearby - &2Find nearby structures."));
+                        "&3/cstructure nearby [name] - &2Find nearby structures."));
+                sender.sendMessage(ChatColor.translateAlternateColorCodes('&',
+                        "&3/cstructure locate (name) - &2Find the closest place a structure with a seed based placement can spawn."));
                 sender.sendMessage("");
                 sender.sendMessage(ChatColor.translateAlternateColorCodes('&',
                         "&2Use &3/cstructure 2 &2to view the second page of commands!"));
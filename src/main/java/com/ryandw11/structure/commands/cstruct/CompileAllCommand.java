@@ -0,0 +1,78 @@
+package com.ryandw11.structure.commands.cstruct;
+
+import com.ryandw11.structure.CustomStructures;
+import com.ryandw11.structure.commands.SubCommand;
+import com.ryandw11.structure.io.SchematicCompiler;
+import org.bukkit.Bukkit;
+import org.bukkit.ChatColor;
+import org.bukkit.command.Command;
+import org.bukkit.command.CommandSender;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The compile all command for the plugin.
+ *
+ * <p>Compiles every schematic in the schematics folder. Each schematic is compiled in parallel
+ * on its own async worker thread.</p>
+ *
+ * <p>Permission: customstructures.compileall</p>
+ *
+ * <code>
+ * /cstruct compileall
+ * </code>
+ */
+public class CompileAllCommand implements SubCommand {
+
+    private final CustomStructures plugin;
+
+    public CompileAllCommand(CustomStructures plugin) {
+        this.plugin = plugin;
+    }
+
+    @Override
+    public boolean subCommand(CommandSender sender, Command cmd, String s, String[] args) {
+        if (!sender.hasPermission("customstructures.compileall")) {
+            sender.sendMessage(ChatColor.RED + "You do not have permission for this command!");
+            return true;
+        }
+
+        File[] schematicFiles = new File(plugin.getDataFolder(), "schematics").listFiles((dir, name) ->
+                name.endsWith(".schem") || name.endsWith(".schematic"));
+        if (schematicFiles == null || schematicFiles.length == 0) {
+            sender.sendMessage(ChatColor.RED + "There are no schematics to compile!");
+            return true;
+        }
+
+        AtomicInteger remaining = new AtomicInteger(schematicFiles.length);
+        AtomicInteger failed = new AtomicInteger();
+        sender.sendMessage(ChatColor.GREEN + "Compiling " + ChatColor.GOLD + schematicFiles.length + ChatColor.GREEN + " schematics...");
+
+        for (File schematicFile : schematicFiles) {
+            Bukkit.getScheduler().runTaskAsynchronously(plugin, () -> {
+                try {
+                    SchematicCompiler.compile(schematicFile, SchematicCompiler.getCompiledFile(schematicFile));
+                } catch (IOException ex) {
+                    failed.incrementAndGet();
+                    plugin.getLogger().warning("Unable to compile the schematic " + schematicFile.getName() + ".");
+                    if (plugin.isDebug())
+                        ex.printStackTrace();
+                }
+
+                if (remaining.decrementAndGet() == 0) {
+                    Bukkit.getScheduler().runTask(plugin, () -> {
+                        sender.sendMessage(ChatColor.GREEN + "Successfully compiled " + ChatColor.GOLD
+                                + (schematicFiles.length - failed.get()) + ChatColor.GREEN + " schematics!");
+                        if (failed.get() > 0)
+                            sender.sendMessage(ChatColor.RED + "" + failed.get() + " schematics could not be compiled. Please check the console for errors.");
+                        sender.sendMessage(ChatColor.GREEN + "Reload the plugin to use the compiled schematics.");
+                    });
+                }
+            });
+        }
+        return false;
+    }
+
+}
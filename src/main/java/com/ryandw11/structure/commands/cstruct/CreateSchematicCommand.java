@@ -68,7 +68,7 @@ public class CreateSchematicCommand implements SubCommand {
                 SchematicHandler handeler = new SchematicHandler();
                 if (handeler.createSchematic(name, p, p.getWorld(), true)) {
                     p.sendMessage(ChatColor.GREEN + "Successfully created a schematic with the name of " + ChatColor.GOLD + name + ChatColor.GREEN + "!");
-                    p.sendMessage(ChatColor.GREEN + "Successfully compiled the schematic!");
+                    p.sendMessage(ChatColor.GREEN + "The schematic is being compiled in the background.");
                     p.sendMessage(ChatColor.GREEN + "You can now use " + ChatColor.GOLD + name + ".schem" +
                             ChatColor.GREEN + " and " + ChatColor.GOLD + name + ".cschem" + ChatColor.GREEN + " in a structure.");
                 } else {
@@ -80,7 +80,7 @@ public class CreateSchematicCommand implements SubCommand {
                 String name = args[0].replace(".schem", "").replace(".cschem", "");
                 SchematicHandler handeler = new SchematicHandler();
                 if (handeler.compileOnly(name, p, p.getWorld())) {
-                    p.sendMessage(ChatColor.GREEN + "Successfully compiled the schematic with the name of " + ChatColor.GOLD + name + ChatColor.GREEN + "!");
+                    p.sendMessage(ChatColor.GREEN + "The schematic with the name of " + ChatColor.GOLD + name + ChatColor.GREEN + " is being compiled in the background.");
                     p.sendMessage(ChatColor.RED + "The option is for advanced users only. Please be sure the selection is valid.");
                 } else {
                     p.sendMessage(ChatColor.RED + "The world edit region seems to be incomplete! Try making a selection first!");
@@ -0,0 +1,89 @@
+package com.ryandw11.structure.commands.cstruct;
+
+import com.ryandw11.structure.CustomStructures;
+import com.ryandw11.structure.commands.SubCommand;
+import com.ryandw11.structure.structure.Structure;
+import com.ryandw11.structure.structure.properties.StructureLocation;
+import com.ryandw11.structure.structure.properties.StructurePlacement;
+import org.bukkit.ChatColor;
+import org.bukkit.World;
+import org.bukkit.command.Command;
+import org.bukkit.command.CommandSender;
+import org.bukkit.entity.Player;
+
+import java.util.Optional;
+
+/**
+ * The locate command for the plugin.
+ *
+ * <p>Finds the closest chunk where a structure with a seed based placement can spawn. This is calculated from the
+ * world seed, so structure logging is not needed. The structure only spawns there if its other spawn rules
+ * pass.</p>
+ *
+ * <p>Permission: customstructures.locate</p>
+ *
+ * <code>
+ * /cstruct locate {structure}
+ * </code>
+ */
+public class LocateCommand implements SubCommand {
+
+    // The number of placement regions searched in every direction.
+    private static final int MAX_REGION_RADIUS = 64;
+
+    private final CustomStructures plugin;
+
+    public LocateCommand(CustomStructures plugin) {
+        this.plugin = plugin;
+    }
+
+    @Override
+    public boolean subCommand(CommandSender sender, Command cmd, String s, String[] args) {
+        if (!sender.hasPermission("customstructures.locate")) {
+            sender.sendMessage(ChatColor.RED + "You do not have permission for this command!");
+            return true;
+        }
+
+        if (!(sender instanceof Player p)) {
+            sender.sendMessage(ChatColor.RED + "The command is for players only!");
+            return true;
+        }
+
+        if (args.length != 1) {
+            p.sendMessage(ChatColor.RED + "Invalid arguments! Use /cstruct locate {structure}");
+            return true;
+        }
+
+        Structure structure = plugin.getStructureHandler().getStructure(args[0]);
+        if (structure == null) {
+            p.sendMessage(ChatColor.RED + "That structure does not exist!");
+            return true;
+        }
+        StructureLocation location = structure.getStructureLocation();
+        Optional<StructurePlacement> placement = location.getPlacement();
+        if (placement.isEmpty()) {
+            p.sendMessage(ChatColor.RED + "That structure does not have a seed based placement! Add a Placement " +
+                    "section to its StructureLocation to locate it.");
+            return true;
+        }
+        World world = p.getWorld();
+        if (!location.getWorlds().isEmpty() && !location.getWorlds().contains(world.getName())) {
+            p.sendMessage(ChatColor.RED + "That structure cannot spawn in this world!");
+            return true;
+        }
+
+        Optional<int[]> nearest = placement.get().findNearest(world.getSeed(), placement.get().getSalt(structure.getName()),
+                p.getLocation().getBlockX() >> 4, p.getLocation().getBlockZ() >> 4, MAX_REGION_RADIUS);
+        if (nearest.isEmpty()) {
+            p.sendMessage(ChatColor.RED + "Could not find a nearby location for that structure!");
+            return true;
+        }
+        p.sendMessage(ChatColor.translateAlternateColorCodes('&',
+                String.format("&aThe structure &6%s &acan spawn in the chunk at &6%s&a, &6%s&a, if its other spawn rules pass.",
+                        structure.getName(),
+                        (nearest.get()[0] << 4) + 8,
+                        (nearest.get()[1] << 4) + 8)));
+        return true;
+    }
+
+}
@@ -2,9 +2,10 @@ package com.ryandw11.structure.commands.cstruct;
 
 import com.ryandw11.structure.CustomStructures;
 import com.ryandw11.structure.commands.SubCommand;
-import com.ryandw11.structure.exceptions.RateLimitException;
 import com.ryandw11.structure.structure.Structure;
+import com.ryandw11.structure.utils.Pair;
 import org.bukkit.ChatColor;
+import org.bukkit.Location;
 import org.bukkit.command.Command;
 import org.bukkit.command.CommandSender;
 import org.bukkit.entity.Player;
@@ -14,16 +15,20 @@ import java.util.Objects;
 /**
  * The nearby command for the plugin.
  *
- * <p>This command is expensive on the server and should be used sparingly.</p>
+ * <p>Only the logged structures within 2048 blocks of the player are searched, so many players can use this at the
+ * same time.</p>
  *
  * <p>Permission: customstructures.findnearby</p>
  *
  * <code>
- * /cstruct nearby
+ * /cstruct nearby [structure]
  * </code>
  */
 public class NearbyCommand implements SubCommand {
 
+    // The maximum distance in blocks from the player to search.
+    private static final int MAX_DISTANCE = 2048;
+
     private final CustomStructures plugin;
 
     public NearbyCommand(CustomStructures plugin) {
@@ -51,26 +56,33 @@ public class NearbyCommand implements SubCommand {
         }
 
         Player p = (Player) sender;
-        p.sendMessage(ChatColor.GREEN + "Fetching closest structure. This may take awhile...");
-        try {
-            plugin.getStructureHandler().getStructureFileReader().get().findNearby(p.getLocation())
-                    .thenAccept(struct -> {
-                        if (struct == null) {
-                            p.sendMessage(ChatColor.RED + "Could not find a nearby structure!");
-                            return;
-                        }
-                        p.sendMessage(ChatColor.translateAlternateColorCodes('&',
-                                String.format("&aFound structure &6%s &aat &6%s&a, &6%s&a, &6%s&a, in world:&6 %s&a!",
-                                        struct.getLeft().getName(),
-                                        struct.getRight().getBlockX(),
-                                        struct.getRight().getBlockY(),
-                                        struct.getRight().getBlockZ(),
-                                        Objects.requireNonNull(struct.getRight().getWorld()).getName())
-                        ));
-                    });
-        } catch (RateLimitException ex) {
-            p.sendMessage(ChatColor.RED + "Too many requests have been sent at this time. Try again later.");
+        String structureName = null;
+        if (args.length == 1) {
+            Structure structure = plugin.getStructureHandler().getStructure(args[0]);
+            if (structure == null) {
+                p.sendMessage(ChatColor.RED + "That structure does not exist!");
+                return true;
+            }
+            structureName = structure.getName();
         }
+        p.sendMessage(ChatColor.GREEN + "Fetching closest structure...");
+        plugin.getStructureHandler().getStructureFileReader().get()
+                .findNearby(p.getLocation(), 1, MAX_DISTANCE, structureName)
+                .thenAccept(structures -> {
+                    if (structures.isEmpty() || structures.get(0).getLeft() == null) {
+                        p.sendMessage(ChatColor.RED + "Could not find a structure within " + MAX_DISTANCE + " blocks!");
+                        return;
+                    }
+                    Pair<Structure, Location> struct = structures.get(0);
+                    p.sendMessage(ChatColor.translateAlternateColorCodes('&',
+                            String.format("&aFound structure &6%s &aat &6%s&a, &6%s&a, &6%s&a, in world:&6 %s&a!",
+                                    struct.getLeft().getName(),
+                                    struct.getRight().getBlockX(),
+                                    struct.getRight().getBlockY(),
+                                    struct.getRight().getBlockZ(),
+                                    Objects.requireNonNull(struct.getRight().getWorld()).getName())
+                    ));
+                });
 
         return false;
     }
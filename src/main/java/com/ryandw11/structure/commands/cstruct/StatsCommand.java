@@ -0,0 +1,99 @@
+package com.ryandw11.structure.commands.cstruct;
+
+import com.ryandw11.structure.CustomStructures;
+import com.ryandw11.structure.commands.SubCommand;
+import com.ryandw11.structure.io.ClipboardCache;
+import com.ryandw11.structure.structure.Structure;
+import com.ryandw11.structure.structure.predicates.SpawnPredicateChain;
+import com.ryandw11.structure.threading.PasteScheduler;
+import com.ryandw11.structure.threading.PasteTask;
+import com.ryandw11.structure.threading.SpawnQueue;
+import org.bukkit.ChatColor;
+import org.bukkit.command.Command;
+import org.bukkit.command.CommandSender;
+
+/**
+ * The stats command for the plugin.
+ *
+ * <p>Shows the progress of the structures that are being spawned and pasted and the state of the schematic cache.
+ * If a structure is specified, the statistics of its spawn checks are shown instead.</p>
+ *
+ * <p>Permission: customstructures.stats</p>
+ *
+ * <code>
+ * /cstruct stats [structure]
+ * </code>
+ */
+public class StatsCommand implements SubCommand {
+
+    private final CustomStructures plugin;
+
+    public StatsCommand(CustomStructures plugin) {
+        this.plugin = plugin;
+    }
+
+    @Override
+    public boolean subCommand(CommandSender sender, Command cmd, String s, String[] args) {
+        if (!sender.hasPermission("customstructures.stats")) {
+            sender.sendMessage(ChatColor.RED + "You do not have permission for this command!");
+            return true;
+        }
+        if (args.length == 1) {
+            showSpawnPredicateStats(sender, args[0]);
+            return true;
+        }
+
+        SpawnQueue spawnQueue = plugin.getSpawnQueue();
+        sender.sendMessage(ChatColor.GREEN + "Queued Chunks: " + ChatColor.GOLD + spawnQueue.getPendingCount()
+                + ChatColor.GREEN + " (" + spawnQueue.getCoalescedJobs() + " duplicates skipped)");
+        sender.sendMessage(ChatColor.GREEN + "Processed Chunks: " + ChatColor.GOLD + spawnQueue.getCompletedJobs()
+                + ChatColor.GREEN + " (" + spawnQueue.getEvaluatedPairs() + " structure checks, "
+                + spawnQueue.getTimeBudget() + "ms/tick)");
+        sender.sendMessage(ChatColor.GREEN + "Decision Latency: " + ChatColor.GOLD
+                + Math.round(spawnQueue.getAverageDecisionLatency()) + "ms" + ChatColor.GREEN + " average, "
+                + ChatColor.GOLD + spawnQueue.getMaxDecisionLatency() + "ms" + ChatColor.GREEN + " max");
+        sender.sendMessage(ChatColor.GREEN + "Spawning Structures: " + ChatColor.GOLD + spawnQueue.getSpawningCount()
+                + "/" + spawnQueue.getMaxConcurrentSpawns() + ChatColor.GREEN + " (" + spawnQueue.getPickedCount() + " waiting)");
+
+        PasteScheduler pasteScheduler = plugin.getPasteScheduler();
+        sender.sendMessage(ChatColor.GREEN + "Queued Pastes: " + ChatColor.GOLD + pasteScheduler.getQueueLength());
+        PasteTask currentTask = pasteScheduler.getCurrentTask();
+        if (currentTask != null) {
+            sender.sendMessage(ChatColor.GREEN + "Current Paste: " + ChatColor.GOLD
+                    + Math.round(currentTask.getProgress() * 100) + "%" + ChatColor.GREEN + " at "
+                    + ChatColor.GOLD + currentTask.getLocation().getBlockX() + ", " + currentTask.getLocation().getBlockY()
+                    + ", " + currentTask.getLocation().getBlockZ());
+        }
+        sender.sendMessage(ChatColor.GREEN + "Completed Pastes: " + ChatColor.GOLD + pasteScheduler.getCompletedPastes());
+        sender.sendMessage(ChatColor.GREEN + "Paste Time Budget: " + ChatColor.GOLD + pasteScheduler.getTimeBudget() + "ms/tick");
+
+        ClipboardCache clipboardCache = plugin.getClipboardCache();
+        sender.sendMessage(ChatColor.GREEN + "Cached Schematics: " + ChatColor.GOLD + clipboardCache.getSize()
+                + "/" + clipboardCache.getMaxSize() + ChatColor.GREEN + " (" + clipboardCache.getHits() + " hits, "
+                + clipboardCache.getMisses() + " misses)");
+        return false;
+    }
+
+    /**
+     * Show how often each spawn check of a structure passed and rejected and how long it took.
+     *
+     * @param sender The sender of the command.
+     * @param name   The name of the structure.
+     */
+    private void showSpawnPredicateStats(CommandSender sender, String name) {
+        Structure structure = plugin.getStructureHandler().getStructure(name);
+        if (structure == null) {
+            sender.sendMessage(ChatColor.RED + "That structure does not exist!");
+            return;
+        }
+        sender.sendMessage(ChatColor.GREEN + "Spawn checks of " + ChatColor.GOLD + structure.getName()
+                + ChatColor.GREEN + " (in the order they are checked):");
+        for (SpawnPredicateChain.PredicateStats stats : structure.getSpawnPredicates().getStats()) {
+            double averageMicros = stats.getAverageNanos() / 1000.0;
+            sender.sendMessage(ChatColor.GREEN + stats.name() + ": " + ChatColor.GOLD + stats.passed()
+                    + ChatColor.GREEN + " passed, " + ChatColor.GOLD + stats.rejected() + ChatColor.GREEN + " rejected, "
+                    + ChatColor.GOLD + String.format("%.2f", averageMicros) + "\u00b5s" + ChatColor.GREEN + " average");
+        }
+    }
+
+}
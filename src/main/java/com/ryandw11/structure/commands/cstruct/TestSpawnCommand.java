@@ -5,7 +5,10 @@ import com.ryandw11.structure.commands.SubCommand;
 import com.ryandw11.structure.ignoreblocks.IgnoreBlocks;
 import com.ryandw11.structure.structure.Structure;
 import com.ryandw11.structure.structure.properties.BlockLevelLimit;
+import com.ryandw11.structure.structure.properties.StructurePlacement;
 import com.ryandw11.structure.structure.properties.StructureYSpawning;
+import com.ryandw11.structure.utils.ChunkEvaluationContext;
+import com.ryandw11.structure.utils.FlatnessMap;
 import org.bukkit.ChatColor;
 import org.bukkit.Chunk;
 import org.bukkit.Material;
@@ -75,9 +78,9 @@ public class TestSpawnCommand implements SubCommand {
         canSpawn(p, structure, bl, ch);
 
         // Allows the structures to no longer spawn on plant life.
-        if (structure.getStructureProperties().isIgnoringPlants() && ignoreBlocks.getBlocks().contains(bl.getType())) {
+        if (structure.getStructureProperties().isIgnoringPlants() && ignoreBlocks.isIgnored(bl.getType())) {
             for (int i = bl.getY(); i >= 4; i--) {
-                if (!ignoreBlocks.getBlocks().contains(ch.getBlock(8, i, 8).getType()) && !ch.getBlock(8, i, 8).getType().isAir()) {
+                if (!ignoreBlocks.isIgnored(ch.getBlock(8, i, 8).getType()) && !ch.getBlock(8, i, 8).getType().isAir()) {
                     bl = ch.getBlock(8, i, 8);
                     break;
                 }
@@ -133,12 +136,31 @@ public class TestSpawnCommand implements SubCommand {
         // This only triggers if it spawns on the top.
         if (structure.getStructureLimitations().getBlockLevelLimit().isEnabled()) {
             BlockLevelLimit limit = structure.getStructureLimitations().getBlockLevelLimit();
-            if (limit.getMode().equalsIgnoreCase("flat")) {
+            // The graded mode compares the surface heights of the ground instead of checking blocks.
+            if (limit.getMode().equalsIgnoreCase("graded")) {
+                int x1 = limit.getX1() + bl.getX();
+                int z1 = limit.getZ1() + bl.getZ();
+                int x2 = limit.getX2() + bl.getX();
+                int z2 = limit.getZ2() + bl.getZ();
+                FlatnessMap flatnessMap = new ChunkEvaluationContext(ch, ignoreBlocks).getFlatnessMap(x1, z1, x2, z2);
+                if (flatnessMap == null) {
+                    quickSendMessage(p, "&cFailed Block Level Limit test! Cannot check the ground, a chunk is not loaded!");
+                    return;
+                }
+                if (plugin.isDebug()) {
+                    p.sendMessage("Ground Height: " + flatnessMap.getMinY(x1, z1, x2, z2) + " to " + flatnessMap.getMaxY(x1, z1, x2, z2)
+                            + " (average " + String.format("%.2f", flatnessMap.getMeanY(x1, z1, x2, z2)) + ", standard deviation "
+                            + String.format("%.2f", flatnessMap.getStandardDeviation(x1, z1, x2, z2)) + ")");
+                }
+                quickSendMessage(p, "&aBlocks From Flat: " + flatnessMap.getDeviation(x1, z1, x2, z2, bl.getY()));
+                if (!flatnessMap.passes(limit, bl.getX(), bl.getY(), bl.getZ()))
+                    quickSendMessage(p, "&cFailed Block Level Limit test! The ground is not flat enough!");
+            } else if (limit.getMode().equalsIgnoreCase("flat")) {
                 for (int x = limit.getX1() + bl.getX(); x <= limit.getX2() + bl.getX(); x++) {
                     for (int z = limit.getZ1() + bl.getZ(); z <= limit.getZ2() + bl.getZ(); z++) {
                         Block top = ch.getWorld().getBlockAt(x, bl.getY() + 1, z);
                         Block bottom = ch.getWorld().getBlockAt(x, bl.getY() - 1, z);
-                        if (!(top.getType().isAir() || ignoreBlocks.getBlocks().contains(top.getType()))) {
+                        if (!(top.getType().isAir() || ignoreBlocks.isIgnored(top.getType()))) {
                             // Output debug info if in debug mode.
                             if (plugin.isDebug()) {
                                 p.sendMessage(top.getLocation() + " || TOP FAIL");
@@ -163,7 +185,7 @@ public class TestSpawnCommand implements SubCommand {
                     for (int z = limit.getZ1() + bl.getZ(); z <= limit.getZ2() + bl.getZ(); z++) {
                         Block top = ch.getWorld().getBlockAt(x, bl.getY() + 1, z);
                         Block bottom = ch.getWorld().getBlockAt(x, bl.getY() - 1, z);
-                        if (!(top.getType().isAir() || ignoreBlocks.getBlocks().contains(top.getType())))
+                        if (!(top.getType().isAir() || ignoreBlocks.isIgnored(top.getType())))
                             error++;
                         if (bottom.getType().isAir())
                             error++;
@@ -195,6 +217,12 @@ public class TestSpawnCommand implements SubCommand {
         if (Math.abs(block.getZ()) < structure.getStructureLocation().getZLimitation())
             quickSendMessage(p, "&cFailed Z Limitation test! Cannot spawn this close to (0, 0)!");
 
+        // Check to see if the chunk is picked by the seed based placement.
+        StructurePlacement placement = structure.getStructureLocation().getPlacement().orElse(null);
+        if (placement != null && !placement.isCandidate(chunk.getWorld().getSeed(), placement.getSalt(structure.getName()),
+                chunk.getX(), chunk.getZ()))
+            quickSendMessage(p, "&cFailed Placement test! This chunk is not a placement candidate chunk!");
+
         if (!CustomStructures.getInstance().getStructureHandler().validDistance(structure, block.getLocation()))
             quickSendMessage(p, "&cFailed Distance Limitation test! Cannot spawn this close to another structure!");
 
@@ -2,7 +2,11 @@ package com.ryandw11.structure.exceptions;
 
 /**
  * This exception occurs when an API method is rate limited due to performance concerns.
+ *
+ * @deprecated No API method is rate limited anymore. Finding nearby structures only searches the regions near the
+ * location.
  */
+@Deprecated
 public class RateLimitException extends RuntimeException{
     public RateLimitException(String message) {
         super(message);
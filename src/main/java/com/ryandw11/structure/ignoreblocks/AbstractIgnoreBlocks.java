@@ -0,0 +1,31 @@
+package com.ryandw11.structure.ignoreblocks;
+
+import org.bukkit.Material;
+
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * The base of the built-in ignore block lists.
+ *
+ * <p>The list of blocks is copied into an EnumSet the first time it is used, so checking if a block type is ignored
+ * does not go through the whole list.</p>
+ */
+public abstract class AbstractIgnoreBlocks implements IgnoreBlocks {
+
+    private volatile Set<Material> blockSet;
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean isIgnored(Material material) {
+        Set<Material> set = blockSet;
+        if (set == null) {
+            set = EnumSet.noneOf(Material.class);
+            set.addAll(getBlocks());
+            blockSet = set;
+        }
+        return set.contains(material);
+    }
+}
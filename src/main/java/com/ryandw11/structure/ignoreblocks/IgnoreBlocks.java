@@ -6,4 +6,14 @@ import java.util.List;
 
 public interface IgnoreBlocks {
     List<Material> getBlocks();
+
+    /**
+     * Check if a block type is ignored.
+     *
+     * @param material The block type.
+     * @return If the block type is ignored.
+     */
+    default boolean isIgnored(Material material) {
+        return getBlocks().contains(material);
+    }
 }
@@ -7,7 +7,7 @@ import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 
-public class IgnoreBlocks_1_14 implements IgnoreBlocks{
+public class IgnoreBlocks_1_14 extends AbstractIgnoreBlocks {
 
     private final List<Material> plantBlocks = Collections.unmodifiableList(new ArrayList<>(Arrays.asList(
             // General BLocks
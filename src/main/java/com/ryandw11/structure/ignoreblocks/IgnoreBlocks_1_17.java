@@ -10,7 +10,7 @@ import java.util.List;
 /**
  * Ignore blocks for 1.17 - 1.18
  */
-public class IgnoreBlocks_1_17 implements IgnoreBlocks {
+public class IgnoreBlocks_1_17 extends AbstractIgnoreBlocks {
 
     private final List<Material> plantBlocks = Collections.unmodifiableList(new ArrayList<>(Arrays.asList(
             // General BLocks
@@ -9,7 +9,7 @@ import java.util.List;
  * <p>
  * TODO Maybe use built in list defined by data packs? Or have the option
  */
-public class IgnoreBlocks_1_19 implements IgnoreBlocks {
+public class IgnoreBlocks_1_19 extends AbstractIgnoreBlocks {
 
     private final List<Material> ignoreBlocks = List.of(
             // General BLocks
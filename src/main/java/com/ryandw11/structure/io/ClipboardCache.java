@@ -0,0 +1,387 @@
+package com.ryandw11.structure.io;
+
+import com.sk89q.worldedit.WorldEditException;
+import com.sk89q.worldedit.bukkit.BukkitAdapter;
+import com.sk89q.worldedit.command.FlattenedClipboardTransform;
+import com.sk89q.worldedit.extent.clipboard.BlockArrayClipboard;
+import com.sk89q.worldedit.extent.clipboard.Clipboard;
+import com.sk89q.worldedit.extent.clipboard.io.ClipboardFormat;
+import com.sk89q.worldedit.extent.clipboard.io.ClipboardFormats;
+import com.sk89q.worldedit.extent.clipboard.io.ClipboardReader;
+import com.sk89q.worldedit.function.operation.ForwardExtentCopy;
+import com.sk89q.worldedit.function.operation.Operations;
+import com.sk89q.worldedit.math.BlockVector3;
+import com.sk89q.worldedit.math.transform.AffineTransform;
+import com.sk89q.worldedit.world.block.BaseBlock;
+import com.sk89q.worldedit.world.block.BlockType;
+import org.bukkit.Material;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A size-bounded cache of decoded schematic clipboards.
+ *
+ * <p>Entries are keyed by the path, size and last modified time of the schematic file. This means that
+ * replacing or editing a schematic automatically causes it to be read from the disk again.</p>
+ *
+ * <p>When the cache is full, the least recently used clipboard is evicted.</p>
+ *
+ * <p>The cache can also hold copies of a schematic that are rotated by a multiple of 90 degrees. Those copies
+ * can be pasted directly without WorldEdit having to transform every block during the paste.</p>
+ *
+ * <p>Copies of a schematic with the 'replacement_blocks' of a structure applied are cached as well, so the
+ * replaced blocks are written to the world in the same paste as the rest of the structure.</p>
+ *
+ * <p><b>Note:</b> Cached clipboards are shared between every paste of a schematic. They must be treated as
+ * read-only; rotations and other transformations should be applied through a
+ * {@link com.sk89q.worldedit.session.ClipboardHolder} instead of modifying the clipboard.</p>
+ *
+ * <p>This class is thread safe.</p>
+ */
+public class ClipboardCache {
+
+    private final int maxSize;
+    private final Map<Key, Clipboard> cache;
+    // The clipboards that are being created, guarded by the lock of the cache.
+    private final Map<Key, CompletableFuture<Clipboard>> loading = new HashMap<>();
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    /**
+     * Construct the clipboard cache.
+     *
+     * @param maxSize The maximum number of clipboards to keep in memory. (0 disables caching).
+     */
+    public ClipboardCache(int maxSize) {
+        this.maxSize = Math.max(0, maxSize);
+        this.cache = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, Clipboard> eldest) {
+                if (size() > ClipboardCache.this.maxSize) {
+                    evictions.incrementAndGet();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Get the clipboard of a schematic file.
+     *
+     * <p>The clipboard is read from the disk if it is not cached or if the file changed since it was cached.</p>
+     *
+     * @param schematicFile The schematic file.
+     * @return The clipboard. (Null if the file is not a valid schematic format).
+     * @throws IOException If an error occurs while reading the file.
+     */
+    @Nullable
+    public Clipboard getClipboard(File schematicFile) throws IOException {
+        return getClipboard(schematicFile, 0);
+    }
+
+    /**
+     * Get the clipboard of a schematic file rotated by a number of 90 degree turns.
+     *
+     * <p>The rotated clipboard has the same origin as the original clipboard, so it can be pasted at the same
+     * location without a transform. Its region is the exact bounding box of the rotated schematic.</p>
+     *
+     * <p>The clipboard is read (and rotated) if it is not cached or if the file changed since it was cached.</p>
+     *
+     * @param schematicFile The schematic file.
+     * @param quarterTurns  The number of 90 degree turns around the Y axis. (Same direction as
+     *                      {@link AffineTransform#rotateY(double)}).
+     * @return The rotated clipboard. (Null if the file is not a valid schematic format).
+     * @throws IOException If an error occurs while reading the file.
+     */
+    @Nullable
+    public Clipboard getClipboard(File schematicFile, int quarterTurns) throws IOException {
+        return getClipboard(schematicFile, quarterTurns, Collections.emptyMap());
+    }
+
+    /**
+     * Get the clipboard of a schematic file rotated by a number of 90 degree turns with blocks replaced.
+     *
+     * <p>Every block in the clipboard with a type that is a key of the replacement map is replaced by the
+     * default state of the mapped type. The rotation is applied before the blocks are replaced.</p>
+     *
+     * <p>The clipboard is read (rotated and replaced) if it is not cached or if the file changed since it was cached.</p>
+     *
+     * @param schematicFile The schematic file.
+     * @param quarterTurns  The number of 90 degree turns around the Y axis. (Same direction as
+     *                      {@link AffineTransform#rotateY(double)}).
+     * @param replacements  The map of block types to replace.
+     * @return The rotated clipboard with the blocks replaced. (Null if the file is not a valid schematic format).
+     * @throws IOException If an error occurs while reading the file.
+     */
+    @Nullable
+    public Clipboard getClipboard(File schematicFile, int quarterTurns, Map<Material, Material> replacements) throws IOException {
+        Key key = Key.of(schematicFile, Math.floorMod(quarterTurns, 4), replacements);
+        synchronized (cache) {
+            Clipboard clipboard = cache.get(key);
+            if (clipboard != null) {
+                hits.incrementAndGet();
+                return clipboard;
+            }
+        }
+        // Only the requested clipboard counts, not the clipboards it is created from.
+        misses.incrementAndGet();
+        return load(key, schematicFile);
+    }
+
+    /**
+     * Get a clipboard from the cache, or create it if it is not cached.
+     *
+     * <p>A clipboard is only created once at a time. If another thread is already creating it, this waits for
+     * that thread instead of reading the schematic again.</p>
+     *
+     * @param key           The key of the clipboard.
+     * @param schematicFile The schematic file.
+     * @return The clipboard. (Null if the file is not a valid schematic format).
+     * @throws IOException If an error occurs while reading the file.
+     */
+    @Nullable
+    private Clipboard load(Key key, File schematicFile) throws IOException {
+        CompletableFuture<Clipboard> future;
+        CompletableFuture<Clipboard> inProgress;
+        synchronized (cache) {
+            Clipboard cached = cache.get(key);
+            if (cached != null)
+                return cached;
+            future = new CompletableFuture<>();
+            inProgress = loading.putIfAbsent(key, future);
+        }
+        // Wait outside the lock, the thread creating the clipboard needs it to cache the clipboard.
+        if (inProgress != null)
+            return await(inProgress);
+
+        try {
+            Clipboard clipboard = createClipboard(key, schematicFile);
+            if (clipboard != null && maxSize > 0) {
+                synchronized (cache) {
+                    // Remove outdated versions of the same file.
+                    cache.keySet().removeIf(other -> other.path().equals(key.path())
+                            && (other.size() != key.size() || other.lastModified() != key.lastModified()));
+                    cache.put(key, clipboard);
+                }
+            }
+            future.complete(clipboard);
+            return clipboard;
+        } catch (Throwable ex) {
+            future.completeExceptionally(ex);
+            throw ex;
+        } finally {
+            synchronized (cache) {
+                loading.remove(key);
+            }
+        }
+    }
+
+    /**
+     * Wait for another thread to finish creating a clipboard.
+     *
+     * @param future The clipboard that is being created.
+     * @return The clipboard. (Null if the file is not a valid schematic format).
+     * @throws IOException If an error occurred while reading the file.
+     */
+    @Nullable
+    private static Clipboard await(CompletableFuture<Clipboard> future) throws IOException {
+        try {
+            return future.join();
+        } catch (CompletionException ex) {
+            if (ex.getCause() instanceof IOException ioException)
+                throw ioException;
+            if (ex.getCause() instanceof RuntimeException runtimeException)
+                throw runtimeException;
+            if (ex.getCause() instanceof Error error)
+                throw error;
+            throw ex;
+        }
+    }
+
+    /**
+     * Create a clipboard by reading the schematic or by transforming the clipboard it is based on.
+     *
+     * @param key           The key of the clipboard.
+     * @param schematicFile The schematic file.
+     * @return The clipboard. (Null if the file is not a valid schematic format).
+     * @throws IOException If an error occurs while reading the file.
+     */
+    @Nullable
+    private Clipboard createClipboard(Key key, File schematicFile) throws IOException {
+        if (!key.replacements().isEmpty()) {
+            Clipboard original = load(key.withReplacements(Collections.emptyMap()), schematicFile);
+            return original == null ? null : replaceBlocks(original, key.replacements());
+        }
+        if (key.rotation() == 0)
+            return readClipboard(schematicFile);
+        Clipboard original = load(key.withRotation(0), schematicFile);
+        return original == null ? null : rotateClipboard(original, key.rotation());
+    }
+
+    /**
+     * Read and decode a schematic file.
+     *
+     * @param schematicFile The schematic file.
+     * @return The clipboard. (Null if the file is not a valid schematic format).
+     * @throws IOException If an error occurs while reading the file.
+     */
+    @Nullable
+    private Clipboard readClipboard(File schematicFile) throws IOException {
+        ClipboardFormat format = ClipboardFormats.findByFile(schematicFile);
+        if (format == null)
+            return null;
+
+        try (ClipboardReader reader = format.getReader(new FileInputStream(schematicFile))) {
+            return reader.read();
+        }
+    }
+
+    /**
+     * Create a rotated copy of a clipboard.
+     *
+     * @param clipboard    The clipboard to rotate.
+     * @param quarterTurns The number of 90 degree turns around the Y axis. (1 to 3).
+     * @return The rotated copy of the clipboard.
+     * @throws IOException If WorldEdit is unable to rotate the clipboard.
+     */
+    private Clipboard rotateClipboard(Clipboard clipboard, int quarterTurns) throws IOException {
+        FlattenedClipboardTransform result = FlattenedClipboardTransform.transform(clipboard,
+                new AffineTransform().rotateY(quarterTurns * 90));
+        BlockArrayClipboard rotated = new BlockArrayClipboard(result.getTransformedRegion());
+        rotated.setOrigin(clipboard.getOrigin());
+        try {
+            Operations.complete(result.toOperation(rotated));
+        } catch (WorldEditException ex) {
+            throw new IOException("Unable to rotate the schematic.", ex);
+        }
+        return rotated;
+    }
+
+    /**
+     * Create a copy of a clipboard with blocks replaced.
+     *
+     * @param clipboard    The clipboard to copy.
+     * @param replacements The map of block types to replace.
+     * @return The copy of the clipboard with the blocks replaced.
+     * @throws IOException If WorldEdit is unable to copy the clipboard.
+     */
+    private Clipboard replaceBlocks(Clipboard clipboard, Map<Material, Material> replacements) throws IOException {
+        BlockArrayClipboard replaced = new BlockArrayClipboard(clipboard.getRegion().clone());
+        replaced.setOrigin(clipboard.getOrigin());
+
+        Map<BlockType, BaseBlock> replacementBlocks = new HashMap<>();
+        for (Map.Entry<Material, Material> entry : replacements.entrySet()) {
+            replacementBlocks.put(BukkitAdapter.asBlockType(entry.getKey()),
+                    BukkitAdapter.asBlockType(entry.getValue()).getDefaultState().toBaseBlock());
+        }
+
+        try {
+            Operations.complete(new ForwardExtentCopy(clipboard, clipboard.getRegion(), clipboard.getRegion().getMinimumPoint(),
+                    replaced, clipboard.getRegion().getMinimumPoint()));
+            for (BlockVector3 point : replaced.getRegion()) {
+                BaseBlock replacement = replacementBlocks.get(replaced.getBlock(point).getBlockType());
+                if (replacement != null)
+                    replaced.setBlock(point, replacement);
+            }
+        } catch (WorldEditException ex) {
+            throw new IOException("Unable to replace the blocks of the schematic.", ex);
+        }
+        return replaced;
+    }
+
+    /**
+     * Remove all clipboards from the cache.
+     */
+    public void clear() {
+        synchronized (cache) {
+            cache.clear();
+        }
+    }
+
+    /**
+     * Get the number of clipboards currently cached.
+     *
+     * @return The number of clipboards currently cached.
+     */
+    public int getSize() {
+        synchronized (cache) {
+            return cache.size();
+        }
+    }
+
+    /**
+     * Get the maximum number of clipboards that can be cached.
+     *
+     * @return The maximum number of clipboards that can be cached.
+     */
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * Get the number of times a clipboard was found in the cache.
+     *
+     * @return The number of cache hits.
+     */
+    public long getHits() {
+        return hits.get();
+    }
+
+    /**
+     * Get the number of times a clipboard was not found in the cache.
+     *
+     * <p>Reading the schematic to create a rotated or replaced clipboard does not count as another miss.</p>
+     *
+     * @return The number of cache misses.
+     */
+    public long getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * Get the number of clipboards that were removed to make room for others.
+     *
+     * @return The number of evictions.
+     */
+    public long getEvictions() {
+        return evictions.get();
+    }
+
+    /**
+     * Identifies a specific version, rotation and block replacement of a schematic file.
+     *
+     * @param path         The absolute path of the file.
+     * @param size         The size of the file.
+     * @param lastModified The last modified time of the file.
+     * @param rotation     The number of 90 degree turns of the clipboard.
+     * @param replacements The block types replaced in the clipboard.
+     */
+    private record Key(String path, long size, long lastModified, int rotation, Map<Material, Material> replacements) {
+        static Key of(File file, int rotation, Map<Material, Material> replacements) {
+            return new Key(file.getAbsolutePath(), file.length(), file.lastModified(), rotation,
+                    replacements.isEmpty() ? Collections.emptyMap() : Collections.unmodifiableMap(new EnumMap<>(replacements)));
+        }
+
+        Key withRotation(int rotation) {
+            return new Key(path, size, lastModified, rotation, replacements);
+        }
+
+        Key withReplacements(Map<Material, Material> replacements) {
+            return new Key(path, size, lastModified, rotation, replacements);
+        }
+    }
+}
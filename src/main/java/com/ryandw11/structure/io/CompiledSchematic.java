@@ -0,0 +1,213 @@
+package com.ryandw11.structure.io;
+
+import com.ryandw11.structure.exceptions.StructureConfigurationException;
+import com.ryandw11.structure.loottables.LootTableType;
+import me.ryandw11.ods.ObjectDataStructure;
+import me.ryandw11.ods.tags.IntTag;
+import me.ryandw11.ods.tags.ListTag;
+import me.ryandw11.ods.tags.ObjectTag;
+import me.ryandw11.ods.tags.StringTag;
+import org.bukkit.Location;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The decoded contents of a compiled schematic (.cschem) file.
+ *
+ * <p>Positions are stored as packed arrays of relative coordinates in the form of {x0, y0, z0, x1, y1, z1, ...}.
+ * They are relative to the minimum point of the schematic. The arrays returned by this class are shared and
+ * must not be modified.</p>
+ *
+ * <p>Version 2 compiled schematics also store the loot table type of containers and the text of signs.
+ * Version 1 files can still be read, they just do not contain that extra information.</p>
+ *
+ * <p>Reading a compiled schematic does not touch the world, so it is safe to do off of the main thread.
+ * Once read, this class is immutable.</p>
+ */
+public class CompiledSchematic {
+
+    private final File file;
+    private final long size;
+    private final long lastModified;
+
+    private final int version;
+    private final int[] containerPositions;
+    private final LootTableType[] containerLootTableTypes;
+    private final int[] signPositions;
+    private final List<List<String>> signLines;
+    private final boolean[] actionSigns;
+
+    private CompiledSchematic(File file, long size, long lastModified, int version, int[] containerPositions,
+                              LootTableType[] containerLootTableTypes, int[] signPositions, List<List<String>> signLines) {
+        this.file = file;
+        this.size = size;
+        this.lastModified = lastModified;
+        this.version = version;
+        this.containerPositions = containerPositions;
+        this.containerLootTableTypes = containerLootTableTypes;
+        this.signPositions = signPositions;
+        this.signLines = signLines;
+
+        this.actionSigns = new boolean[signLines.size()];
+        for (int i = 0; i < actionSigns.length; i++) {
+            actionSigns[i] = isActionSign(signLines.get(i));
+        }
+    }
+
+    /**
+     * Read a compiled schematic file.
+     *
+     * @param file The compiled schematic file.
+     * @return The decoded compiled schematic.
+     * @throws StructureConfigurationException If the file is not a valid compiled schematic.
+     */
+    public static CompiledSchematic read(File file) {
+        // Stat the file before reading it, so a change during the read is detected later.
+        long size = file.length();
+        long lastModified = file.lastModified();
+
+        ObjectDataStructure ods = new ObjectDataStructure(file);
+        IntTag versionTag = ods.get("ver");
+        int version = versionTag == null ? 1 : versionTag.getValue();
+        ListTag<ObjectTag> containerTags = ods.get("containers");
+        ListTag<ObjectTag> signTags = ods.get("signs");
+        if (containerTags == null || signTags == null)
+            throw new StructureConfigurationException("The compiled schematic " + file.getName() + " is not valid. " +
+                    "It does not contain the containers and signs of the schematic.");
+
+        List<ObjectTag> containerList = containerTags.getValue();
+        int[] containerPositions = new int[containerList.size() * 3];
+        LootTableType[] containerLootTableTypes = new LootTableType[containerList.size()];
+        for (int i = 0; i < containerList.size(); i++) {
+            ObjectTag con = containerList.get(i);
+            BlockTag blockTag = new BlockTag(con);
+            putPosition(containerPositions, i, blockTag.getLocation());
+            StringTag lootType = (StringTag) con.getTag("loot_type");
+            containerLootTableTypes[i] = lootType == null
+                    ? LootTableType.valueOf(blockTag.getType()) : LootTableType.valueOf(lootType.getValue());
+        }
+
+        List<ObjectTag> signList = signTags.getValue();
+        int[] signPositions = new int[signList.size() * 3];
+        List<List<String>> signLines = new ArrayList<>();
+        for (int i = 0; i < signList.size(); i++) {
+            ObjectTag sign = signList.get(i);
+            putPosition(signPositions, i, new BlockTag(sign).getLocation());
+            List<String> lines = null;
+            @SuppressWarnings("unchecked")
+            ListTag<StringTag> lineTags = (ListTag<StringTag>) sign.getTag("lines");
+            if (lineTags != null) {
+                lines = new ArrayList<>();
+                for (StringTag line : lineTags.getValue()) {
+                    lines.add(line.getValue());
+                }
+                lines = Collections.unmodifiableList(lines);
+            }
+            signLines.add(lines);
+        }
+
+        return new CompiledSchematic(file, size, lastModified, version, containerPositions, containerLootTableTypes,
+                signPositions, Collections.unmodifiableList(signLines));
+    }
+
+    /**
+     * Store a location in a packed position array.
+     *
+     * @param positions The packed position array.
+     * @param index     The index of the position.
+     * @param location  The location to store.
+     */
+    private static void putPosition(int[] positions, int index, Location location) {
+        positions[index * 3] = location.getBlockX();
+        positions[index * 3 + 1] = location.getBlockY();
+        positions[index * 3 + 2] = location.getBlockZ();
+    }
+
+    /**
+     * Check if the file changed since it was read.
+     *
+     * @return If the file changed since it was read.
+     */
+    public boolean isOutdated() {
+        return file.length() != size || file.lastModified() != lastModified;
+    }
+
+    /**
+     * Get the version of the compiled schematic file.
+     *
+     * @return The version of the compiled schematic file.
+     */
+    public int getVersion() {
+        return version;
+    }
+
+    /**
+     * Get the packed relative positions of the containers.
+     *
+     * @return The packed relative positions of the containers.
+     */
+    public int[] getContainerPositions() {
+        return containerPositions;
+    }
+
+    /**
+     * Get the loot table type of a container.
+     *
+     * @param index The index of the container.
+     * @return The loot table type of the container. (Null if the container has no loot table type).
+     */
+    @Nullable
+    public LootTableType getContainerLootTableType(int index) {
+        return containerLootTableTypes[index];
+    }
+
+    /**
+     * Get the packed relative positions of the signs.
+     *
+     * @return The packed relative positions of the signs.
+     */
+    public int[] getSignPositions() {
+        return signPositions;
+    }
+
+    /**
+     * Get the four lines of a sign.
+     *
+     * @param index The index of the sign.
+     * @return The lines of the sign. (Null if the file was compiled before sign text was stored).
+     */
+    @Nullable
+    public List<String> getSignLines(int index) {
+        return signLines.get(index);
+    }
+
+    /**
+     * Check if a sign could do something when the structure is pasted.
+     *
+     * <p>Only signs with a first line in the form of [type] are processed by the plugin. If the text
+     * of the sign is not known, this returns true.</p>
+     *
+     * @param index The index of the sign.
+     * @return If the sign could do something when the structure is pasted.
+     */
+    public boolean isActionSign(int index) {
+        return actionSigns[index];
+    }
+
+    /**
+     * Check if the lines of a sign are in the form of an action sign.
+     *
+     * @param lines The lines of the sign. (Null if not known).
+     * @return If the sign could do something when the structure is pasted.
+     */
+    private static boolean isActionSign(@Nullable List<String> lines) {
+        if (lines == null || lines.isEmpty())
+            return true;
+        String firstLine = lines.get(0).trim();
+        return firstLine.startsWith("[") && firstLine.endsWith("]");
+    }
+}
@@ -0,0 +1,195 @@
+package com.ryandw11.structure.io;
+
+import com.ryandw11.structure.CustomStructures;
+import com.ryandw11.structure.loottables.LootTableType;
+import com.sk89q.jnbt.CompoundTag;
+import com.sk89q.worldedit.bukkit.BukkitAdapter;
+import com.sk89q.worldedit.extent.clipboard.Clipboard;
+import com.sk89q.worldedit.extent.clipboard.io.ClipboardFormat;
+import com.sk89q.worldedit.extent.clipboard.io.ClipboardFormats;
+import com.sk89q.worldedit.extent.clipboard.io.ClipboardReader;
+import com.sk89q.worldedit.math.BlockVector3;
+import com.sk89q.worldedit.registry.state.Property;
+import com.sk89q.worldedit.world.block.BaseBlock;
+import me.ryandw11.ods.ObjectDataStructure;
+import me.ryandw11.ods.tags.IntTag;
+import me.ryandw11.ods.tags.ListTag;
+import me.ryandw11.ods.tags.StringTag;
+import net.md_5.bungee.api.chat.TextComponent;
+import net.md_5.bungee.chat.ComponentSerializer;
+import org.bukkit.Location;
+import org.bukkit.Material;
+import org.bukkit.Tag;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Creates compiled schematic (.cschem) files from the block data of a clipboard.
+ *
+ * <p>Compiling only reads the clipboard and never touches the world, so it is safe to do off of the main thread.
+ * The compiled schematic is first written to a temporary file that is then renamed, so a compiled schematic
+ * that is being read is never half written.</p>
+ */
+public class SchematicCompiler {
+
+    private SchematicCompiler() {
+    }
+
+    /**
+     * Read a schematic file and compile it.
+     *
+     * @param schematicFile The schematic file.
+     * @param output        The compiled schematic file to write.
+     * @throws IOException If the schematic cannot be read or the compiled schematic cannot be written.
+     */
+    public static void compile(File schematicFile, File output) throws IOException {
+        ClipboardFormat format = ClipboardFormats.findByFile(schematicFile);
+        if (format == null)
+            throw new IOException("Invalid schematic format for schematic " + schematicFile.getName() + "!");
+
+        Clipboard clipboard;
+        try (ClipboardReader reader = format.getReader(new FileInputStream(schematicFile))) {
+            clipboard = reader.read();
+        }
+        compile(clipboard, output);
+    }
+
+    /**
+     * Compile a clipboard.
+     *
+     * <p>Positions are stored relative to the minimum point of the clipboard region.</p>
+     *
+     * @param clipboard The clipboard to compile.
+     * @param output    The compiled schematic file to write.
+     * @throws IOException If the compiled schematic cannot be written.
+     */
+    public static void compile(Clipboard clipboard, File output) throws IOException {
+        IntTag intTag = new IntTag("ver", CustomStructures.COMPILED_STRUCT_VER);
+        ListTag<BlockTag> containers = new ListTag<>("containers", new ArrayList<>());
+        ListTag<BlockTag> signs = new ListTag<>("signs", new ArrayList<>());
+
+        BlockVector3 min = clipboard.getRegion().getMinimumPoint();
+        for (BlockVector3 point : clipboard.getRegion()) {
+            BaseBlock block = clipboard.getFullBlock(point);
+            Material type = BukkitAdapter.adapt(block.getBlockType());
+            if (type == null || type.isAir())
+                continue;
+
+            Location relative = new Location(null, point.getX() - min.getX(), point.getY() - min.getY(), point.getZ() - min.getZ());
+
+            LootTableType lootTableType = LootTableType.valueOf(type);
+            if (lootTableType != null || hasTag(block, "Items")) {
+                // Only one side of a double chest needs to be stored.
+                if (isRightSideOfChest(block))
+                    continue;
+                BlockTag tag = new BlockTag(type, relative);
+                if (lootTableType != null)
+                    tag.addTag(new StringTag("loot_type", lootTableType.name()));
+                containers.addTag(tag);
+            } else if (Tag.SIGNS.isTagged(type)) {
+                BlockTag tag = new BlockTag(type, relative);
+                ListTag<StringTag> lineTags = new ListTag<>("lines", new ArrayList<>());
+                for (String line : getSignLines(block)) {
+                    lineTags.addTag(new StringTag("line", line));
+                }
+                tag.addTag(lineTags);
+                signs.addTag(tag);
+            }
+        }
+
+        File temp = new File(output.getParentFile(), output.getName() + ".tmp");
+        try {
+            ObjectDataStructure ods = new ObjectDataStructure(temp);
+            ods.save(Arrays.asList(intTag, containers, signs));
+            try {
+                Files.move(temp.toPath(), output.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException ex) {
+                Files.move(temp.toPath(), output.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            // Do not leave a partial file behind if the save or move failed.
+            Files.deleteIfExists(temp.toPath());
+        }
+    }
+
+    /**
+     * Get the compiled schematic file that belongs next to a schematic file.
+     * <p>Ex: demo.schem becomes demo.schem.cschem</p>
+     *
+     * <p>The extension of the schematic is kept, so demo.schem and demo.schematic do not share a compiled
+     * schematic.</p>
+     *
+     * @param schematicFile The schematic file.
+     * @return The compiled schematic file.
+     */
+    public static File getCompiledFile(File schematicFile) {
+        return new File(schematicFile.getParentFile(), schematicFile.getName() + ".cschem");
+    }
+
+    /**
+     * Check if a compiled schematic exists and is newer than its schematic.
+     *
+     * @param schematicFile The schematic file.
+     * @param compiledFile  The compiled schematic file.
+     * @return If the compiled schematic is up-to-date.
+     */
+    public static boolean isUpToDate(File schematicFile, File compiledFile) {
+        return compiledFile.exists() && compiledFile.lastModified() >= schematicFile.lastModified();
+    }
+
+    /**
+     * Check if a block has a tag in its NBT data.
+     *
+     * @param block The block.
+     * @param key   The key of the tag.
+     * @return If the block has the tag.
+     */
+    private static boolean hasTag(BaseBlock block, String key) {
+        CompoundTag nbt = block.getNbtData();
+        return nbt != null && nbt.containsKey(key);
+    }
+
+    /**
+     * Check if a block is the right side of a double chest.
+     *
+     * @param block The block.
+     * @return If the block is the right side of a double chest.
+     */
+    private static boolean isRightSideOfChest(BaseBlock block) {
+        Property<?> typeProperty = block.getBlockType().getPropertyMap().get("type");
+        if (typeProperty == null)
+            return false;
+        return "right".equals(String.valueOf(block.getState(typeProperty)));
+    }
+
+    /**
+     * Get the four lines of a sign from its NBT data.
+     *
+     * <p>The lines are converted from json to plain text.</p>
+     *
+     * @param block The sign block.
+     * @return The lines of the sign.
+     */
+    private static List<String> getSignLines(BaseBlock block) {
+        List<String> lines = new ArrayList<>();
+        CompoundTag nbt = block.getNbtData();
+        for (int i = 1; i <= 4; i++) {
+            String line = nbt == null ? "" : nbt.getString("Text" + i);
+            try {
+                line = TextComponent.toPlainText(ComponentSerializer.parse(line));
+            } catch (RuntimeException ex) {
+                // The line is not json, keep it as is.
+            }
+            lines.add(line);
+        }
+        return lines;
+    }
+}
@@ -1,7 +1,6 @@
 package com.ryandw11.structure.io;
 
 import com.ryandw11.structure.CustomStructures;
-import com.ryandw11.structure.exceptions.RateLimitException;
 import com.ryandw11.structure.exceptions.StructureNotFoundException;
 import com.ryandw11.structure.exceptions.StructureReadWriteException;
 import com.ryandw11.structure.structure.Structure;
@@ -10,16 +9,22 @@ import com.ryandw11.structure.utils.Pair;
 import org.bukkit.Bukkit;
 import org.bukkit.Location;
 import org.bukkit.World;
+import org.bukkit.configuration.ConfigurationSection;
 import org.bukkit.configuration.file.FileConfiguration;
 import org.bukkit.configuration.file.YamlConfiguration;
 import org.bukkit.scheduler.BukkitRunnable;
+import org.bukkit.util.BoundingBox;
+import org.jetbrains.annotations.Nullable;
 
 import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CopyOnWriteArrayList;
@@ -27,19 +32,25 @@ import java.util.concurrent.CopyOnWriteArrayList;
 /**
  * This handles the Async IO System for saving and loading structures from the logs.
  *
+ * <p>New structures are added to the end of append-only binary logs every 15 seconds, so saving does not slow
+ * down as more structures are logged. Every world is split into regions of 512 by 512 blocks with their own log
+ * file in <code>data/structures/{world}/</code>, so looking up a location only reads the regions around it. See
+ * {@link StructureRegionStore}.</p>
+ *
+ * <p>The bounding box of every spawned structure is logged as well, so the structures at a block or in an area can
+ * be found with {@link #getStructuresAt(Location)} and {@link #getStructuresIn(World, BoundingBox)}.</p>
+ *
  * <p>If you want to find pasted structures you can using the class. Get it from
- * {@link StructureHandler#getSpawnedStructures()}.</p>
+ * {@link StructureHandler#getStructureFileReader()}.</p>
  *
  * <p>Note: This feature needs to be enabled by the user in the config.</p>
  */
 public class StructureFileReader extends BukkitRunnable {
-    private final Map<Location, Structure> structuresToSave = new ConcurrentHashMap<>();
-    private final List<Pair<Location, CompletableFuture<Structure>>> structuresToGet = new CopyOnWriteArrayList<>();
+    private final Map<LoggedPosition, Structure> structuresToSave = new ConcurrentHashMap<>();
+    private final Map<LoggedPosition, Pair<Structure, StructureLogFile.Bounds>> boundsToSave = new ConcurrentHashMap<>();
     private final List<Pair<Structure, CompletableFuture<List<Location>>>> locationsToGet = new CopyOnWriteArrayList<>();
-    private final List<Pair<Location, CompletableFuture<Pair<Structure, Location>>>> findNearby = new CopyOnWriteArrayList<>();
 
-    private final File structureFile;
-    private final FileConfiguration fileConfiguration;
+    private final StructureRegionStore store;
 
     private final CustomStructures plugin;
 
@@ -48,27 +59,23 @@ public class StructureFileReader extends BukkitRunnable {
      *
      * <p>Throws {@link StructureReadWriteException} if it cannot access the needed files.</p>
      *
+     * <p>If a <code>structures.yml</code> file from an older version exists, its structures are imported into the
+     * region files once and the file is renamed to end with <code>.imported</code>.</p>
+     *
      * @param plugin The plugin.
      */
     public StructureFileReader(CustomStructures plugin) {
         this.plugin = plugin;
 
-        structureFile = new File(plugin.getDataFolder() + "/data/structures.yml");
-        if (!structureFile.exists()) {
-            try {
-                File directory = new File(plugin.getDataFolder() + "/data");
-                boolean result = true;
-                if (!directory.exists())
-                    result = directory.mkdir();
-                result &= structureFile.createNewFile();
-                if (!result) {
-                    throw new StructureReadWriteException("Critical Error: Unable to create log files.");
-                }
-            } catch (IOException ex) {
+        File directory = new File(plugin.getDataFolder() + "/data");
+        try {
+            store = new StructureRegionStore(new File(directory, "structures"));
+            importYaml(new File(directory, "structures.yml"));
+        } catch (IOException ex) {
+            if (plugin.isDebug())
                 ex.printStackTrace();
-            }
+            throw new StructureReadWriteException("Critical Error: Unable to open the structure log.");
         }
-        fileConfiguration = YamlConfiguration.loadConfiguration(structureFile);
     }
 
     /**
@@ -78,13 +85,97 @@ public class StructureFileReader extends BukkitRunnable {
      * @param structure The structure.
      */
     public void addStructure(Location loc, Structure structure) {
-        structuresToSave.put(loc, structure);
+        structuresToSave.put(new LoggedPosition(Objects.requireNonNull(loc.getWorld()).getName(), pack(loc)), structure);
+    }
+
+    /**
+     * Add the bounding box of a structure to the storage file.
+     *
+     * <p>The bounding box is only saved if the structure was added with {@link #addStructure(Location, Structure)},
+     * so structures pasted with commands are not included. If the structure already has a bounding box, it is
+     * extended to contain both, so the sub-schematics of a structure are included.</p>
+     *
+     * @param loc       The location of the structure.
+     * @param structure The structure.
+     * @param corner1   The first corner of the structure.
+     * @param corner2   The opposite corner of the structure.
+     */
+    public void addBounds(Location loc, Structure structure, Location corner1, Location corner2) {
+        StructureLogFile.Bounds bounds = StructureLogFile.Bounds.of(corner1.getBlockX(), corner1.getBlockY(), corner1.getBlockZ(),
+                corner2.getBlockX(), corner2.getBlockY(), corner2.getBlockZ());
+        boundsToSave.merge(new LoggedPosition(Objects.requireNonNull(loc.getWorld()).getName(), pack(loc)), Pair.of(structure, bounds),
+                (previous, added) -> Pair.of(previous.getLeft(), previous.getRight().union(added.getRight())));
+    }
+
+    /**
+     * Get the structures that contain a block.
+     *
+     * <p>Only the bounding boxes in the region of the block are checked. If the region is in memory, the future is
+     * already completed when it is returned, so this can be used on events such as block breaking. Otherwise, the
+     * region is read on an async thread and the future is completed from that thread.</p>
+     *
+     * <p>Structures imported from the <code>structures.yml</code> file of older versions have no bounding box, so
+     * they are not found.</p>
+     *
+     * @param location The location of the block.
+     * @return A completable future containing the structures and their bounding boxes.
+     * (Structures that are no longer loaded have a null structure).
+     */
+    public CompletableFuture<List<Pair<Structure, BoundingBox>>> getStructuresAt(Location location) {
+        CompletableFuture<List<Pair<Structure, BoundingBox>>> completableFuture = new CompletableFuture<>();
+        String world = Objects.requireNonNull(location.getWorld()).getName();
+        int x = location.getBlockX();
+        int y = location.getBlockY();
+        int z = location.getBlockZ();
+        List<StructureLogFile.Entry> found = store.findContainingIfLoaded(world, x, y, z);
+        if (found != null) {
+            completableFuture.complete(toBoundingBoxes(found, world, new StructureLogFile.Bounds(x, y, z, x, y, z)));
+            return completableFuture;
+        }
+        Bukkit.getScheduler().runTaskAsynchronously(plugin, () -> {
+            try {
+                completableFuture.complete(toBoundingBoxes(store.findContaining(world, x, y, z), world,
+                        new StructureLogFile.Bounds(x, y, z, x, y, z)));
+            } catch (IOException ex) {
+                completableFuture.completeExceptionally(ex);
+            }
+        });
+        return completableFuture;
+    }
+
+    /**
+     * Get the structures that intersect an area.
+     *
+     * <p>Only the bounding boxes in the regions of the area are checked. The search is done on an async thread and
+     * the future is completed from that thread.</p>
+     *
+     * @param world The world.
+     * @param area  The area.
+     * @return A completable future containing the structures and their bounding boxes.
+     * (Structures that are no longer loaded have a null structure).
+     */
+    public CompletableFuture<List<Pair<Structure, BoundingBox>>> getStructuresIn(World world, BoundingBox area) {
+        CompletableFuture<List<Pair<Structure, BoundingBox>>> completableFuture = new CompletableFuture<>();
+        // The bounding box of a block goes to the next block, so the blocks it takes up end just before its maximum.
+        StructureLogFile.Bounds box = StructureLogFile.Bounds.of(
+                (int) Math.floor(area.getMinX()), (int) Math.floor(area.getMinY()), (int) Math.floor(area.getMinZ()),
+                (int) Math.ceil(area.getMaxX()) - 1, (int) Math.ceil(area.getMaxY()) - 1, (int) Math.ceil(area.getMaxZ()) - 1);
+        Bukkit.getScheduler().runTaskAsynchronously(plugin, () -> {
+            try {
+                completableFuture.complete(toBoundingBoxes(store.findIntersecting(world.getName(), box), world.getName(), box));
+            } catch (IOException ex) {
+                completableFuture.completeExceptionally(ex);
+            }
+        });
+        return completableFuture;
     }
 
     /**
      * Get a structure from the storage file.
      *
-     * <p>This method is async and will complete at a later time.</p>
+     * <p>If the structures around the location are in memory, the future is already completed when it is
+     * returned, so this can be used on events. Otherwise, the region of the location is read on an async thread
+     * and the future is completed from that thread.</p>
      *
      * <p>The completed future completes exceptionally with {@link StructureNotFoundException} if a structure
      * at the specified location cannot be found.</p>
@@ -105,15 +196,43 @@ public class StructureFileReader extends BukkitRunnable {
      */
     public CompletableFuture<Structure> getStructure(Location location) {
         CompletableFuture<Structure> completableFuture = new CompletableFuture<>();
-        structuresToGet.add(Pair.of(location, completableFuture));
+        LoggedPosition position = new LoggedPosition(Objects.requireNonNull(location.getWorld()).getName(), pack(location));
+        Structure pending = structuresToSave.get(position);
+        if (pending != null) {
+            completableFuture.complete(pending);
+            return completableFuture;
+        }
 
+        StructureRegionStore.Lookup lookup = store.getIfLoaded(position.world(), position.position());
+        if (lookup.loaded()) {
+            completeStructure(completableFuture, lookup.structure());
+            return completableFuture;
+        }
+        Bukkit.getScheduler().runTaskAsynchronously(plugin, () -> {
+            try {
+                completeStructure(completableFuture, store.get(position.world(), position.position()));
+            } catch (IOException ex) {
+                completableFuture.completeExceptionally(ex);
+            }
+        });
         return completableFuture;
     }
 
     /**
-     * Find a structure nearby a location.
+     * Complete a future of {@link #getStructure(Location)}.
      *
-     * <p>Warning: This operation is expensive on the server. Use lightly.</p>
+     * @param completableFuture The future.
+     * @param name              The name of the structure. (Null if there is none).
+     */
+    private void completeStructure(CompletableFuture<Structure> completableFuture, @Nullable String name) {
+        if (name != null)
+            completableFuture.complete(plugin.getStructureHandler().getStructure(name));
+        else
+            completableFuture.completeExceptionally(new StructureNotFoundException("Cannot find structure with the provided location."));
+    }
+
+    /**
+     * Find a structure nearby a location.
      *
      * <p>The completed future could be null. Null means a structure was not found.</p>
      *
@@ -121,17 +240,55 @@ public class StructureFileReader extends BukkitRunnable {
      * @return A completable future containing a pair with the structure and location.
      */
     public CompletableFuture<Pair<Structure, Location>> findNearby(Location location) {
-        CompletableFuture<Pair<Structure, Location>> completableFuture = new CompletableFuture<>();
-        if (findNearby.size() <= 5)
-            findNearby.add(Pair.of(location, completableFuture));
-        else
-            Bukkit.getScheduler().runTaskLater(plugin,
-                    () -> completableFuture.completeExceptionally(new RateLimitException("The maximum amount of requests has been hit.")),
-                    5);
+        return findNearby(location, 1, Double.POSITIVE_INFINITY, null)
+                .thenApply(structures -> structures.isEmpty() ? null : structures.get(0));
+    }
 
+    /**
+     * Find the closest structures to a location.
+     *
+     * <p>Only the regions near the location are searched, so this is cheap enough to be used by many players at
+     * the same time. The search is done on an async thread and the future is completed from that thread.</p>
+     *
+     * @param location    The location.
+     * @param count       The maximum number of structures to find.
+     * @param maxDistance The maximum distance from the location. ({@link Double#POSITIVE_INFINITY} to search up to 16384 blocks away).
+     * @param structure   The name of the structure to find. (Null for every structure).
+     * @return A completable future containing the structures and their locations, ordered from closest to farthest.
+     * (Structures that are no longer loaded have a null structure).
+     */
+    public CompletableFuture<List<Pair<Structure, Location>>> findNearby(Location location, int count, double maxDistance,
+                                                                         @Nullable String structure) {
+        CompletableFuture<List<Pair<Structure, Location>>> completableFuture = new CompletableFuture<>();
+        World world = Objects.requireNonNull(location.getWorld());
+        Bukkit.getScheduler().runTaskAsynchronously(plugin, () -> {
+            try {
+                List<Pair<Structure, Location>> result = new ArrayList<>();
+                for (StructureLogFile.Entry entry : store.findNearest(world.getName(), location.getBlockX(),
+                        location.getBlockY(), location.getBlockZ(), count, maxDistance, structure)) {
+                    result.add(Pair.of(plugin.getStructureHandler().getStructure(entry.structure()), toLocation(world, entry.position())));
+                }
+                completableFuture.complete(result);
+            } catch (IOException ex) {
+                completableFuture.completeExceptionally(ex);
+            }
+        });
         return completableFuture;
     }
 
+    /**
+     * Find every structure within a distance of a location.
+     *
+     * @param location  The location.
+     * @param radius    The maximum distance from the location.
+     * @param structure The name of the structure to find. (Null for every structure).
+     * @return A completable future containing the structures and their locations, ordered from closest to farthest.
+     * @see #findNearby(Location, int, double, String)
+     */
+    public CompletableFuture<List<Pair<Structure, Location>>> findWithin(Location location, double radius, @Nullable String structure) {
+        return findNearby(location, Integer.MAX_VALUE, radius, structure);
+    }
+
     /**
      * Get the locations of a structure.
      *
@@ -146,107 +303,177 @@ public class StructureFileReader extends BukkitRunnable {
     }
 
     @Override
-    public void run() {
-        for (Map.Entry<Location, Structure> entry : structuresToSave.entrySet()) {
-            String worldName = Objects.requireNonNull(entry.getKey().getWorld()).getName();
-            if (!fileConfiguration.contains(entry.getValue().getName() + "." + worldName))
-                // Split up the list of locations into Structures, then worlds.
-                fileConfiguration.set(entry.getValue().getName() +
-                        "." + worldName, new ArrayList<>());
-            List<String> locs = fileConfiguration.getStringList(entry.getValue().getName() + "." + worldName);
-            locs.add(serializeLocation(entry.getKey()));
-            fileConfiguration.set(entry.getValue().getName() + "." + worldName, locs);
+    public synchronized void run() {
+        try {
+            for (Map.Entry<LoggedPosition, Structure> entry : structuresToSave.entrySet()) {
+                store.add(entry.getKey().world(), entry.getKey().position(), entry.getValue().getName());
+                structuresToSave.remove(entry.getKey(), entry.getValue());
+            }
+            for (Map.Entry<LoggedPosition, Pair<Structure, StructureLogFile.Bounds>> entry : boundsToSave.entrySet()) {
+                // The structure was added after the loop above, it is saved with its bounding box next time.
+                if (structuresToSave.containsKey(entry.getKey()))
+                    continue;
+                String structure = entry.getValue().getLeft().getName();
+                // Only structures that were logged get a bounding box.
+                if (structure.equals(store.get(entry.getKey().world(), entry.getKey().position())))
+                    store.addBounds(entry.getKey().world(), entry.getKey().position(), structure, entry.getValue().getRight());
+                boundsToSave.remove(entry.getKey(), entry.getValue());
+            }
+            store.flush();
+        } catch (IOException ex) {
+            plugin.getLogger().severe("Unable to save log file!");
+            if (plugin.isDebug())
+                ex.printStackTrace();
+            super.cancel();
+            return;
         }
-        structuresToSave.clear();
-
-        for (Pair<Location, CompletableFuture<Structure>> pair : structuresToGet) {
-            boolean found = false;
-            for (String key : fileConfiguration.getKeys(false)) {
-                List<String> locs = fileConfiguration.getStringList(key + "." +
-                        Objects.requireNonNull(pair.getLeft().getWorld()).getName());
-                if (locs.contains(serializeLocation(pair.getLeft()))) {
-                    pair.getRight().complete(plugin.getStructureHandler().getStructure(key));
-                    found = true;
-                    break;
+
+        if (!locationsToGet.isEmpty()) {
+            // Every region has to be read, so all of the requests are answered in one pass.
+            Map<String, List<Location>> locations = new HashMap<>();
+            for (Pair<Structure, CompletableFuture<List<Location>>> pair : locationsToGet) {
+                locations.put(pair.getLeft().getName(), new ArrayList<>());
+            }
+            try {
+                store.forEach(entry -> {
+                    List<Location> result = locations.get(entry.structure());
+                    if (result != null)
+                        result.add(toLocation(plugin.getServer().getWorld(entry.world()), entry.position()));
+                });
+                for (Pair<Structure, CompletableFuture<List<Location>>> pair : locationsToGet) {
+                    List<Location> result = locations.get(pair.getLeft().getName());
+                    if (result.isEmpty())
+                        pair.getRight().completeExceptionally(new StructureNotFoundException("Cannot find desired structure.."));
+                    else
+                        pair.getRight().complete(result);
                 }
+            } catch (IOException ex) {
+                locationsToGet.forEach(pair -> pair.getRight().completeExceptionally(ex));
             }
-            if (!found)
-                pair.getRight().completeExceptionally(new StructureNotFoundException("Cannot find structure with the provided location."));
+            locationsToGet.clear();
+        }
+    }
 
+    /**
+     * Write the pending structures and bounding boxes to the disk and close the logs.
+     *
+     * <p>A save that is still running on the async thread is finished first.</p>
+     */
+    @Override
+    public synchronized void cancel() throws IllegalStateException {
+        run();
+        try {
+            store.close();
+        } catch (IOException ex) {
+            plugin.getLogger().severe("Unable to close the structure log!");
         }
-        structuresToGet.clear();
-
-        for (Pair<Structure, CompletableFuture<List<Location>>> pair : locationsToGet) {
-            if (fileConfiguration.contains(pair.getLeft().getName())) {
-                List<Location> result = new ArrayList<>();
-                for (String world : Objects.requireNonNull(fileConfiguration.getConfigurationSection(pair.getLeft().getName())).getKeys(false)) {
-                    List<String> locations = fileConfiguration.getStringList(pair.getLeft().getName() + "." + world);
-                    for (String strLoc : locations) {
-                        Location loc = deserializeLocation(strLoc);
-                        if (loc == null)
-                            continue;
-                        result.add(loc);
+        super.cancel();
+    }
+
+    /**
+     * Import the structures of the YAML log used by older versions.
+     *
+     * <p>The YAML file is renamed afterwards, so it is only imported once.</p>
+     *
+     * @param yamlFile The YAML log.
+     * @throws IOException If the structures cannot be written to the log.
+     */
+    private void importYaml(File yamlFile) throws IOException {
+        if (!yamlFile.exists())
+            return;
+        FileConfiguration yaml = YamlConfiguration.loadConfiguration(yamlFile);
+        int imported = 0;
+        for (String structure : yaml.getKeys(false)) {
+            ConfigurationSection worlds = yaml.getConfigurationSection(structure);
+            if (worlds == null)
+                continue;
+            for (String world : worlds.getKeys(false)) {
+                for (String location : worlds.getStringList(world)) {
+                    String[] data = location.split(";");
+                    if (data.length < 4)
+                        continue;
+                    try {
+                        long position = StructureLogFile.pack(Integer.parseInt(data[1]), Integer.parseInt(data[2]), Integer.parseInt(data[3]));
+                        if (store.add(data[0], position, structure))
+                            imported++;
+                    } catch (NumberFormatException ignored) {
+                        // Skip locations that were not saved correctly.
                     }
                 }
-                pair.getRight().complete(result);
-            } else {
-                pair.getRight().completeExceptionally(new StructureNotFoundException("Cannot find desired structure.."));
             }
         }
-        locationsToGet.clear();
-
-        for (Pair<Location, CompletableFuture<Pair<Structure, Location>>> pair : findNearby) {
-            // So this does not clog up the IO Operations.
-            Bukkit.getScheduler().runTaskAsynchronously(plugin, () -> {
-                Pair<Structure, Location> closest = null;
-                for (String key : fileConfiguration.getKeys(false)) {
-                    List<String> locs = fileConfiguration.getStringList(key + "." +
-                            Objects.requireNonNull(pair.getLeft().getWorld()).getName());
-                    for (String s : locs) {
-                        Location loc = deserializeLocation(s);
-                        if (loc == null) continue;
-                        if (closest == null) {
-                            closest = Pair.of(plugin.getStructureHandler().getStructure(key), loc);
-                            continue;
-                        }
-                        if (loc.distance(pair.getLeft()) < closest.getRight().distance(pair.getLeft()))
-                            closest = Pair.of(plugin.getStructureHandler().getStructure(key), loc);
-                    }
-                }
+        store.flush();
+        if (!yamlFile.renameTo(new File(yamlFile.getPath() + ".imported")))
+            plugin.getLogger().warning("Unable to rename structures.yml after importing it. Delete it to avoid importing it again.");
+        plugin.getLogger().info("Imported " + imported + " structures from structures.yml into the region files.");
+    }
 
-                pair.getRight().complete(closest);
-            });
+    /**
+     * Convert the bounding boxes found in the store, adding the bounding boxes that are waiting to be saved.
+     *
+     * @param entries The bounding boxes found in the store.
+     * @param world   The name of the world.
+     * @param area    The area that was searched.
+     * @return The structures and their bounding boxes.
+     */
+    private List<Pair<Structure, BoundingBox>> toBoundingBoxes(List<StructureLogFile.Entry> entries, String world, StructureLogFile.Bounds area) {
+        List<Pair<Structure, BoundingBox>> result = new ArrayList<>();
+        Set<Long> positions = new HashSet<>();
+        for (StructureLogFile.Entry entry : entries) {
+            positions.add(entry.position());
+            result.add(Pair.of(plugin.getStructureHandler().getStructure(entry.structure()), toBoundingBox(Objects.requireNonNull(entry.bounds()))));
         }
-        findNearby.clear();
-
-        try {
-            fileConfiguration.save(structureFile);
-        } catch (IOException ex) {
-            plugin.getLogger().severe("Unable to save log file!");
-            super.cancel();
+        for (Map.Entry<LoggedPosition, Pair<Structure, StructureLogFile.Bounds>> entry : boundsToSave.entrySet()) {
+            if (!entry.getKey().world().equals(world) || !entry.getValue().getRight().intersects(area))
+                continue;
+            // Skip structures that were not logged, such as structures pasted with commands.
+            String structure = entry.getValue().getLeft().getName();
+            if (!structuresToSave.containsKey(entry.getKey())
+                    && !structure.equals(store.getIfLoaded(world, entry.getKey().position()).structure()))
+                continue;
+            if (positions.add(entry.getKey().position()))
+                result.add(Pair.of(entry.getValue().getLeft(), toBoundingBox(entry.getValue().getRight())));
         }
+        return result;
     }
 
-    @Override
-    public synchronized void cancel() throws IllegalStateException {
-        run();
-        super.cancel();
+    /**
+     * Get the Bukkit bounding box of the blocks in a bounding box.
+     *
+     * @param bounds The bounding box.
+     * @return The Bukkit bounding box.
+     */
+    private static BoundingBox toBoundingBox(StructureLogFile.Bounds bounds) {
+        return new BoundingBox(bounds.minX(), bounds.minY(), bounds.minZ(), bounds.maxX() + 1, bounds.maxY() + 1, bounds.maxZ() + 1);
     }
 
-    private String serializeLocation(Location location) {
-        return String.format("%s;%s;%s;%s", Objects.requireNonNull(location.getWorld()).getName(),
-                location.getBlockX(), location.getBlockY(), location.getBlockZ());
+    /**
+     * Get the packed position of a location.
+     *
+     * @param location The location.
+     * @return The packed position.
+     */
+    private static long pack(Location location) {
+        return StructureLogFile.pack(location.getBlockX(), location.getBlockY(), location.getBlockZ());
     }
 
-    private Location deserializeLocation(String location) {
-        String[] data = location.split(";");
-        if (data.length < 4)
-            return null;
-        World w = plugin.getServer().getWorld(data[0]);
-        int x = Integer.parseInt(data[1]);
-        int y = Integer.parseInt(data[2]);
-        int z = Integer.parseInt(data[3]);
+    /**
+     * Get the location of a packed position.
+     *
+     * @param world    The world. (Can be null if the world is not loaded).
+     * @param position The packed position.
+     * @return The location.
+     */
+    private Location toLocation(World world, long position) {
+        return new Location(world, StructureLogFile.unpackX(position), StructureLogFile.unpackY(position), StructureLogFile.unpackZ(position));
+    }
 
-        return new Location(w, x, y, z);
+    /**
+     * A logged position.
+     *
+     * @param world    The name of the world.
+     * @param position The packed position.
+     */
+    private record LoggedPosition(String world, long position) {
     }
 }
@@ -0,0 +1,424 @@
+package com.ryandw11.structure.io;
+
+import com.ryandw11.structure.exceptions.StructureReadWriteException;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * An append-only binary log of spawned structures.
+ *
+ * <p>Structure and world names are written once and then referred to by id, so every structure and bounding box
+ * only takes a small fixed number of bytes. New entries are buffered and written at the end of the file in batches by
+ * {@link #flush()}, which also syncs the file to the disk. Existing entries are never rewritten, except by
+ * {@link #compact(Iterable)}.</p>
+ *
+ * <p>If the server stopped while an entry was being written, the incomplete entry at the end of the file is removed
+ * when the file is read. Any other damage is reported and the file is left as it is.</p>
+ *
+ * <p>This class is not thread safe. It is used by the {@link StructureRegionStore}.</p>
+ */
+public class StructureLogFile {
+
+    private static final int MAGIC = 0x43534C47;
+    private static final byte VERSION = 1;
+    private static final int HEADER_SIZE = 5;
+
+    private static final byte DEFINE_STRUCTURE = 1;
+    private static final byte DEFINE_WORLD = 2;
+    private static final byte STRUCTURE = 3;
+    private static final byte BOUNDS = 4;
+
+    private final File file;
+    private final Map<String, Integer> structureIds = new HashMap<>();
+    private final Map<String, Integer> worldIds = new HashMap<>();
+    private ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+    private DataOutputStream output = new DataOutputStream(buffer);
+    private int bufferedEntries;
+    private FileChannel channel;
+
+    /**
+     * Open a log file, creating it if it does not exist.
+     *
+     * @param file The log file.
+     * @throws IOException                 If the file cannot be opened.
+     * @throws StructureReadWriteException If the file is not a structure log.
+     */
+    public StructureLogFile(File file) throws IOException {
+        this.file = file;
+        if (!file.exists() || file.length() == 0)
+            writeHeader(file);
+        try (DataInputStream in = new DataInputStream(new FileInputStream(file))) {
+            if (in.readInt() != MAGIC)
+                throw new StructureReadWriteException("The file " + file.getName() + " is not a structure log.");
+            byte version = in.readByte();
+            if (version != VERSION)
+                throw new StructureReadWriteException("The structure log " + file.getName() + " has an unsupported version: " + version);
+        }
+        channel = FileChannel.open(file.toPath(), StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    }
+
+    /**
+     * Read every structure in the log.
+     *
+     * <p>An incomplete entry at the end of the file is removed.</p>
+     *
+     * @param consumer Called for every structure and bounding box in the order they were added.
+     * @return If an incomplete entry had to be removed.
+     * @throws IOException                 If the file cannot be read.
+     * @throws StructureReadWriteException If the file contains an unknown type of entry. The file is not changed.
+     */
+    public boolean read(Consumer<Entry> consumer) throws IOException {
+        structureIds.clear();
+        worldIds.clear();
+        Map<Integer, String> structureNames = new HashMap<>();
+        Map<Integer, String> worldNames = new HashMap<>();
+        long validLength = HEADER_SIZE;
+        boolean damaged = false;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            in.skipNBytes(HEADER_SIZE);
+            while (true) {
+                int type = in.read();
+                if (type == -1)
+                    break;
+                if (type == DEFINE_STRUCTURE || type == DEFINE_WORLD) {
+                    int id = in.readInt();
+                    byte[] name = new byte[in.readUnsignedShort()];
+                    in.readFully(name);
+                    String value = new String(name, StandardCharsets.UTF_8);
+                    if (type == DEFINE_STRUCTURE) {
+                        structureNames.put(id, value);
+                        structureIds.put(value, id);
+                    } else {
+                        worldNames.put(id, value);
+                        worldIds.put(value, id);
+                    }
+                    validLength += 1 + 4 + 2 + name.length;
+                } else if (type == STRUCTURE) {
+                    String structure = structureNames.get(in.readInt());
+                    String world = worldNames.get(in.readInt());
+                    long position = in.readLong();
+                    validLength += 1 + 4 + 4 + 8;
+                    if (structure != null && world != null)
+                        consumer.accept(new Entry(structure, world, position));
+                } else if (type == BOUNDS) {
+                    String structure = structureNames.get(in.readInt());
+                    String world = worldNames.get(in.readInt());
+                    long position = in.readLong();
+                    Bounds bounds = new Bounds(in.readInt(), in.readInt(), in.readInt(), in.readInt(), in.readInt(), in.readInt());
+                    validLength += 1 + 4 + 4 + 8 + 6 * 4;
+                    if (structure != null && world != null)
+                        consumer.accept(new Entry(structure, world, position, bounds));
+                } else {
+                    throw new StructureReadWriteException(String.format("The structure log %s contains an unknown " +
+                            "type of entry (%d) at byte %d. The file was not changed.", file.getName(), type, validLength));
+                }
+            }
+        } catch (EOFException ex) {
+            damaged = true;
+        }
+        if (damaged) {
+            channel.truncate(validLength);
+            channel.force(true);
+        }
+        return damaged;
+    }
+
+    /**
+     * Add a structure to the end of the log.
+     *
+     * <p>The structure is not written until {@link #flush()} is called.</p>
+     *
+     * @param structure The name of the structure.
+     * @param world     The name of the world.
+     * @param position  The position of the structure. (See {@link #pack(int, int, int)}).
+     */
+    public void append(String structure, String world, long position) {
+        try {
+            int structureId = getId(structureIds, structure, DEFINE_STRUCTURE);
+            int worldId = getId(worldIds, world, DEFINE_WORLD);
+            output.writeByte(STRUCTURE);
+            output.writeInt(structureId);
+            output.writeInt(worldId);
+            output.writeLong(position);
+            bufferedEntries++;
+        } catch (IOException ex) {
+            // Writing to a ByteArrayOutputStream does not fail.
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    /**
+     * Add the bounding box of a structure to the end of the log.
+     *
+     * <p>The bounding box is not written until {@link #flush()} is called.</p>
+     *
+     * @param structure The name of the structure.
+     * @param world     The name of the world.
+     * @param position  The position of the structure. (See {@link #pack(int, int, int)}).
+     * @param bounds    The bounding box of the structure.
+     */
+    public void appendBounds(String structure, String world, long position, Bounds bounds) {
+        try {
+            int structureId = getId(structureIds, structure, DEFINE_STRUCTURE);
+            int worldId = getId(worldIds, world, DEFINE_WORLD);
+            output.writeByte(BOUNDS);
+            output.writeInt(structureId);
+            output.writeInt(worldId);
+            output.writeLong(position);
+            output.writeInt(bounds.minX());
+            output.writeInt(bounds.minY());
+            output.writeInt(bounds.minZ());
+            output.writeInt(bounds.maxX());
+            output.writeInt(bounds.maxY());
+            output.writeInt(bounds.maxZ());
+            bufferedEntries++;
+        } catch (IOException ex) {
+            // Writing to a ByteArrayOutputStream does not fail.
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    /**
+     * Write the buffered structures to the end of the file and sync the file to the disk.
+     *
+     * @return The number of structures that were written.
+     * @throws IOException If the structures cannot be written.
+     */
+    public int flush() throws IOException {
+        if (buffer.size() == 0)
+            return 0;
+        ByteBuffer bytes = ByteBuffer.wrap(buffer.toByteArray());
+        while (bytes.hasRemaining())
+            channel.write(bytes);
+        channel.force(false);
+        int written = bufferedEntries;
+        buffer.reset();
+        bufferedEntries = 0;
+        return written;
+    }
+
+    /**
+     * Replace the log with only the specified structures and bounding boxes.
+     *
+     * <p>The new log is written to a temporary file first and then moved over the old one, so the log is never
+     * left half written.</p>
+     *
+     * @param entries The structures and bounding boxes to keep.
+     * @throws IOException If the log cannot be rewritten.
+     */
+    public void compact(Iterable<Entry> entries) throws IOException {
+        // Buffered structures are expected to be in the entries.
+        buffer = new ByteArrayOutputStream();
+        output = new DataOutputStream(buffer);
+        bufferedEntries = 0;
+        structureIds.clear();
+        worldIds.clear();
+        channel.close();
+
+        File temp = new File(file.getPath() + ".tmp");
+        writeHeader(temp);
+        channel = FileChannel.open(temp.toPath(), StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        for (Entry entry : entries) {
+            if (entry.bounds() != null)
+                appendBounds(entry.structure(), entry.world(), entry.position(), entry.bounds());
+            else
+                append(entry.structure(), entry.world(), entry.position());
+        }
+        flush();
+        channel.close();
+        Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        channel = FileChannel.open(file.toPath(), StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    }
+
+    /**
+     * Close the log.
+     *
+     * <p>Structures that have not been flushed are lost.</p>
+     *
+     * @throws IOException If the file cannot be closed.
+     */
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * Get the id of a name, buffering the definition of the name if it is new.
+     *
+     * @param ids  The ids of the names that are already defined.
+     * @param name The name.
+     * @param type The type of definition entry.
+     * @return The id of the name.
+     * @throws IOException If the definition cannot be buffered.
+     */
+    private int getId(Map<String, Integer> ids, String name, byte type) throws IOException {
+        Integer id = ids.get(name);
+        if (id != null)
+            return id;
+        id = ids.size();
+        byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+        output.writeByte(type);
+        output.writeInt(id);
+        output.writeShort(bytes.length);
+        output.write(bytes);
+        ids.put(name, id);
+        return id;
+    }
+
+    /**
+     * Write the header of a new log file.
+     *
+     * @param file The file.
+     * @throws IOException If the header cannot be written.
+     */
+    private static void writeHeader(File file) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).putInt(MAGIC).put(VERSION);
+        header.flip();
+        try (FileChannel headerChannel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            headerChannel.write(header);
+            headerChannel.force(true);
+        }
+    }
+
+    /**
+     * Pack the coordinates of a block into a long.
+     *
+     * @param x The x coordinate. (26 bits).
+     * @param y The y coordinate. (12 bits).
+     * @param z The z coordinate. (26 bits).
+     * @return The packed position.
+     */
+    public static long pack(int x, int y, int z) {
+        return ((long) (x & 0x3FFFFFF) << 38) | ((long) (z & 0x3FFFFFF) << 12) | (y & 0xFFF);
+    }
+
+    /**
+     * Get the x coordinate of a packed position.
+     *
+     * @param position The packed position.
+     * @return The x coordinate.
+     */
+    public static int unpackX(long position) {
+        return (int) (position >> 38);
+    }
+
+    /**
+     * Get the y coordinate of a packed position.
+     *
+     * @param position The packed position.
+     * @return The y coordinate.
+     */
+    public static int unpackY(long position) {
+        return (int) (position << 52 >> 52);
+    }
+
+    /**
+     * Get the z coordinate of a packed position.
+     *
+     * @param position The packed position.
+     * @return The z coordinate.
+     */
+    public static int unpackZ(long position) {
+        return (int) (position << 26 >> 38);
+    }
+
+    /**
+     * A structure or the bounding box of a structure in the log.
+     *
+     * @param structure The name of the structure.
+     * @param world     The name of the world.
+     * @param position  The packed position of the structure.
+     * @param bounds    The bounding box of the structure. (Null if this is the structure itself).
+     */
+    public record Entry(String structure, String world, long position, @Nullable Bounds bounds) {
+        /**
+         * Construct the entry of a structure.
+         *
+         * @param structure The name of the structure.
+         * @param world     The name of the world.
+         * @param position  The packed position of the structure.
+         */
+        public Entry(String structure, String world, long position) {
+            this(structure, world, position, null);
+        }
+    }
+
+    /**
+     * The blocks a structure takes up. Both corners are included.
+     *
+     * @param minX The lowest x coordinate.
+     * @param minY The lowest y coordinate.
+     * @param minZ The lowest z coordinate.
+     * @param maxX The highest x coordinate.
+     * @param maxY The highest y coordinate.
+     * @param maxZ The highest z coordinate.
+     */
+    public record Bounds(int minX, int minY, int minZ, int maxX, int maxY, int maxZ) {
+        /**
+         * Get the bounding box between two corners.
+         *
+         * @param x1 The x coordinate of the first corner.
+         * @param y1 The y coordinate of the first corner.
+         * @param z1 The z coordinate of the first corner.
+         * @param x2 The x coordinate of the second corner.
+         * @param y2 The y coordinate of the second corner.
+         * @param z2 The z coordinate of the second corner.
+         * @return The bounding box.
+         */
+        public static Bounds of(int x1, int y1, int z1, int x2, int y2, int z2) {
+            return new Bounds(Math.min(x1, x2), Math.min(y1, y2), Math.min(z1, z2),
+                    Math.max(x1, x2), Math.max(y1, y2), Math.max(z1, z2));
+        }
+
+        /**
+         * Check if the bounding box contains a block.
+         *
+         * @param x The x coordinate of the block.
+         * @param y The y coordinate of the block.
+         * @param z The z coordinate of the block.
+         * @return If the bounding box contains the block.
+         */
+        public boolean contains(int x, int y, int z) {
+            return x >= minX && x <= maxX && y >= minY && y <= maxY && z >= minZ && z <= maxZ;
+        }
+
+        /**
+         * Check if the bounding box shares a block with another bounding box.
+         *
+         * @param other The other bounding box.
+         * @return If the bounding boxes intersect.
+         */
+        public boolean intersects(Bounds other) {
+            return minX <= other.maxX && maxX >= other.minX && minY <= other.maxY && maxY >= other.minY
+                    && minZ <= other.maxZ && maxZ >= other.minZ;
+        }
+
+        /**
+         * Get the smallest bounding box that contains this bounding box and another one.
+         *
+         * @param other The other bounding box.
+         * @return The bounding box that contains both.
+         */
+        public Bounds union(Bounds other) {
+            return new Bounds(Math.min(minX, other.minX), Math.min(minY, other.minY), Math.min(minZ, other.minZ),
+                    Math.max(maxX, other.maxX), Math.max(maxY, other.maxY), Math.max(maxZ, other.maxZ));
+        }
+    }
+}
@@ -0,0 +1,587 @@
+package com.ryandw11.structure.io;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+/**
+ * The logged structures, split into a log file for every region of a world.
+ *
+ * <p>A region is 512 by 512 blocks (32 by 32 chunks), the same as the region files of Minecraft. The structures
+ * of a world are stored in <code>{directory}/{world}/r.{x}.{z}.log</code>. Regions are only read from the disk
+ * when they are needed, so looking up a location only reads the regions around it. Only the most recently used
+ * regions are kept in memory.</p>
+ *
+ * <p>The bounding boxes of the structures are stored in every region they take up blocks in, so the regions also
+ * work as a grid index for finding the structures at a block or in an area.</p>
+ *
+ * <p>This class is thread safe. It is used by the {@link StructureFileReader}.</p>
+ */
+public class StructureRegionStore {
+
+    /**
+     * The number of bits to shift a block coordinate by to get the region coordinate.
+     */
+    public static final int REGION_SHIFT = 9;
+    private static final int REGION_SIZE = 1 << REGION_SHIFT;
+    // The number of regions kept in memory.
+    private static final int MAX_LOADED_REGIONS = 256;
+    // The number of regions searched in every direction by findNearest if the distance has no limit.
+    private static final int MAX_SEARCH_RADIUS = 32;
+    // A region is compacted when it holds this many more entries than structures (and at least a quarter more).
+    private static final int COMPACT_THRESHOLD = 256;
+
+    private final File directory;
+    // The regions that have a file: world name -> packed region coordinates.
+    private final Map<String, Set<Long>> existingRegions = new ConcurrentHashMap<>();
+    // Access ordered, so the least recently used region is first.
+    private final LinkedHashMap<RegionKey, Region> loadedRegions = new LinkedHashMap<>(16, 0.75f, true);
+    // The same regions, so they can be read without taking the lock.
+    private final Map<RegionKey, Region> regionIndex = new ConcurrentHashMap<>();
+
+    /**
+     * Construct the region store.
+     *
+     * @param directory The directory to store the worlds in.
+     * @throws IOException If the directory cannot be created.
+     */
+    public StructureRegionStore(File directory) throws IOException {
+        this.directory = directory;
+        if (!directory.exists() && !directory.mkdirs())
+            throw new IOException("Unable to create the directory " + directory.getPath());
+    }
+
+    /**
+     * Add a structure.
+     *
+     * <p>The structure is written to the disk by the next {@link #flush()}.</p>
+     *
+     * @param world     The name of the world.
+     * @param position  The packed position of the structure. (See {@link StructureLogFile#pack(int, int, int)}).
+     * @param structure The name of the structure.
+     * @return If the structure was not already logged at the position.
+     * @throws IOException If the region cannot be read.
+     */
+    public synchronized boolean add(String world, long position, String structure) throws IOException {
+        Region region = getRegion(world, regionOf(StructureLogFile.unpackX(position)), regionOf(StructureLogFile.unpackZ(position)), true);
+        String previous = region.structures.put(position, structure);
+        if (structure.equals(previous))
+            return false;
+        region.log.append(structure, world, position);
+        region.loggedEntries++;
+        return true;
+    }
+
+    /**
+     * Add the bounding box of a structure.
+     *
+     * <p>The bounding box is added to every region it takes up blocks in, so a point only has to be checked against
+     * the bounding boxes of its own region. It is also added to the region of the position, so it can be found again.
+     * If the structure already has a bounding box, it is extended to contain both. It is written to the disk by the
+     * next {@link #flush()}.</p>
+     *
+     * @param world     The name of the world.
+     * @param position  The packed position of the structure.
+     * @param structure The name of the structure.
+     * @param bounds    The bounding box of the structure.
+     * @throws IOException If a region cannot be read.
+     */
+    public synchronized void addBounds(String world, long position, String structure, StructureLogFile.Bounds bounds) throws IOException {
+        int originX = regionOf(StructureLogFile.unpackX(position));
+        int originZ = regionOf(StructureLogFile.unpackZ(position));
+        StructureLogFile.Entry previous = getRegion(world, originX, originZ, true).bounds.get(position);
+        StructureLogFile.Bounds box = previous == null ? bounds : Objects.requireNonNull(previous.bounds()).union(bounds);
+        StructureLogFile.Entry entry = new StructureLogFile.Entry(structure, world, position, box);
+        for (int rx = regionOf(box.minX()); rx <= regionOf(box.maxX()); rx++) {
+            for (int rz = regionOf(box.minZ()); rz <= regionOf(box.maxZ()); rz++) {
+                addBounds(getRegion(world, rx, rz, true), entry);
+            }
+        }
+        if (originX < regionOf(box.minX()) || originX > regionOf(box.maxX())
+                || originZ < regionOf(box.minZ()) || originZ > regionOf(box.maxZ()))
+            addBounds(getRegion(world, originX, originZ, true), entry);
+    }
+
+    /**
+     * Add the bounding box of a structure to a region, replacing its previous bounding box.
+     *
+     * @param region The region.
+     * @param entry  The structure and its bounding box.
+     */
+    private static void addBounds(Region region, StructureLogFile.Entry entry) {
+        if (entry.equals(region.bounds.put(entry.position(), entry)))
+            return;
+        region.log.appendBounds(entry.structure(), entry.world(), entry.position(), Objects.requireNonNull(entry.bounds()));
+        region.loggedEntries++;
+    }
+
+    /**
+     * Get the structures whose bounding box contains a block.
+     *
+     * @param world The name of the world.
+     * @param x     The x coordinate of the block.
+     * @param y     The y coordinate of the block.
+     * @param z     The z coordinate of the block.
+     * @return The bounding boxes that contain the block.
+     * @throws IOException If the region cannot be read.
+     */
+    public synchronized List<StructureLogFile.Entry> findContaining(String world, int x, int y, int z) throws IOException {
+        Region region = getRegion(world, regionOf(x), regionOf(z), false);
+        return region == null ? new ArrayList<>() : findContaining(region, x, y, z);
+    }
+
+    /**
+     * Get the structures whose bounding box contains a block, without reading from the disk.
+     *
+     * <p>This does not wait for other operations on the store, so it can be used on the main thread.</p>
+     *
+     * @param world The name of the world.
+     * @param x     The x coordinate of the block.
+     * @param y     The y coordinate of the block.
+     * @param z     The z coordinate of the block.
+     * @return The bounding boxes that contain the block. (Null if the region has to be read from the disk, use
+     * {@link #findContaining(String, int, int, int)} instead).
+     */
+    @Nullable
+    public List<StructureLogFile.Entry> findContainingIfLoaded(String world, int x, int y, int z) {
+        Region region = regionIndex.get(new RegionKey(world, regionOf(x), regionOf(z)));
+        if (region != null)
+            return findContaining(region, x, y, z);
+        Set<Long> regions = existingRegions.get(world);
+        if (regions != null && !regions.contains(packRegion(regionOf(x), regionOf(z))))
+            return new ArrayList<>();
+        return null;
+    }
+
+    /**
+     * Get the structures whose bounding box intersects a bounding box.
+     *
+     * @param world The name of the world.
+     * @param box   The bounding box.
+     * @return The bounding boxes that intersect the bounding box.
+     * @throws IOException If a region cannot be read.
+     */
+    public synchronized List<StructureLogFile.Entry> findIntersecting(String world, StructureLogFile.Bounds box) throws IOException {
+        // A structure in multiple regions is only returned once.
+        Map<Long, StructureLogFile.Entry> result = new LinkedHashMap<>();
+        for (int rx = regionOf(box.minX()); rx <= regionOf(box.maxX()); rx++) {
+            for (int rz = regionOf(box.minZ()); rz <= regionOf(box.maxZ()); rz++) {
+                Region region = getRegion(world, rx, rz, false);
+                if (region == null)
+                    continue;
+                for (StructureLogFile.Entry entry : region.bounds.values()) {
+                    if (Objects.requireNonNull(entry.bounds()).intersects(box))
+                        result.put(entry.position(), entry);
+                }
+            }
+        }
+        return new ArrayList<>(result.values());
+    }
+
+    /**
+     * Get the structures of a region whose bounding box contains a block.
+     *
+     * @param region The region.
+     * @param x      The x coordinate of the block.
+     * @param y      The y coordinate of the block.
+     * @param z      The z coordinate of the block.
+     * @return The bounding boxes that contain the block.
+     */
+    private static List<StructureLogFile.Entry> findContaining(Region region, int x, int y, int z) {
+        List<StructureLogFile.Entry> result = new ArrayList<>();
+        for (StructureLogFile.Entry entry : region.bounds.values()) {
+            if (Objects.requireNonNull(entry.bounds()).contains(x, y, z))
+                result.add(entry);
+        }
+        return result;
+    }
+
+    /**
+     * Get the name of the structure at a position.
+     *
+     * @param world    The name of the world.
+     * @param position The packed position.
+     * @return The name of the structure. (Null if there is none).
+     * @throws IOException If the region cannot be read.
+     */
+    public synchronized String get(String world, long position) throws IOException {
+        Region region = getRegion(world, regionOf(StructureLogFile.unpackX(position)), regionOf(StructureLogFile.unpackZ(position)), false);
+        return region == null ? null : region.structures.get(position);
+    }
+
+    /**
+     * Get the name of the structure at a position without reading from the disk.
+     *
+     * <p>This does not wait for other operations on the store, so it can be used on the main thread. If the region
+     * of the position is in memory or is known to have no file, the answer is a single hash lookup. Otherwise,
+     * the lookup is not loaded and {@link #get(String, long)} has to be used.</p>
+     *
+     * @param world    The name of the world.
+     * @param position The packed position.
+     * @return The result of the lookup.
+     */
+    public Lookup getIfLoaded(String world, long position) {
+        int x = regionOf(StructureLogFile.unpackX(position));
+        int z = regionOf(StructureLogFile.unpackZ(position));
+        Region region = regionIndex.get(new RegionKey(world, x, z));
+        if (region != null)
+            return new Lookup(true, region.structures.get(position));
+        Set<Long> regions = existingRegions.get(world);
+        if (regions != null && !regions.contains(packRegion(x, z)))
+            return new Lookup(true, null);
+        return Lookup.NOT_LOADED;
+    }
+
+    /**
+     * Find the closest structures to a block.
+     *
+     * <p>The regions work as a grid index: they are searched in rings around the block until a ring cannot contain a
+     * closer structure, so only the regions near the block are read and checked. Without a maximum distance, at most
+     * 32 regions (16384 blocks) are searched in every direction.</p>
+     *
+     * @param world       The name of the world.
+     * @param x           The x coordinate of the block.
+     * @param y           The y coordinate of the block.
+     * @param z           The z coordinate of the block.
+     * @param count       The maximum number of structures to find.
+     * @param maxDistance The maximum distance from the block. ({@link Double#POSITIVE_INFINITY} to search up to 16384 blocks away).
+     * @param structure   The name of the structure to find. (Null for every structure).
+     * @return The closest structures, ordered from closest to farthest.
+     * @throws IOException If a region cannot be read.
+     */
+    public synchronized List<StructureLogFile.Entry> findNearest(String world, int x, int y, int z, int count,
+                                                                 double maxDistance, @Nullable String structure) throws IOException {
+        if (count <= 0)
+            return new ArrayList<>();
+        Set<Long> regions = getExistingRegions(world);
+        int centerX = regionOf(x);
+        int centerZ = regionOf(z);
+        int maxRadius = 0;
+        for (long region : regions) {
+            maxRadius = Math.max(maxRadius, Math.max(Math.abs(regionX(region) - centerX), Math.abs(regionZ(region) - centerZ)));
+        }
+        maxRadius = (int) Math.min(maxRadius, Math.min(MAX_SEARCH_RADIUS, maxDistance / REGION_SIZE + 1));
+        double maxDistanceSquared = maxDistance * maxDistance;
+
+        // The farthest of the closest structures found so far is at the head.
+        PriorityQueue<Neighbour> closest = new PriorityQueue<>(Comparator.comparingLong(Neighbour::distance).reversed());
+        for (int radius = 0; radius <= maxRadius; radius++) {
+            // Every block in this ring is at least (radius - 1) regions away.
+            long ringDistance = (long) Math.max(0, radius - 1) * REGION_SIZE;
+            if (closest.size() == count && ringDistance * ringDistance > closest.peek().distance())
+                break;
+            for (int rx = centerX - radius; rx <= centerX + radius; rx++) {
+                for (int rz = centerZ - radius; rz <= centerZ + radius; rz++) {
+                    if (Math.abs(rx - centerX) != radius && Math.abs(rz - centerZ) != radius)
+                        continue;
+                    if (!regions.contains(packRegion(rx, rz)))
+                        continue;
+                    Region region = getRegion(world, rx, rz, false);
+                    for (Map.Entry<Long, String> entry : Objects.requireNonNull(region).structures.entrySet()) {
+                        if (structure != null && !structure.equals(entry.getValue()))
+                            continue;
+                        long dx = StructureLogFile.unpackX(entry.getKey()) - x;
+                        long dy = StructureLogFile.unpackY(entry.getKey()) - y;
+                        long dz = StructureLogFile.unpackZ(entry.getKey()) - z;
+                        long distance = dx * dx + dy * dy + dz * dz;
+                        if (distance > maxDistanceSquared)
+                            continue;
+                        if (closest.size() == count) {
+                            if (distance >= closest.peek().distance())
+                                continue;
+                            closest.poll();
+                        }
+                        closest.add(new Neighbour(new StructureLogFile.Entry(entry.getValue(), world, entry.getKey()), distance));
+                    }
+                }
+            }
+        }
+
+        List<StructureLogFile.Entry> result = new ArrayList<>(closest.size());
+        while (!closest.isEmpty())
+            result.add(closest.poll().entry());
+        Collections.reverse(result);
+        return result;
+    }
+
+    /**
+     * Go through every logged structure of every world.
+     *
+     * <p>This reads every region, so it should be used sparingly. Regions that are not in memory are read without
+     * being kept in memory.</p>
+     *
+     * @param consumer Called for every structure.
+     * @throws IOException If a region cannot be read.
+     */
+    public synchronized void forEach(Consumer<StructureLogFile.Entry> consumer) throws IOException {
+        File[] worlds = directory.listFiles(File::isDirectory);
+        if (worlds == null)
+            return;
+        for (File worldDirectory : worlds) {
+            String world = worldDirectory.getName();
+            for (long packedRegion : getExistingRegions(world)) {
+                Region region = loadedRegions.get(new RegionKey(world, regionX(packedRegion), regionZ(packedRegion)));
+                if (region != null) {
+                    region.structures.forEach((position, structure) -> consumer.accept(new StructureLogFile.Entry(structure, world, position)));
+                    continue;
+                }
+                // Read into a map first, so a position that was logged twice is only seen once.
+                Map<Long, String> structures = new LinkedHashMap<>();
+                StructureLogFile log = new StructureLogFile(getRegionFile(world, regionX(packedRegion), regionZ(packedRegion)));
+                try {
+                    log.read(entry -> {
+                        if (entry.bounds() == null)
+                            structures.put(entry.position(), entry.structure());
+                    });
+                } finally {
+                    log.close();
+                }
+                structures.forEach((position, structure) -> consumer.accept(new StructureLogFile.Entry(structure, world, position)));
+            }
+        }
+    }
+
+    /**
+     * Write the new structures of every region to the disk.
+     *
+     * <p>Regions with many duplicate entries are compacted.</p>
+     *
+     * @throws IOException If a region cannot be written.
+     */
+    public synchronized void flush() throws IOException {
+        for (Region region : loadedRegions.values()) {
+            region.flush();
+        }
+    }
+
+    /**
+     * Write the new structures to the disk and close every region.
+     *
+     * @throws IOException If a region cannot be written.
+     */
+    public synchronized void close() throws IOException {
+        for (Region region : loadedRegions.values()) {
+            region.flush();
+            region.log.close();
+        }
+        loadedRegions.clear();
+        regionIndex.clear();
+    }
+
+    /**
+     * Get a region, reading it from the disk if it is not in memory.
+     *
+     * @param world  The name of the world.
+     * @param x      The x coordinate of the region.
+     * @param z      The z coordinate of the region.
+     * @param create If the region should be created if it does not have a file.
+     * @return The region. (Null if it does not exist and create is false).
+     * @throws IOException If the region cannot be read.
+     */
+    private Region getRegion(String world, int x, int z, boolean create) throws IOException {
+        RegionKey key = new RegionKey(world, x, z);
+        Region region = loadedRegions.get(key);
+        if (region != null)
+            return region;
+        Set<Long> regions = getExistingRegions(world);
+        if (!create && !regions.contains(packRegion(x, z)))
+            return null;
+
+        File worldDirectory = new File(directory, world);
+        if (!worldDirectory.exists() && !worldDirectory.mkdirs())
+            throw new IOException("Unable to create the directory " + worldDirectory.getPath());
+        Region newRegion = new Region(world, new StructureLogFile(getRegionFile(world, x, z)));
+        try {
+            newRegion.log.read(entry -> {
+                newRegion.loggedEntries++;
+                if (entry.bounds() != null)
+                    newRegion.bounds.put(entry.position(), entry);
+                else
+                    newRegion.structures.put(entry.position(), entry.structure());
+            });
+        } catch (IOException | RuntimeException ex) {
+            newRegion.log.close();
+            throw ex;
+        }
+        regions.add(packRegion(x, z));
+        loadedRegions.put(key, newRegion);
+        regionIndex.put(key, newRegion);
+        unloadRegions();
+        return newRegion;
+    }
+
+    /**
+     * Write and remove the least recently used regions from memory until at most {@link #MAX_LOADED_REGIONS} are
+     * left.
+     *
+     * @throws IOException If a region cannot be written.
+     */
+    private void unloadRegions() throws IOException {
+        Iterator<Map.Entry<RegionKey, Region>> iterator = loadedRegions.entrySet().iterator();
+        while (loadedRegions.size() > MAX_LOADED_REGIONS && iterator.hasNext()) {
+            Map.Entry<RegionKey, Region> entry = iterator.next();
+            entry.getValue().flush();
+            entry.getValue().log.close();
+            iterator.remove();
+            regionIndex.remove(entry.getKey());
+        }
+    }
+
+    /**
+     * Get the regions of a world that have a file.
+     *
+     * @param world The name of the world.
+     * @return The packed coordinates of the regions.
+     */
+    private Set<Long> getExistingRegions(String world) {
+        return existingRegions.computeIfAbsent(world, w -> {
+            Set<Long> regions = ConcurrentHashMap.newKeySet();
+            String[] files = new File(directory, w).list();
+            if (files == null)
+                return regions;
+            for (String file : files) {
+                String[] parts = file.split("\\.");
+                if (parts.length != 4 || !parts[0].equals("r") || !parts[3].equals("log"))
+                    continue;
+                try {
+                    regions.add(packRegion(Integer.parseInt(parts[1]), Integer.parseInt(parts[2])));
+                } catch (NumberFormatException ignored) {
+                    // Not a region file.
+                }
+            }
+            return regions;
+        });
+    }
+
+    /**
+     * Get the file of a region.
+     *
+     * @param world The name of the world.
+     * @param x     The x coordinate of the region.
+     * @param z     The z coordinate of the region.
+     * @return The file of the region.
+     */
+    private File getRegionFile(String world, int x, int z) {
+        return new File(new File(directory, world), "r." + x + "." + z + ".log");
+    }
+
+    /**
+     * Get the region coordinate of a block coordinate.
+     *
+     * @param block The block coordinate.
+     * @return The region coordinate.
+     */
+    public static int regionOf(int block) {
+        return block >> REGION_SHIFT;
+    }
+
+    /**
+     * Pack the coordinates of a region into a long.
+     *
+     * @param x The x coordinate of the region.
+     * @param z The z coordinate of the region.
+     * @return The packed coordinates.
+     */
+    private static long packRegion(int x, int z) {
+        return ((long) x << 32) | (z & 0xFFFFFFFFL);
+    }
+
+    /**
+     * Get the x coordinate of packed region coordinates.
+     *
+     * @param region The packed coordinates.
+     * @return The x coordinate of the region.
+     */
+    private static int regionX(long region) {
+        return (int) (region >> 32);
+    }
+
+    /**
+     * Get the z coordinate of packed region coordinates.
+     *
+     * @param region The packed coordinates.
+     * @return The z coordinate of the region.
+     */
+    private static int regionZ(long region) {
+        return (int) region;
+    }
+
+    /**
+     * The result of {@link #getIfLoaded(String, long)}.
+     *
+     * @param loaded    If the answer is known without reading from the disk.
+     * @param structure The name of the structure. (Null if there is none or the region is not loaded).
+     */
+    public record Lookup(boolean loaded, @Nullable String structure) {
+        private static final Lookup NOT_LOADED = new Lookup(false, null);
+    }
+
+    /**
+     * A structure found by {@link #findNearest(String, int, int, int, int, double, String)}.
+     *
+     * @param entry    The structure.
+     * @param distance The squared distance to the structure.
+     */
+    private record Neighbour(StructureLogFile.Entry entry, long distance) {
+    }
+
+    /**
+     * The key of a region.
+     *
+     * @param world The name of the world.
+     * @param x     The x coordinate of the region.
+     * @param z     The z coordinate of the region.
+     */
+    private record RegionKey(String world, int x, int z) {
+    }
+
+    /**
+     * A region that is in memory.
+     */
+    private static class Region {
+        private final String world;
+        private final StructureLogFile log;
+        // Packed position -> structure name.
+        private final Map<Long, String> structures = new ConcurrentHashMap<>();
+        // Packed position -> bounding box, of every structure that takes up blocks in this region.
+        private final Map<Long, StructureLogFile.Entry> bounds = new ConcurrentHashMap<>();
+        private int loggedEntries;
+
+        private Region(String world, StructureLogFile log) {
+            this.world = world;
+            this.log = log;
+        }
+
+        /**
+         * Write the new structures of the region and compact it if it has too many duplicate entries.
+         *
+         * @throws IOException If the region cannot be written.
+         */
+        private void flush() throws IOException {
+            log.flush();
+            int liveEntries = structures.size() + bounds.size();
+            if (loggedEntries - liveEntries <= Math.max(COMPACT_THRESHOLD, liveEntries / 4))
+                return;
+            List<StructureLogFile.Entry> entries = new ArrayList<>(liveEntries);
+            for (Map.Entry<Long, String> entry : structures.entrySet()) {
+                entries.add(new StructureLogFile.Entry(entry.getValue(), world, entry.getKey()));
+            }
+            entries.addAll(bounds.values());
+            log.compact(entries);
+            loggedEntries = liveEntries;
+        }
+    }
+}
@@ -1,8 +1,6 @@
 package com.ryandw11.structure.listener;
 
 import com.ryandw11.structure.CustomStructures;
-import com.ryandw11.structure.utils.StructurePicker;
-import org.bukkit.block.Block;
 import org.bukkit.event.EventHandler;
 import org.bukkit.event.Listener;
 import org.bukkit.event.world.ChunkLoadEvent;
@@ -29,17 +27,10 @@ public class ChunkLoad implements Listener {
         if (!newChunk && !e.isNewChunk()) return;
 
 
-        Block b = e.getChunk().getBlock(8, 5, 8); //Grabs the block 8, 5, 8 in that chunk.
-
         /*
          * Schematic handler
-         * This activity is done async to prevent the server from lagging.
+         * The chunk is added to the spawn queue so only a few structures are spawned at the same time.
          */
-        try {
-            StructurePicker s = new StructurePicker(b, e.getChunk(), CustomStructures.getInstance());
-            s.runTaskTimer(CustomStructures.plugin, 1, 10);
-        } catch (RuntimeException ex) {
-            // ignore, error already logged.
-        }
+        plugin.getSpawnQueue().submit(e.getChunk());
     }
 }
@@ -0,0 +1,256 @@
+package com.ryandw11.structure.structure;
+
+import com.ryandw11.structure.utils.Pair;
+import com.ryandw11.structure.utils.SpatialGrid;
+import org.bukkit.Location;
+import org.bukkit.World;
+import org.bukkit.configuration.ConfigurationSection;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.UUID;
+
+/**
+ * Keeps track of the structures that spawned recently.
+ *
+ * <p>Spawned structures are stored per world in the order they spawned. When more structures are stored than the
+ * capacity, the oldest structures across all worlds are forgotten right away. A world can also have its own
+ * capacity, in which case the oldest structures of that world are forgotten once it is full. Structures older than
+ * the time to live are forgotten by {@link #evictExpired()}. Both only ever look at the oldest entries, so the cost
+ * does not grow with the number of stored structures.</p>
+ *
+ * <p>The locations are also kept in a {@link SpatialGrid} to quickly check if a structure spawned nearby.</p>
+ *
+ * <p>This class is thread safe. Changes are done under a single lock, {@link #hasWithin(Location, double)} only
+ * uses the grid and does not lock.</p>
+ */
+public class SpawnedStructureStore {
+
+    /**
+     * The default number of structures stored across all worlds.
+     */
+    public static final int DEFAULT_CAPACITY = 300;
+    /**
+     * The default time to live of a stored structure in seconds. (3 days).
+     */
+    public static final long DEFAULT_TIME_TO_LIVE = 259200;
+
+    private final int capacity;
+    private final Limits defaultLimits;
+    private final Map<String, Limits> worldLimits;
+    private final Map<UUID, WorldEntries> worlds = new HashMap<>();
+    private int size;
+    // Cells of 512 by 512 blocks, the same size as a region file.
+    private final SpatialGrid<Pair<Location, Long>> grid = new SpatialGrid<>(9);
+
+    /**
+     * Construct the store from the spawnedStructures section of the config.
+     *
+     * <p>The capacity applies to all worlds together. Each world in the worlds sub-section can have its own
+     * capacity and time to live.</p>
+     *
+     * @param section The configuration section. (Null to use the default values).
+     */
+    public SpawnedStructureStore(@Nullable ConfigurationSection section) {
+        this.capacity = section == null ? DEFAULT_CAPACITY : section.getInt("capacity", DEFAULT_CAPACITY);
+        this.defaultLimits = new Limits(-1, section == null
+                ? DEFAULT_TIME_TO_LIVE * 1000 : section.getLong("timeToLive", DEFAULT_TIME_TO_LIVE) * 1000);
+
+        Map<String, Limits> limits = new HashMap<>();
+        ConfigurationSection worldsSection = section == null ? null : section.getConfigurationSection("worlds");
+        if (worldsSection != null) {
+            for (String world : worldsSection.getKeys(false)) {
+                ConfigurationSection worldSection = worldsSection.getConfigurationSection(world);
+                if (worldSection != null)
+                    limits.put(world, readLimits(worldSection, defaultLimits));
+            }
+        }
+        this.worldLimits = Collections.unmodifiableMap(limits);
+    }
+
+    /**
+     * Read the capacity and time to live from a configuration section.
+     *
+     * @param section  The configuration section.
+     * @param defaults The values to use if the section does not contain them.
+     * @return The capacity and time to live.
+     */
+    private static Limits readLimits(ConfigurationSection section, Limits defaults) {
+        return new Limits(section.getInt("capacity", defaults.capacity()),
+                section.getLong("timeToLive", defaults.timeToLive() / 1000) * 1000);
+    }
+
+    /**
+     * Store a spawned structure.
+     *
+     * <p>If the world is over its own capacity afterwards, the oldest structures in the world are removed. If the
+     * store is over the capacity, the oldest structures across all worlds are removed.</p>
+     *
+     * @param location  The location of the structure.
+     * @param structure The structure.
+     * @return The key of the stored structure.
+     */
+    public synchronized Pair<Location, Long> put(Location location, Structure structure) {
+        World world = Objects.requireNonNull(location.getWorld());
+        WorldEntries entries = worlds.computeIfAbsent(world.getUID(), uuid -> new WorldEntries(getLimits(world)));
+
+        Pair<Location, Long> key = Pair.of(location, System.currentTimeMillis());
+        grid.insert(location, key);
+        entries.deque.addLast(new Entry(key, structure));
+        size++;
+
+        int worldCapacity = entries.limits.capacity();
+        while (worldCapacity >= 0 && entries.deque.size() > worldCapacity) {
+            removeOldest(entries);
+        }
+        while (capacity >= 0 && size > capacity) {
+            removeOldest(getOldestWorld());
+        }
+        return key;
+    }
+
+    /**
+     * Remove every structure that is older than the time to live of its world.
+     *
+     * @return The number of structures that were removed.
+     */
+    public synchronized int evictExpired() {
+        long now = System.currentTimeMillis();
+        int removed = 0;
+        for (WorldEntries entries : worlds.values()) {
+            long timeToLive = entries.limits.timeToLive();
+            if (timeToLive < 0)
+                continue;
+            Entry oldest;
+            while ((oldest = entries.deque.peekFirst()) != null && now - oldest.key().getRight() > timeToLive) {
+                removeOldest(entries);
+                removed++;
+            }
+        }
+        return removed;
+    }
+
+    /**
+     * Get the world that holds the oldest stored structure.
+     *
+     * <p>Only the oldest structure of each world is looked at.</p>
+     *
+     * @return The structures of the world with the oldest structure.
+     */
+    private WorldEntries getOldestWorld() {
+        WorldEntries oldestWorld = null;
+        long oldestTime = Long.MAX_VALUE;
+        for (WorldEntries entries : worlds.values()) {
+            Entry oldest = entries.deque.peekFirst();
+            if (oldest != null && oldest.key().getRight() < oldestTime) {
+                oldestWorld = entries;
+                oldestTime = oldest.key().getRight();
+            }
+        }
+        return oldestWorld;
+    }
+
+    /**
+     * Remove the oldest structure of a world.
+     *
+     * @param entries The structures of the world. (Must not be empty).
+     */
+    private void removeOldest(WorldEntries entries) {
+        Entry oldest = entries.deque.pollFirst();
+        size--;
+        grid.remove(oldest.key().getLeft(), oldest.key());
+    }
+
+    /**
+     * Check if a stored structure is within a radius of a location.
+     *
+     * @param location The location to check.
+     * @param radius   The radius in blocks.
+     * @return If a stored structure is within the radius.
+     */
+    public boolean hasWithin(Location location, double radius) {
+        return grid.hasWithin(location, radius);
+    }
+
+    /**
+     * Get a copy of the stored structures.
+     *
+     * <p>The structures of each world are in the order they spawned.</p>
+     *
+     * @return A copy of the stored structures.
+     */
+    public synchronized List<Pair<Pair<Location, Long>, Structure>> getEntries() {
+        List<Pair<Pair<Location, Long>, Structure>> result = new ArrayList<>();
+        for (WorldEntries entries : worlds.values()) {
+            for (Entry entry : entries.deque) {
+                result.add(Pair.of(entry.key(), entry.structure()));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Get the number of stored structures.
+     *
+     * @return The number of stored structures.
+     */
+    public synchronized int size() {
+        return size;
+    }
+
+    /**
+     * Remove every stored structure.
+     */
+    public synchronized void clear() {
+        worlds.clear();
+        grid.clear();
+        size = 0;
+    }
+
+    /**
+     * Get the capacity and time to live of a world.
+     *
+     * @param world The world.
+     * @return The capacity and time to live of the world.
+     */
+    private Limits getLimits(World world) {
+        return worldLimits.getOrDefault(world.getName(), defaultLimits);
+    }
+
+    /**
+     * The capacity and time to live of a world.
+     *
+     * @param capacity   The maximum number of structures stored in the world. (Negative for no limit).
+     * @param timeToLive The time in milliseconds that a structure is stored. (Negative for no limit).
+     */
+    private record Limits(int capacity, long timeToLive) {
+    }
+
+    /**
+     * A stored structure.
+     *
+     * @param key       The location and spawn time of the structure.
+     * @param structure The structure.
+     */
+    private record Entry(Pair<Location, Long> key, Structure structure) {
+    }
+
+    /**
+     * The stored structures of a world, oldest first.
+     */
+    private static class WorldEntries {
+        private final Limits limits;
+        private final Deque<Entry> deque = new ArrayDeque<>();
+
+        private WorldEntries(Limits limits) {
+            this.limits = limits;
+        }
+    }
+}
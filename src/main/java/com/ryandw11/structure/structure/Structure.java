@@ -3,22 +3,30 @@ package com.ryandw11.structure.structure;
 import com.ryandw11.structure.CustomStructures;
 import com.ryandw11.structure.SchematicHandler;
 import com.ryandw11.structure.api.structaddon.StructureSection;
+import com.ryandw11.structure.exceptions.StructureConfigurationException;
+import com.ryandw11.structure.io.CompiledSchematic;
 import com.ryandw11.structure.loottables.LootTable;
 import com.ryandw11.structure.loottables.LootTableType;
+import com.ryandw11.structure.structure.predicates.SpawnContext;
+import com.ryandw11.structure.structure.predicates.SpawnPredicate;
+import com.ryandw11.structure.structure.predicates.SpawnPredicateChain;
 import com.ryandw11.structure.structure.properties.*;
 import com.ryandw11.structure.utils.RandomCollection;
 import com.sk89q.worldedit.WorldEditException;
 import org.bukkit.Chunk;
 import org.bukkit.Location;
+import org.bukkit.World;
+import org.bukkit.block.Biome;
 import org.bukkit.block.Block;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
+import java.io.File;
 import java.io.IOException;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Supplier;
 
 /**
  * Represents a complete Structure for the plugin.
@@ -47,7 +55,12 @@ public class Structure {
     private final List<StructureSection> structureSections;
     private final double baseRotation;
 
+    private final SpawnPredicateChain spawnPredicates;
+
     private double subSchemRotation = 0d;
+    private CompiledSchematic compiledSchematicData;
+    // The modification time of the compiled schematic file if it was not valid.
+    private long invalidCompiledSchematic = Long.MIN_VALUE;
 
     /**
      * Create a structure from the {@link StructureBuilder}.
@@ -71,6 +84,12 @@ public class Structure {
         this.lootTables = builder.lootTables;
         this.structureSections = builder.structureSections;
         this.baseRotation = builder.baseRotation;
+        this.spawnPredicates = SpawnPredicateChain.compile(this);
+
+        // Load the compiled schematic once, so pasting does not need to read it from the disk.
+        if (isCompiled) {
+            getCompiledSchematicData();
+        }
     }
 
     /**
@@ -130,6 +149,46 @@ public class Structure {
         return compiledSchematic;
     }
 
+    /**
+     * Get the decoded data of the compiled schematic.
+     *
+     * <p>The data is kept in memory and is only read from the disk again if the compiled schematic file changed.
+     * If the file is not valid, a warning is logged and the structure is pasted as if it was not compiled until
+     * the file changes.</p>
+     * <p>This method is thread safe.</p>
+     *
+     * @return The decoded data of the compiled schematic. (Null if it is not compiled or the file is not valid).
+     */
+    @Nullable
+    public synchronized CompiledSchematic getCompiledSchematicData() {
+        if (!isCompiled)
+            return null;
+        if (compiledSchematicData != null && !compiledSchematicData.isOutdated())
+            return compiledSchematicData;
+        File file = getCompiledSchematicFile();
+        if (compiledSchematicData == null && file.lastModified() == invalidCompiledSchematic)
+            return null;
+        long lastModified = file.lastModified();
+        try {
+            compiledSchematicData = CompiledSchematic.read(file);
+        } catch (StructureConfigurationException ex) {
+            compiledSchematicData = null;
+            invalidCompiledSchematic = lastModified;
+            CustomStructures.getInstance().getLogger().warning(ex.getMessage());
+            CustomStructures.getInstance().getLogger().warning("The structure " + name + " is pasted as if it was not compiled.");
+        }
+        return compiledSchematicData;
+    }
+
+    /**
+     * Get the compiled schematic file.
+     *
+     * @return The compiled schematic file.
+     */
+    private File getCompiledSchematicFile() {
+        return new File(CustomStructures.getInstance().getDataFolder() + "/schematics/" + compiledSchematic);
+    }
+
     /**
      * Get the structure location properties.
      *
@@ -239,36 +298,67 @@ public class Structure {
      * @return If the structure can spawn
      */
     public boolean canSpawn(@Nullable Block block, @NotNull Chunk chunk) {
-        // Check to see if the structure can spawn in the current world.
-        if (!getStructureLocation().getWorlds().isEmpty()) {
-            if (!getStructureLocation().getWorlds().contains(chunk.getWorld().getName()))
-                return false;
-        }
-        // If the block is null, that means it is in the void, check if it can spawn in the void.
-        if (block == null && !getStructureProperties().canSpawnInVoid())
-            return false;
-        else if (block == null) {
-            if (ThreadLocalRandom.current().nextInt(0, getChanceOutOf() + 1) > getChanceNumber())
-                return false;
-
-            return getStructureLocation().hasBiome(chunk.getBlock(0, 20, 0).getBiome());
-        }
+        int x = block == null ? (chunk.getX() << 4) + 8 : block.getX();
+        int z = block == null ? (chunk.getZ() << 4) + 8 : block.getZ();
+        return canSpawn(chunk.getWorld(), x, z, block == null ? null : block.getLocation(),
+                () -> block == null ? chunk.getBlock(0, 20, 0).getBiome() : block.getBiome());
+    }
 
-        // Check to see if the structure is far enough away from spawn.
-        if (Math.abs(block.getX()) < getStructureLocation().getXLimitation())
-            return false;
-        if (Math.abs(block.getZ()) < getStructureLocation().getZLimitation())
-            return false;
+    /**
+     * Checks to see if the structure can spawn.
+     * <p>This also checks structure locations.</p>
+     * <p>This does not access the world, so it is safe to call off of the main thread as long as the biome
+     * supplier is.</p>
+     *
+     * @param world    The world the structure is spawning in.
+     * @param x        The x coordinate of the column the structure is spawning in.
+     * @param z        The z coordinate of the column the structure is spawning in.
+     * @param location The location of the block. (Null means it is spawning in the void.)
+     * @param biome    Supplies the biome the structure is spawning in.
+     * @return If the structure can spawn
+     */
+    public boolean canSpawn(@NotNull World world, int x, int z, @Nullable Location location, @NotNull Supplier<Biome> biome) {
+        return canSpawnInColumn(world, x, z) && canSpawnAt(world, x, z, location, biome);
+    }
 
-        if (!CustomStructures.getInstance().getStructureHandler().validDistance(this, block.getLocation()))
-            return false;
+    /**
+     * Checks the spawn rules that only need the column the structure is spawning in.
+     * <p>These are the cheap rules, like the chance and the distance from spawn, so they are checked before
+     * the block to spawn on is found.</p>
+     * <p>This is safe to call off of the main thread.</p>
+     *
+     * @param world The world the structure is spawning in.
+     * @param x     The x coordinate of the column.
+     * @param z     The z coordinate of the column.
+     * @return If the structure can spawn in the column.
+     */
+    public boolean canSpawnInColumn(@NotNull World world, int x, int z) {
+        return spawnPredicates.test(SpawnPredicate.Stage.CHUNK, new SpawnContext(world, x, z, null, null));
+    }
 
-        // Check to see if the structure has the chance to spawn
-        if (ThreadLocalRandom.current().nextInt(0, getChanceOutOf() + 1) > getChanceNumber())
-            return false;
+    /**
+     * Checks the spawn rules that need the block the structure is spawning on.
+     * <p>This should be called after {@link #canSpawnInColumn(World, int, int)} passes.</p>
+     * <p>This is safe to call off of the main thread as long as the biome supplier is.</p>
+     *
+     * @param world    The world the structure is spawning in.
+     * @param x        The x coordinate of the column.
+     * @param z        The z coordinate of the column.
+     * @param location The location of the block. (Null means it is spawning in the void.)
+     * @param biome    Supplies the biome the structure is spawning in.
+     * @return If the structure can spawn at the location.
+     */
+    public boolean canSpawnAt(@NotNull World world, int x, int z, @Nullable Location location, @NotNull Supplier<Biome> biome) {
+        return spawnPredicates.test(SpawnPredicate.Stage.LOCATION, new SpawnContext(world, x, z, location, biome));
+    }
 
-        // Check to see if the structure can spawn in the current biome.
-        return getStructureLocation().hasBiome(block.getBiome());
+    /**
+     * Get the compiled spawn rules of the structure.
+     *
+     * @return The compiled spawn rules.
+     */
+    public SpawnPredicateChain getSpawnPredicates() {
+        return spawnPredicates;
     }
 
     /**
@@ -293,6 +383,7 @@ public class Structure {
 
     /**
      * Spawn the schematic at the given location.
+     * <p>The schematic is pasted over the next few ticks by the paste scheduler.</p>
      *
      * @param location The location to spawn it at.
      */
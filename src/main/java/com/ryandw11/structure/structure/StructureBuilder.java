@@ -5,6 +5,7 @@ import com.ryandw11.structure.api.structaddon.CustomStructureAddon;
 import com.ryandw11.structure.api.structaddon.StructureSection;
 import com.ryandw11.structure.api.structaddon.StructureSectionProvider;
 import com.ryandw11.structure.exceptions.StructureConfigurationException;
+import com.ryandw11.structure.io.SchematicCompiler;
 import com.ryandw11.structure.loottables.LootTable;
 import com.ryandw11.structure.loottables.LootTableType;
 import com.ryandw11.structure.structure.properties.*;
@@ -46,6 +47,8 @@ public class StructureBuilder {
     protected int chanceOutOf;
     protected String compiledSchematic;
     protected boolean isCompiled = false;
+    // If the compiled schematic was found automatically instead of being set in the config.
+    private boolean autoCompiled = false;
     protected StructureLocation structureLocation;
     protected StructureProperties structureProperties;
     protected StructureLimitations structureLimitations;
@@ -133,11 +136,25 @@ public class StructureBuilder {
                 CustomStructures.getInstance().getLogger().severe("Invalid compiled schematic file for: " + config.getName());
             else
                 compiledSchematic = config.getString("compiled_schematic");
+        } else if (plugin.getConfig().getBoolean("autoCompileSchematics", false) && schematic != null) {
+            // Use the automatically compiled schematic if it is up-to-date.
+            File schematicFile = new File(plugin.getDataFolder() + "/schematics/" + schematic);
+            File compiledFile = SchematicCompiler.getCompiledFile(schematicFile);
+            if (schematicFile.exists() && SchematicCompiler.isUpToDate(schematicFile, compiledFile)) {
+                isCompiled = true;
+                autoCompiled = true;
+                compiledSchematic = compiledFile.getName();
+            }
         }
 
-        structureLocation = new StructureLocation(this, config);
+        structureLocation = new StructureLocation(config, name);
         structureProperties = new StructureProperties(config);
-        structureLimitations = new StructureLimitations(config);
+        // The structure still loads, it fails with a configuration error when it tries to spawn in the void.
+        if (structureProperties.canSpawnInVoid() && !structureLocation.getSpawnSettings().getRule().isAbsolute())
+            plugin.getLogger().warning(String.format("The structure %s can spawn in the void, but its spawn y value " +
+                    "'%s' is not absolute. It will not be able to spawn in the void.", name,
+                    structureLocation.getSpawnSettings().getValue()));
+        structureLimitations = new StructureLimitations(config, name);
         maskProperty = new MaskProperty(config);
         subSchematics = new SubSchematics(config, CustomStructures.getInstance());
         advancedSubSchematics = new AdvancedSubSchematics(config, CustomStructures.getInstance());
@@ -266,6 +283,7 @@ public class StructureBuilder {
             throw new IllegalArgumentException("Compiled Schem File not found!");
         this.compiledSchematic = cschem;
         this.isCompiled = true;
+        this.autoCompiled = false;
     }
 
     /**
@@ -444,16 +462,19 @@ public class StructureBuilder {
         config.set("StructureLocation.SpawnY", structureLocation.getSpawnSettings().getValue());
         config.set("StructureLocation.SpawnYHeightMap", structureLocation.getSpawnSettings().getHeightMap().toString());
         config.set("StructureLocation.Biome", structureLocation.getBiomes());
+        structureLocation.getPlacement().ifPresent(placement ->
+                placement.saveToFile(config.createSection("StructureLocation.Placement")));
 
         config.set("StructureProperties.PlaceAir", structureProperties.canPlaceAir());
         config.set("StructureProperties.randomRotation", structureProperties.isRandomRotation());
+        config.set("StructureProperties.cacheRotations", structureProperties.isCachingRotations());
         config.set("StructureProperties.ignorePlants", structureProperties.isIgnoringPlants());
         config.set("StructureProperties.spawnInWater", structureProperties.canSpawnInWater());
         config.set("StructureProperties.spawnInLavaLakes", structureProperties.canSpawnInLavaLakes());
 
         config.set("StructureLimitations.whitelistSpawnBlocks", structureLimitations.getWhitelistBlocks());
 
-        if (isCompiled)
+        if (isCompiled && !autoCompiled)
             config.set("compiled_schematic", compiledSchematic);
 
         for (Map.Entry<LootTableType, RandomCollection<LootTable>> loot : lootTables.entrySet()) {
@@ -3,12 +3,15 @@ package com.ryandw11.structure.structure;
 import com.ryandw11.structure.CustomStructures;
 import com.ryandw11.structure.api.CustomStructuresAPI;
 import com.ryandw11.structure.exceptions.StructureConfigurationException;
+import com.ryandw11.structure.io.SchematicCompiler;
 import com.ryandw11.structure.io.StructureFileReader;
 import com.ryandw11.structure.threading.CheckStructureList;
 import com.ryandw11.structure.utils.Pair;
+import org.bukkit.Bukkit;
 import org.bukkit.Location;
 
 import java.io.File;
+import java.io.IOException;
 import java.util.*;
 import java.util.stream.Collectors;
 
@@ -21,12 +24,11 @@ import java.util.stream.Collectors;
  */
 public class StructureHandler {
 
-    private final SortedMap<Pair<Location, Long>, Structure> spawnedStructures = new TreeMap<>(
-            Comparator.comparingDouble(o -> o.getLeft().distance(new Location(o.getLeft().getWorld(), 0, 0, 0)))
-    );
+    private final SpawnedStructureStore spawnedStructures;
 
     private final List<Structure> structures;
     private final List<String> names;
+    private final StructureIndex structureIndex;
     private final CheckStructureList checkStructureList;
     private StructureFileReader structureFileReader;
 
@@ -40,6 +42,7 @@ public class StructureHandler {
     public StructureHandler(List<String> stringStructs, CustomStructures cs) {
         structures = new ArrayList<>();
         names = new ArrayList<>();
+        spawnedStructures = new SpawnedStructureStore(cs.getConfig().getConfigurationSection("spawnedStructures"));
         cs.getLogger().info("Loading structures from files.");
         for (String s : stringStructs) {
             File struct = new File(cs.getDataFolder() + File.separator + "structures" + File.separator + s.replace(".yml", "") + ".yml");
@@ -66,6 +69,14 @@ public class StructureHandler {
             }
         }
 
+        structureIndex = new StructureIndex(structures);
+
+        // Rotate the schematics of structures that cache their rotations ahead of time.
+        Bukkit.getScheduler().runTaskAsynchronously(cs, () -> cacheRotations(cs));
+
+        if (cs.getConfig().getBoolean("autoCompileSchematics", false))
+            compileSchematics(cs);
+
         checkStructureList = new CheckStructureList(this);
         // Run every 5 minutes.
         checkStructureList.runTaskTimerAsynchronously(cs, 20, 6000);
@@ -76,6 +87,67 @@ public class StructureHandler {
         }
     }
 
+    /**
+     * Compile the schematics of the structures that are not compiled on async worker threads.
+     *
+     * <p>The compiled schematics are used the next time the structures are loaded.</p>
+     *
+     * @param cs The plugin.
+     */
+    private void compileSchematics(CustomStructures cs) {
+        Set<String> schematics = new HashSet<>();
+        for (Structure structure : structures) {
+            if (!structure.isCompiled())
+                schematics.add(structure.getSchematic());
+        }
+        for (String schematic : schematics) {
+            File schematicFile = new File(cs.getDataFolder() + "/schematics/" + schematic);
+            File compiledFile = SchematicCompiler.getCompiledFile(schematicFile);
+            if (!schematicFile.exists() || SchematicCompiler.isUpToDate(schematicFile, compiledFile))
+                continue;
+            Bukkit.getScheduler().runTaskAsynchronously(cs, () -> {
+                try {
+                    SchematicCompiler.compile(schematicFile, compiledFile);
+                    if (cs.isDebug())
+                        cs.getLogger().info("Automatically compiled the schematic: " + schematic);
+                } catch (IOException ex) {
+                    cs.getLogger().warning("Unable to automatically compile the schematic " + schematic + ".");
+                    if (cs.isDebug())
+                        ex.printStackTrace();
+                }
+            });
+        }
+    }
+
+    /**
+     * Fill the clipboard cache with the rotated schematics of every structure that has the
+     * cacheRotations property enabled.
+     *
+     * <p>This is safe to call off of the main thread.</p>
+     *
+     * @param cs The plugin.
+     */
+    private void cacheRotations(CustomStructures cs) {
+        for (Structure structure : structures) {
+            if (!structure.getStructureProperties().isCachingRotations() || !structure.getStructureProperties().isRandomRotation())
+                continue;
+            File schematicFile = new File(cs.getDataFolder() + "/schematics/" + structure.getSchematic());
+            if (!schematicFile.exists())
+                continue;
+            try {
+                for (int quarterTurns = 0; quarterTurns < 4; quarterTurns++) {
+                    cs.getClipboardCache().getClipboard(schematicFile, quarterTurns);
+                    if (!structure.getStructureLimitations().getBlockReplacement().isEmpty())
+                        cs.getClipboardCache().getClipboard(schematicFile, quarterTurns, structure.getStructureLimitations().getBlockReplacement());
+                }
+            } catch (IOException ex) {
+                cs.getLogger().warning("Unable to cache the rotations of the schematic " + structure.getSchematic() + ".");
+                if (cs.isDebug())
+                    ex.printStackTrace();
+            }
+        }
+    }
+
     /**
      * Get the list of structures.
      * <p>This list is read only and cannot be modified.</p>
@@ -86,6 +158,15 @@ public class StructureHandler {
         return Collections.unmodifiableList(structures);
     }
 
+    /**
+     * Get the index of the structures that can spawn in each world and biome.
+     *
+     * @return The index of the structures.
+     */
+    public StructureIndex getStructureIndex() {
+        return structureIndex;
+    }
+
     /**
      * Get structure by name
      *
@@ -120,11 +201,33 @@ public class StructureHandler {
 
     /**
      * Get the Map of spawned structures.
-     * <p>Note: This map is not synchronized by default and can be modified on a different thread.</p>
+     * <p>Note: This is a copy of the spawned structures sorted by the time they spawned. Changes to the map
+     * are not reflected in the spawned structures.</p>
      *
      * @return The list of spawned structures.
+     * @deprecated Use {@link #getSpawnedStructureStore()} instead.
      */
+    @Deprecated
     public SortedMap<Pair<Location, Long>, Structure> getSpawnedStructures() {
+        SortedMap<Pair<Location, Long>, Structure> snapshot = new TreeMap<>(
+                Comparator.<Pair<Location, Long>>comparingLong(Pair::getRight)
+                        .thenComparing(pair -> Objects.requireNonNull(pair.getLeft().getWorld()).getUID())
+                        .thenComparingDouble(pair -> pair.getLeft().getX())
+                        .thenComparingDouble(pair -> pair.getLeft().getY())
+                        .thenComparingDouble(pair -> pair.getLeft().getZ())
+        );
+        for (Pair<Pair<Location, Long>, Structure> entry : spawnedStructures.getEntries()) {
+            snapshot.put(entry.getLeft(), entry.getRight());
+        }
+        return snapshot;
+    }
+
+    /**
+     * Get the store of spawned structures.
+     *
+     * @return The store of spawned structures.
+     */
+    public SpawnedStructureStore getSpawnedStructureStore() {
         return spawnedStructures;
     }
 
@@ -138,32 +241,24 @@ public class StructureHandler {
      * @param struct The structure.
      */
     public void putSpawnedStructure(Location loc, Structure struct) {
-        synchronized (spawnedStructures) {
-            if (structureFileReader != null) {
-                structureFileReader.addStructure(loc, struct);
-            }
-            this.spawnedStructures.put(Pair.of(loc, System.currentTimeMillis()), struct);
+        if (structureFileReader != null) {
+            structureFileReader.addStructure(loc, struct);
         }
+        spawnedStructures.put(loc, struct);
     }
 
     /**
      * Calculate if the structure is far enough away from other structures.
      *
+     * <p>This only looks at the spawned structures near the location, so it does not slow down as more
+     * structures are spawned. It is safe to call from any thread.</p>
+     *
      * @param struct   The structure to calculate that for.
      * @param location The location that the structure is spawning.
      * @return If the distance is valid according to its config.
      */
     public boolean validDistance(Structure struct, Location location) {
-        double closest = Double.MAX_VALUE;
-        synchronized (spawnedStructures) {
-            for (Map.Entry<Pair<Location, Long>, Structure> entry : spawnedStructures.entrySet()) {
-                if (entry.getKey().getLeft().getWorld() != location.getWorld()) continue;
-
-                if (entry.getKey().getLeft().distance(location) < closest)
-                    closest = entry.getKey().getLeft().distance(location);
-            }
-        }
-        return struct.getStructureLocation().getDistanceFromOthers() < closest;
+        return !spawnedStructures.hasWithin(location, struct.getStructureLocation().getDistanceFromOthers());
     }
 
     /**
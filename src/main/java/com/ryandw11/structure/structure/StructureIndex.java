@@ -0,0 +1,179 @@
+package com.ryandw11.structure.structure;
+
+import com.ryandw11.structure.utils.SnapshotStructurePicker;
+import org.bukkit.ChunkSnapshot;
+import org.bukkit.HeightMap;
+import org.bukkit.Material;
+import org.bukkit.World;
+import org.bukkit.block.Biome;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * An index of the structures that can spawn in each world and biome.
+ *
+ * <p>Instead of going through every structure for every chunk, only the structures that are allowed in the world
+ * and in one of the biomes of the chunk are checked. The structures keep the order they were loaded in.</p>
+ *
+ * <p>The index of a world is built the first time a chunk in that world is checked. If the worlds or biomes of a
+ * structure are changed after it was loaded, {@link #invalidate()} must be called.</p>
+ *
+ * <p>This class is thread safe.</p>
+ */
+public class StructureIndex {
+
+    private final List<Structure> structures;
+    private final Map<String, WorldIndex> worlds = new ConcurrentHashMap<>();
+
+    /**
+     * Construct the index for a list of structures.
+     *
+     * @param structures The structures, in order of priority.
+     */
+    public StructureIndex(List<Structure> structures) {
+        this.structures = List.copyOf(structures);
+    }
+
+    /**
+     * Get the structures that can spawn in a world.
+     *
+     * @param world The world.
+     * @return The structures that can spawn in the world, in order of priority.
+     */
+    public List<Structure> getCandidates(World world) {
+        return getWorldIndex(world).structures();
+    }
+
+    /**
+     * Get the structures that can spawn in a world and in at least one of the biomes.
+     *
+     * @param world  The world.
+     * @param biomes The biomes.
+     * @return The structures that can spawn, in order of priority.
+     */
+    public List<Structure> getCandidates(World world, Collection<Biome> biomes) {
+        WorldIndex worldIndex = getWorldIndex(world);
+        BitSet matches = new BitSet(worldIndex.structures().size());
+        for (Biome biome : biomes) {
+            BitSet biomeMatches = worldIndex.biomes().get(biome);
+            if (biomeMatches != null)
+                matches.or(biomeMatches);
+        }
+        if (matches.cardinality() == worldIndex.structures().size())
+            return worldIndex.structures();
+
+        List<Structure> candidates = new ArrayList<>(matches.cardinality());
+        for (int i = matches.nextSetBit(0); i >= 0; i = matches.nextSetBit(i + 1)) {
+            candidates.add(worldIndex.structures().get(i));
+        }
+        return candidates;
+    }
+
+    /**
+     * Get the structures that can spawn in a chunk.
+     *
+     * <p>Structures are checked against the biome at the highest block of the column in the center of the chunk,
+     * according to their own Height Map. Only the Height Maps used by the structures of the world are sampled.</p>
+     *
+     * @param world       The world of the chunk.
+     * @param biomeSource Gets the biome a structure using a Height Map is checked against. (The biome that is used
+     *                    when spawning in the void if the column is empty).
+     * @return The structures that can spawn in the chunk, in order of priority.
+     */
+    public List<Structure> getCandidates(World world, Function<HeightMap, Biome> biomeSource) {
+        Set<Biome> biomes = EnumSet.noneOf(Biome.class);
+        for (HeightMap heightMap : getWorldIndex(world).heightMaps()) {
+            biomes.add(biomeSource.apply(heightMap));
+        }
+        return getCandidates(world, biomes);
+    }
+
+    /**
+     * Get the structures that can spawn in a chunk from a snapshot of the chunk.
+     *
+     * <p>The biomes are sampled the same way as {@link SnapshotStructurePicker}, so the highest blocks are
+     * calculated from the blocks of the snapshot.</p>
+     * <p>This is safe to call off of the main thread.</p>
+     *
+     * @param world    The world of the chunk.
+     * @param snapshot The snapshot of the chunk. (Must include its biomes).
+     * @return The structures that can spawn in the chunk, in order of priority.
+     */
+    public List<Structure> getCandidates(World world, ChunkSnapshot snapshot) {
+        int minHeight = world.getMinHeight();
+        int maxHeight = world.getMaxHeight();
+        return getCandidates(world, heightMap -> {
+            int y = SnapshotStructurePicker.getHighestBlockY(snapshot, 8, 8, heightMap, minHeight, maxHeight);
+            if (y < minHeight || snapshot.getBlockType(8, y, 8) == Material.VOID_AIR)
+                return snapshot.getBiome(0, Math.max(minHeight, Math.min(maxHeight - 1, 20)), 0);
+            return snapshot.getBiome(8, y, 8);
+        });
+    }
+
+    /**
+     * Clear the index so it is rebuilt the next time it is used.
+     */
+    public void invalidate() {
+        worlds.clear();
+    }
+
+    /**
+     * Get the index of a world, building it if needed.
+     *
+     * @param world The world.
+     * @return The index of the world.
+     */
+    private WorldIndex getWorldIndex(World world) {
+        return worlds.computeIfAbsent(world.getName(), this::buildWorldIndex);
+    }
+
+    /**
+     * Build the index of a world.
+     *
+     * @param worldName The name of the world.
+     * @return The index of the world.
+     */
+    private WorldIndex buildWorldIndex(String worldName) {
+        List<Structure> worldStructures = new ArrayList<>();
+        for (Structure structure : structures) {
+            List<String> structureWorlds = structure.getStructureLocation().getWorlds();
+            if (structureWorlds.isEmpty() || structureWorlds.contains(worldName))
+                worldStructures.add(structure);
+        }
+
+        Map<Biome, BitSet> biomes = new EnumMap<>(Biome.class);
+        for (Biome biome : Biome.values()) {
+            BitSet matches = new BitSet(worldStructures.size());
+            for (int i = 0; i < worldStructures.size(); i++) {
+                if (worldStructures.get(i).getStructureLocation().hasBiome(biome))
+                    matches.set(i);
+            }
+            biomes.put(biome, matches);
+        }
+
+        Set<HeightMap> heightMaps = EnumSet.noneOf(HeightMap.class);
+        for (Structure structure : worldStructures) {
+            heightMaps.add(structure.getStructureLocation().getSpawnSettings().getHeightMap());
+        }
+        return new WorldIndex(List.copyOf(worldStructures), biomes, Set.copyOf(heightMaps));
+    }
+
+    /**
+     * The structures that can spawn in a world.
+     *
+     * @param structures The structures that can spawn in the world, in order of priority.
+     * @param biomes     For every biome, the positions in the list of the structures that can spawn in it.
+     * @param heightMaps The Height Maps used by the structures that can spawn in the world.
+     */
+    private record WorldIndex(List<Structure> structures, Map<Biome, BitSet> biomes, Set<HeightMap> heightMaps) {
+    }
+}
@@ -0,0 +1,26 @@
+package com.ryandw11.structure.structure.predicates;
+
+import org.bukkit.Location;
+import org.bukkit.World;
+import org.bukkit.block.Biome;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.function.Supplier;
+
+/**
+ * The place a structure is being checked at.
+ *
+ * <p>The location is only known for {@link SpawnPredicate.Stage#LOCATION} predicates.</p>
+ *
+ * @param world    The world the structure is spawning in.
+ * @param x        The x coordinate of the column the structure is spawning in.
+ * @param z        The z coordinate of the column the structure is spawning in.
+ * @param location The location of the block the structure is spawning on. (Null if it is spawning in the void or
+ *                 the location is not known yet).
+ * @param biome    Supplies the biome the structure is spawning in. (Only for {@link SpawnPredicate.Stage#LOCATION}
+ *                 predicates).
+ */
+public record SpawnContext(@NotNull World world, int x, int z, @Nullable Location location,
+                           @Nullable Supplier<Biome> biome) {
+}
@@ -0,0 +1,32 @@
+package com.ryandw11.structure.structure.predicates;
+
+/**
+ * A single rule that decides if a structure can spawn.
+ *
+ * <p>Predicates must be safe to call off of the main thread.</p>
+ */
+@FunctionalInterface
+public interface SpawnPredicate {
+
+    /**
+     * Check if the structure can spawn.
+     *
+     * @param context The place the structure is being checked at.
+     * @return If the structure can spawn according to this rule.
+     */
+    boolean test(SpawnContext context);
+
+    /**
+     * When a predicate can be checked.
+     */
+    enum Stage {
+        /**
+         * Before the block the structure spawns on is found. Only the world and column are known.
+         */
+        CHUNK,
+        /**
+         * After the block the structure spawns on is found.
+         */
+        LOCATION
+    }
+}
@@ -0,0 +1,218 @@
+package com.ryandw11.structure.structure.predicates;
+
+import com.ryandw11.structure.CustomStructures;
+import com.ryandw11.structure.structure.Structure;
+import com.ryandw11.structure.structure.StructureHandler;
+import com.ryandw11.structure.structure.properties.StructureLocation;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The ordered rules that decide if a structure can spawn.
+ *
+ * <p>The chain is compiled once when the structure is built. Within each {@link SpawnPredicate.Stage}, the
+ * predicates are ordered from cheapest to most expensive, and predicates with the same cost are ordered by how
+ * likely they are to reject the structure. The chain stops at the first predicate that rejects the structure.</p>
+ *
+ * <p>Every predicate counts how often it passed and rejected, so the order can be verified and configurations can
+ * be tuned. (See /cstruct stats &lt;structure&gt;). Only one in {@link #TIMING_SAMPLE_RATE} checks is timed, so
+ * the clock is not read on every check.</p>
+ *
+ * <p>This class is thread safe.</p>
+ */
+public class SpawnPredicateChain {
+
+    /**
+     * The cost of a predicate that only compares values.
+     */
+    public static final int COST_TRIVIAL = 0;
+    /**
+     * The cost of a predicate that looks up the world.
+     */
+    public static final int COST_LOOKUP = 1;
+    /**
+     * The cost of a predicate that searches through other structures.
+     */
+    public static final int COST_SEARCH = 2;
+    /**
+     * One in this many checks of a predicate is timed.
+     */
+    public static final int TIMING_SAMPLE_RATE = 64;
+
+    // Replaced as a whole when a predicate is added, so checks never need a lock.
+    private volatile List<Entry> entries = List.of();
+
+    /**
+     * Construct an empty chain.
+     *
+     * <p>Use {@link #compile(Structure)} to get the chain of a structure.</p>
+     */
+    public SpawnPredicateChain() {
+    }
+
+    /**
+     * Compile the spawn rules of a structure into a chain.
+     *
+     * <p>The rules read the properties of the structure when they are checked, so changes to the properties
+     * are still respected.</p>
+     *
+     * @param structure The structure.
+     * @return The chain of spawn rules.
+     */
+    public static SpawnPredicateChain compile(Structure structure) {
+        StructureLocation location = structure.getStructureLocation();
+        SpawnPredicateChain chain = new SpawnPredicateChain();
+
+        chain.add("World", SpawnPredicate.Stage.CHUNK, COST_TRIVIAL, 1,
+                context -> location.getWorlds().isEmpty() || location.getWorlds().contains(context.world().getName()));
+        // Check to see if the structure is far enough away from spawn.
+        chain.add("SpawnDistance", SpawnPredicate.Stage.CHUNK, COST_TRIVIAL, 1,
+                context -> Math.abs(context.x()) >= location.getXLimitation() && Math.abs(context.z()) >= location.getZLimitation());
+        // Check to see if the chunk is picked by the seed based placement.
+        chain.add("Placement", SpawnPredicate.Stage.CHUNK, COST_TRIVIAL, 0,
+                context -> location.getPlacement().map(placement -> placement.isCandidate(context.world().getSeed(),
+                        placement.getSalt(structure.getName()), context.x() >> 4, context.z() >> 4)).orElse(true));
+        // Check to see if the structure has the chance to spawn.
+        chain.add("Chance", SpawnPredicate.Stage.CHUNK, COST_TRIVIAL,
+                (double) (structure.getChanceNumber() + 1) / (structure.getChanceOutOf() + 1),
+                context -> ThreadLocalRandom.current().nextInt(0, structure.getChanceOutOf() + 1) <= structure.getChanceNumber());
+
+        // If the location is null, that means it is in the void, check if it can spawn in the void.
+        chain.add("Void", SpawnPredicate.Stage.LOCATION, COST_TRIVIAL, 1,
+                context -> context.location() != null || structure.getStructureProperties().canSpawnInVoid());
+        // Check to see if the structure can spawn in the current biome.
+        chain.add("Biome", SpawnPredicate.Stage.LOCATION, COST_LOOKUP, 1,
+                context -> location.getBiomes().isEmpty() || location.hasBiome(context.biome().get()));
+        // Check to see if the structure is far enough away from other structures. (Not in the void).
+        chain.add("DistanceFromOthers", SpawnPredicate.Stage.LOCATION, COST_SEARCH, 1,
+                context -> {
+                    StructureHandler structureHandler = CustomStructures.getInstance().getStructureHandler();
+                    return context.location() == null || structureHandler == null
+                            || structureHandler.validDistance(structure, context.location());
+                });
+        return chain;
+    }
+
+    /**
+     * Add a predicate to the chain.
+     *
+     * @param name             The name of the predicate.
+     * @param stage            When the predicate can be checked.
+     * @param cost             The relative cost of the predicate. (Ex: {@link #COST_TRIVIAL}).
+     * @param expectedPassRate The expected fraction of checks that pass. (0 to 1).
+     * @param predicate        The predicate.
+     */
+    public synchronized void add(String name, SpawnPredicate.Stage stage, int cost, double expectedPassRate,
+                                 SpawnPredicate predicate) {
+        List<Entry> newEntries = new ArrayList<>(entries);
+        newEntries.add(new Entry(name, stage, cost, expectedPassRate, predicate));
+        newEntries.sort(Comparator.comparingInt((Entry entry) -> entry.stage.ordinal())
+                .thenComparingInt(entry -> entry.cost)
+                .thenComparingDouble(entry -> entry.expectedPassRate));
+        entries = List.copyOf(newEntries);
+    }
+
+    /**
+     * Check the predicates of a stage.
+     *
+     * @param stage   The stage to check.
+     * @param context The place the structure is being checked at.
+     * @return If every predicate of the stage passed.
+     */
+    public boolean test(SpawnPredicate.Stage stage, SpawnContext context) {
+        for (Entry entry : entries) {
+            if (entry.stage != stage)
+                continue;
+            boolean passed;
+            if (ThreadLocalRandom.current().nextInt(TIMING_SAMPLE_RATE) == 0) {
+                long start = System.nanoTime();
+                passed = entry.predicate.test(context);
+                entry.nanos.add(System.nanoTime() - start);
+                entry.timedChecks.increment();
+            } else {
+                passed = entry.predicate.test(context);
+            }
+            if (!passed) {
+                entry.rejected.increment();
+                return false;
+            }
+            entry.passed.increment();
+        }
+        return true;
+    }
+
+    /**
+     * Get the statistics of every predicate, in the order they are checked.
+     *
+     * @return The statistics of every predicate.
+     */
+    public List<PredicateStats> getStats() {
+        List<PredicateStats> stats = new ArrayList<>();
+        for (Entry entry : entries) {
+            stats.add(new PredicateStats(entry.name, entry.stage, entry.passed.sum(), entry.rejected.sum(),
+                    entry.timedChecks.sum(), entry.nanos.sum()));
+        }
+        return stats;
+    }
+
+    /**
+     * Reset the statistics of every predicate.
+     */
+    public void resetStats() {
+        for (Entry entry : entries) {
+            entry.passed.reset();
+            entry.rejected.reset();
+            entry.timedChecks.reset();
+            entry.nanos.reset();
+        }
+    }
+
+    /**
+     * The statistics of a predicate.
+     *
+     * @param name        The name of the predicate.
+     * @param stage       When the predicate is checked.
+     * @param passed      The number of checks that passed.
+     * @param rejected    The number of checks that rejected the structure.
+     * @param timedChecks The number of checks that were timed.
+     * @param nanos       The total time spent in the timed checks in nanoseconds.
+     */
+    public record PredicateStats(String name, SpawnPredicate.Stage stage, long passed, long rejected,
+                                 long timedChecks, long nanos) {
+        /**
+         * Get the average time of a check.
+         *
+         * @return The average time of a check in nanoseconds. (0 if no check was timed).
+         */
+        public double getAverageNanos() {
+            return timedChecks == 0 ? 0 : (double) nanos / timedChecks;
+        }
+    }
+
+    /**
+     * A predicate in the chain.
+     */
+    private static class Entry {
+        private final String name;
+        private final SpawnPredicate.Stage stage;
+        private final int cost;
+        private final double expectedPassRate;
+        private final SpawnPredicate predicate;
+        private final LongAdder passed = new LongAdder();
+        private final LongAdder rejected = new LongAdder();
+        private final LongAdder timedChecks = new LongAdder();
+        private final LongAdder nanos = new LongAdder();
+
+        private Entry(String name, SpawnPredicate.Stage stage, int cost, double expectedPassRate, SpawnPredicate predicate) {
+            this.name = name;
+            this.stage = stage;
+            this.cost = cost;
+            this.expectedPassRate = expectedPassRate;
+            this.predicate = predicate;
+        }
+    }
+}
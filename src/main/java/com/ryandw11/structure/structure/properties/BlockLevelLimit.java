@@ -9,13 +9,16 @@ import org.bukkit.configuration.file.FileConfiguration;
  * <p>
  * This setting can have multiple modes. The following are valid modes:
  * <code>
- * flat, flat_error
+ * flat, flat_error, graded
  * </code>
  * flat - The ground must not be air in the cube region while the blocks above the ground must be air or plants.
  * <p>
  * flat_error - Same as flat; however, a certain error is acceptable. So if the error is set to 0.33 than it has a 1/3
  * error allowance. Error is calculated by (error_blocks/total_block) if (total_error &#62; allowed_error) than the structure does
  * not spawn. See logic in {@link com.ryandw11.structure.utils.StructurePicker} for more details.
+ * <p>
+ * graded - The highest and lowest ground in the region can be up to a number of blocks (the tolerance) away from
+ * flat. See {@link com.ryandw11.structure.utils.FlatnessMap#getDeviation(int, int, int, int, int)} for more details.
  */
 public class BlockLevelLimit {
     private String mode;
@@ -24,6 +27,8 @@ public class BlockLevelLimit {
 
     private double error = -1;
 
+    private int tolerance = -1;
+
     /**
      * Create a block level limit.
      *
@@ -74,10 +79,19 @@ public class BlockLevelLimit {
                 throw new StructureConfigurationException("`BlockLevelLimit.error` must be greater than 0 and less than 1.");
         }
 
+        if (cs.contains("tolerance")) {
+            tolerance = cs.getInt("tolerance");
+            if (tolerance < 0)
+                throw new StructureConfigurationException("`BlockLevelLimit.tolerance` must be 0 or greater.");
+        }
+
         assert mode != null;
         if(mode.equalsIgnoreCase("flat_error") && !cs.contains("error")){
             throw new StructureConfigurationException("The BlockLevelLimit mode `flat_error` must contain an error setting!");
         }
+        if (mode.equalsIgnoreCase("graded") && !cs.contains("tolerance")) {
+            throw new StructureConfigurationException("The BlockLevelLimit mode `graded` must contain a tolerance setting!");
+        }
     }
 
     /**
@@ -113,6 +127,29 @@ public class BlockLevelLimit {
         this.error = error;
     }
 
+    /**
+     * Get the tolerance of the level limit.
+     * <p>The tolerance configuration is only used by the graded mode.
+     * This value will be -1 for all other modes.</p>
+     *
+     * @return The number of blocks the ground can be away from flat.
+     */
+    public int getTolerance() {
+        return tolerance;
+    }
+
+    /**
+     * Set the tolerance for the level limit.
+     * <p>This is only used by the graded mode.</p>
+     *
+     * @param tolerance The number of blocks the ground can be away from flat. (0 or greater).
+     */
+    public void setTolerance(int tolerance) {
+        if (tolerance < 0)
+            throw new IllegalArgumentException("Tolerance must be 0 or greater!");
+        this.tolerance = tolerance;
+    }
+
     /**
      * Get the mode of the block level limit.
      *
@@ -0,0 +1,307 @@
+package com.ryandw11.structure.structure.properties;
+
+import com.ryandw11.structure.exceptions.StructureConfigurationException;
+import org.bukkit.HeightMap;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.ToIntFunction;
+
+/**
+ * A compiled SpawnY value.
+ *
+ * <p>The SpawnY value is parsed once when the structure is loaded, so calculating a height does not do any
+ * string work. The following values are supported:</p>
+ * <ul>
+ *     <li><code>top</code> - The highest block.</li>
+ *     <li><code>60</code> - An absolute height.</li>
+ *     <li><code>[40;60]</code> - A random absolute height in a range.</li>
+ *     <li><code>+[5]</code> or <code>-[5]</code> - A height relative to the highest block.</li>
+ *     <li><code>+[5;10]</code> or <code>-[5;10]</code> - A random height relative to the highest block.</li>
+ *     <li><code>OCEAN_FLOOR</code> - The highest block of a height map.</li>
+ *     <li><code>min(value, value, ...)</code> or <code>max(value, value, ...)</code> - The lowest or highest of the
+ *     values.</li>
+ *     <li><code>clamp(value, min, max)</code> - A value kept between a minimum and maximum height.</li>
+ * </ul>
+ */
+public interface SpawnYRule {
+
+    /**
+     * Calculate the height.
+     *
+     * @param currentHeight The Y value of the highest block according to the Height Map of the structure. (-1 if
+     *                      spawning in the void).
+     * @param heights       Supplies the Y value of the highest block of other height maps.
+     * @return The height.
+     */
+    int getHeight(int currentHeight, ToIntFunction<HeightMap> heights);
+
+    /**
+     * Get if the height does not depend on the highest block.
+     *
+     * <p>Only absolute values can be used by structures that spawn in the void.</p>
+     *
+     * @return If the height does not depend on the highest block.
+     */
+    boolean isAbsolute();
+
+    /**
+     * Compile a SpawnY value.
+     *
+     * @param value The SpawnY value.
+     * @return The compiled rule.
+     * @throws StructureConfigurationException If the value is not valid.
+     */
+    static SpawnYRule compile(String value) {
+        String trimmed = value.trim();
+        if (trimmed.isEmpty())
+            throw new StructureConfigurationException("The SpawnY value cannot be empty!");
+        String lower = trimmed.toLowerCase(Locale.ROOT);
+
+        if (lower.equals("top"))
+            return new Top();
+        if (lower.startsWith("min(") || lower.startsWith("max(") || lower.startsWith("clamp(")) {
+            if (!lower.endsWith(")"))
+                throw new StructureConfigurationException("Invalid SpawnY value '" + value + "': missing ')'.");
+            String function = lower.substring(0, lower.indexOf('('));
+            List<SpawnYRule> arguments = new ArrayList<>();
+            for (String argument : splitArguments(trimmed.substring(function.length() + 1, trimmed.length() - 1), value)) {
+                arguments.add(compile(argument));
+            }
+            if (function.equals("clamp")) {
+                if (arguments.size() != 3 || !(arguments.get(1) instanceof Absolute min) || !(arguments.get(2) instanceof Absolute max))
+                    throw new StructureConfigurationException("Invalid SpawnY value '" + value + "': clamp needs a value, " +
+                            "a minimum height and a maximum height.");
+                if (min.y() > max.y())
+                    throw new StructureConfigurationException("Invalid SpawnY value '" + value + "': the minimum height " +
+                            "must not be greater than the maximum height.");
+                return new Clamp(arguments.get(0), min.y(), max.y());
+            }
+            if (arguments.isEmpty())
+                throw new StructureConfigurationException("Invalid SpawnY value '" + value + "': " + function + " needs at least one value.");
+            return new Extreme(arguments.toArray(new SpawnYRule[0]), function.equals("max"));
+        }
+
+        boolean relative = trimmed.startsWith("+") || trimmed.startsWith("-");
+        int sign = trimmed.startsWith("-") ? -1 : 1;
+        String body = relative ? trimmed.substring(1) : trimmed;
+        if (body.startsWith("[") && body.endsWith("]")) {
+            String[] parts = body.substring(1, body.length() - 1).split(";", -1);
+            if (parts.length == 1) {
+                int offset = parseInt(parts[0], value);
+                return relative ? new Relative(sign * offset) : new Absolute(offset);
+            }
+            if (parts.length != 2)
+                throw new StructureConfigurationException("Invalid SpawnY value '" + value + "': a range must be '[value1;value2]'.");
+            int num1 = parseInt(parts[0], value);
+            int num2 = parseInt(parts[1], value);
+            if (num1 > num2)
+                throw new StructureConfigurationException("SpawnY Value 1 must be greater than value 2 in '[value1;value2]'.");
+            return relative ? new RelativeRange(sign, num1, num2) : new AbsoluteRange(num1, num2);
+        }
+        try {
+            return new HeightMapRule(HeightMap.valueOf(trimmed.toUpperCase(Locale.ROOT)));
+        } catch (IllegalArgumentException ex) {
+            return new Absolute(parseInt(trimmed, value));
+        }
+    }
+
+    /**
+     * Parse a number from a SpawnY value.
+     *
+     * @param number The number.
+     * @param value  The full SpawnY value (for error messages).
+     * @return The number.
+     * @throws StructureConfigurationException If the number is not valid.
+     */
+    private static int parseInt(String number, String value) {
+        try {
+            return Integer.parseInt(number.trim());
+        } catch (NumberFormatException ex) {
+            throw new StructureConfigurationException("Invalid SpawnY value '" + value + "': '" + number.trim() + "' is not a number.");
+        }
+    }
+
+    /**
+     * Split the arguments of a function on the commas that are not inside another function.
+     *
+     * @param arguments The arguments of the function.
+     * @param value     The full SpawnY value (for error messages).
+     * @return The arguments.
+     * @throws StructureConfigurationException If the parentheses do not match.
+     */
+    private static List<String> splitArguments(String arguments, String value) {
+        List<String> result = new ArrayList<>();
+        int depth = 0;
+        int start = 0;
+        for (int i = 0; i < arguments.length(); i++) {
+            char c = arguments.charAt(i);
+            if (c == '(')
+                depth++;
+            else if (c == ')')
+                depth--;
+            else if (c == ',' && depth == 0) {
+                result.add(arguments.substring(start, i));
+                start = i + 1;
+            }
+            if (depth < 0)
+                throw new StructureConfigurationException("Invalid SpawnY value '" + value + "': unexpected ')'.");
+        }
+        if (depth != 0)
+            throw new StructureConfigurationException("Invalid SpawnY value '" + value + "': missing ')'.");
+        if (!arguments.isBlank())
+            result.add(arguments.substring(start));
+        return result;
+    }
+
+    /**
+     * The highest block.
+     */
+    record Top() implements SpawnYRule {
+        @Override
+        public int getHeight(int currentHeight, ToIntFunction<HeightMap> heights) {
+            return currentHeight;
+        }
+
+        @Override
+        public boolean isAbsolute() {
+            return false;
+        }
+    }
+
+    /**
+     * An absolute height.
+     *
+     * @param y The height.
+     */
+    record Absolute(int y) implements SpawnYRule {
+        @Override
+        public int getHeight(int currentHeight, ToIntFunction<HeightMap> heights) {
+            return y;
+        }
+
+        @Override
+        public boolean isAbsolute() {
+            return true;
+        }
+    }
+
+    /**
+     * A random absolute height in a range.
+     *
+     * @param min The lowest height.
+     * @param max The highest height.
+     */
+    record AbsoluteRange(int min, int max) implements SpawnYRule {
+        @Override
+        public int getHeight(int currentHeight, ToIntFunction<HeightMap> heights) {
+            return ThreadLocalRandom.current().nextInt(min, max + 1);
+        }
+
+        @Override
+        public boolean isAbsolute() {
+            return true;
+        }
+    }
+
+    /**
+     * A height relative to the highest block.
+     *
+     * @param offset The offset from the highest block.
+     */
+    record Relative(int offset) implements SpawnYRule {
+        @Override
+        public int getHeight(int currentHeight, ToIntFunction<HeightMap> heights) {
+            return currentHeight + offset;
+        }
+
+        @Override
+        public boolean isAbsolute() {
+            return false;
+        }
+    }
+
+    /**
+     * A random height relative to the highest block.
+     *
+     * @param sign 1 to go up from the highest block, -1 to go down.
+     * @param min  The smallest offset.
+     * @param max  The largest offset.
+     */
+    record RelativeRange(int sign, int min, int max) implements SpawnYRule {
+        @Override
+        public int getHeight(int currentHeight, ToIntFunction<HeightMap> heights) {
+            return currentHeight + sign * ThreadLocalRandom.current().nextInt(min, max + 1);
+        }
+
+        @Override
+        public boolean isAbsolute() {
+            return false;
+        }
+    }
+
+    /**
+     * The highest block of a height map.
+     *
+     * @param heightMap The height map.
+     */
+    record HeightMapRule(HeightMap heightMap) implements SpawnYRule {
+        @Override
+        public int getHeight(int currentHeight, ToIntFunction<HeightMap> heights) {
+            return heights.applyAsInt(heightMap);
+        }
+
+        @Override
+        public boolean isAbsolute() {
+            return false;
+        }
+    }
+
+    /**
+     * The lowest or highest of multiple values.
+     *
+     * @param rules   The values.
+     * @param highest If the highest value is used instead of the lowest.
+     */
+    record Extreme(SpawnYRule[] rules, boolean highest) implements SpawnYRule {
+        @Override
+        public int getHeight(int currentHeight, ToIntFunction<HeightMap> heights) {
+            int result = rules[0].getHeight(currentHeight, heights);
+            for (int i = 1; i < rules.length; i++) {
+                int height = rules[i].getHeight(currentHeight, heights);
+                result = highest ? Math.max(result, height) : Math.min(result, height);
+            }
+            return result;
+        }
+
+        @Override
+        public boolean isAbsolute() {
+            for (SpawnYRule rule : rules) {
+                if (!rule.isAbsolute())
+                    return false;
+            }
+            return true;
+        }
+    }
+
+    /**
+     * A value kept between a minimum and maximum height.
+     *
+     * @param rule The value.
+     * @param min  The minimum height.
+     * @param max  The maximum height.
+     */
+    record Clamp(SpawnYRule rule, int min, int max) implements SpawnYRule {
+        @Override
+        public int getHeight(int currentHeight, ToIntFunction<HeightMap> heights) {
+            return Math.max(min, Math.min(max, rule.getHeight(currentHeight, heights)));
+        }
+
+        @Override
+        public boolean isAbsolute() {
+            return rule.isAbsolute();
+        }
+    }
+}
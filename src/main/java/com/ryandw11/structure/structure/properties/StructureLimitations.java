@@ -1,8 +1,13 @@
 package com.ryandw11.structure.structure.properties;
 
+import com.ryandw11.structure.CustomStructures;
+import org.bukkit.Bukkit;
 import org.bukkit.Material;
+import org.bukkit.NamespacedKey;
+import org.bukkit.Tag;
 import org.bukkit.block.Block;
 import org.bukkit.configuration.file.FileConfiguration;
+import org.jetbrains.annotations.Nullable;
 
 import java.util.*;
 
@@ -15,6 +20,9 @@ public class StructureLimitations {
     private int iterationLimit;
     private final List<String> whitelistSpawnBlocks;
     private final List<String> blacklistSpawnBlocks;
+    // The whitelist and blacklist resolved to block types, so no strings are compared while spawning.
+    private final Set<Material> whitelistSpawnMaterials;
+    private final Set<Material> blacklistSpawnMaterials;
     private final BlockLevelLimit blockLevelLimit;
     private final Map<Material, Material> blockReplacement;
     private double replacementBlocksDelay;
@@ -26,6 +34,16 @@ public class StructureLimitations {
      * @param configuration The configuration to create from.
      */
     public StructureLimitations(FileConfiguration configuration) {
+        this(configuration, null);
+    }
+
+    /**
+     * Create structure limitations from a file.
+     *
+     * @param configuration The configuration to create from.
+     * @param structureName The name of the structure, used when warning about unknown blocks. (Nullable).
+     */
+    public StructureLimitations(FileConfiguration configuration, @Nullable String structureName) {
         if (!configuration.contains("StructureLimitations.iterationLimit"))
             iterationLimit = 2;
         else
@@ -45,6 +63,8 @@ public class StructureLimitations {
             blacklistSpawnBlocks = new ArrayList<>();
         else
             blacklistSpawnBlocks = configuration.getStringList("StructureLimitations.blacklistSpawnBlocks");
+        whitelistSpawnMaterials = resolveMaterials(whitelistSpawnBlocks, structureName);
+        blacklistSpawnMaterials = resolveMaterials(blacklistSpawnBlocks, structureName);
 
         this.blockLevelLimit = new BlockLevelLimit(configuration);
 
@@ -74,10 +94,58 @@ public class StructureLimitations {
         this.worldHeightRestriction = -1;
         this.whitelistSpawnBlocks = whitelistSpawnBlocks;
         this.blacklistSpawnBlocks = blacklistSpawnBlocks;
+        this.whitelistSpawnMaterials = resolveMaterials(whitelistSpawnBlocks, null);
+        this.blacklistSpawnMaterials = resolveMaterials(blacklistSpawnBlocks, null);
         this.blockLevelLimit = blockLevelLimit;
         this.blockReplacement = blockReplacement;
     }
 
+    /**
+     * Resolve a list of block names into a set of block types.
+     *
+     * <p>Block tags can be used by starting the name with a #. (Ex: #minecraft:logs). Names that are not a
+     * block type or tag are skipped with a warning.</p>
+     *
+     * @param names         The block names.
+     * @param structureName The name of the structure. (Null if it is not known).
+     * @return The set of block types.
+     */
+    private static Set<Material> resolveMaterials(List<String> names, @Nullable String structureName) {
+        Set<Material> materials = EnumSet.noneOf(Material.class);
+        for (String name : names) {
+            if (name.startsWith("#")) {
+                NamespacedKey key = NamespacedKey.fromString(name.substring(1).toLowerCase(Locale.ROOT));
+                Tag<Material> tag = key == null || Bukkit.getServer() == null ? null
+                        : Bukkit.getTag(Tag.REGISTRY_BLOCKS, key, Material.class);
+                if (tag != null)
+                    materials.addAll(tag.getValues());
+                else
+                    warnUnknownBlock("block tag", name, structureName);
+                continue;
+            }
+            Material material = Material.matchMaterial(name);
+            if (material != null)
+                materials.add(material);
+            else
+                warnUnknownBlock("block", name, structureName);
+        }
+        return materials;
+    }
+
+    /**
+     * Warn about a block or block tag that does not exist.
+     *
+     * @param kind          What the name should have been. (Ex: block tag).
+     * @param name          The name.
+     * @param structureName The name of the structure. (Null if it is not known).
+     */
+    private static void warnUnknownBlock(String kind, String name, @Nullable String structureName) {
+        CustomStructures plugin = CustomStructures.getInstance();
+        if (plugin != null)
+            plugin.getLogger().warning(String.format("Unknown %s '%s' in the structure %s, it is skipped.",
+                    kind, name, structureName == null ? "(unknown)" : structureName));
+    }
+
     /**
      * Set the iteration limit for the structure.
      *
@@ -98,6 +166,8 @@ public class StructureLimitations {
 
     /**
      * Get the whitelisted blocks.
+     * <p>The list is resolved into block types when the limitations are created, so changes to the list are
+     * not reflected in {@link #hasWhitelistBlock(Material)}.</p>
      *
      * @return The whitelisted blocks.
      */
@@ -107,6 +177,8 @@ public class StructureLimitations {
 
     /**
      * Get the blacklisted blocks.
+     * <p>The list is resolved into block types when the limitations are created, so changes to the list are
+     * not reflected in {@link #hasBlacklistBlock(Material)}.</p>
      *
      * @return The blacklisted blocks.
      */
@@ -121,12 +193,18 @@ public class StructureLimitations {
      * @return If the whitelist has the block. (Returns true if there is no whitelist)
      */
     public boolean hasWhitelistBlock(Block b) {
+        return hasWhitelistBlock(b.getType());
+    }
+
+    /**
+     * Check to see if the whitelist has a block type.
+     *
+     * @param type The block type to check
+     * @return If the whitelist has the block type. (Returns true if there is no whitelist)
+     */
+    public boolean hasWhitelistBlock(Material type) {
         if (whitelistSpawnBlocks.isEmpty()) return true;
-        for (String block : whitelistSpawnBlocks) {
-            if (block.equalsIgnoreCase(b.getType().toString()))
-                return true;
-        }
-        return false;
+        return whitelistSpawnMaterials.contains(type);
     }
 
     /**
@@ -136,12 +214,17 @@ public class StructureLimitations {
      * @return If the blacklist has the block. (Returns false if there is no blacklist)
      */
     public boolean hasBlacklistBlock(Block b) {
-        if (blacklistSpawnBlocks.isEmpty()) return false;
-        for (String block : blacklistSpawnBlocks) {
-            if (block.equalsIgnoreCase(b.getType().toString()))
-                return true;
-        }
-        return false;
+        return hasBlacklistBlock(b.getType());
+    }
+
+    /**
+     * Check to see if the blacklist has a block type.
+     *
+     * @param type The block type to check.
+     * @return If the blacklist has the block type. (Returns false if there is no blacklist)
+     */
+    public boolean hasBlacklistBlock(Material type) {
+        return blacklistSpawnMaterials.contains(type);
     }
 
     /**
@@ -1,14 +1,20 @@
 package com.ryandw11.structure.structure.properties;
 
+import com.ryandw11.structure.CustomStructures;
 import com.ryandw11.structure.exceptions.StructureConfigurationException;
 import com.ryandw11.structure.structure.StructureBuilder;
 import org.bukkit.HeightMap;
 import org.bukkit.block.Biome;
 import org.bukkit.configuration.ConfigurationSection;
 import org.bukkit.configuration.file.FileConfiguration;
+import org.jetbrains.annotations.Nullable;
 
 import java.util.ArrayList;
+import java.util.EnumSet;
 import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.Set;
 
 /**
  * The configuration section for the Structure Location.
@@ -18,9 +24,12 @@ public class StructureLocation implements StructureProperty {
     private List<String> worlds;
     private StructureYSpawning spawnY;
     private List<String> biomes;
+    // The biomes resolved to biome types, so no strings are compared while spawning.
+    private Set<Biome> biomeSet;
     private double distanceFromOthers;
     private int xLimitation;
     private int zLimitation;
+    private StructurePlacement placement;
 
     /**
      * Create the Structure Location configuration section.
@@ -40,6 +49,16 @@ public class StructureLocation implements StructureProperty {
      * @param fileConfiguration The file configuration to grab the section from.
      */
     public StructureLocation(FileConfiguration fileConfiguration) {
+        this(fileConfiguration, null);
+    }
+
+    /**
+     * Create the Structure Location configuration section.
+     *
+     * @param fileConfiguration The file configuration to grab the section from.
+     * @param structureName     The name of the structure, used when warning about unknown biomes. (Nullable).
+     */
+    public StructureLocation(FileConfiguration fileConfiguration, @Nullable String structureName) {
         ConfigurationSection cs = fileConfiguration.getConfigurationSection("StructureLocation");
         if (cs == null)
             throw new StructureConfigurationException("The `StructureLocation` property is mandatory, please add one to the file for the " +
@@ -53,6 +72,7 @@ public class StructureLocation implements StructureProperty {
             this.biomes = cs.getStringList("Biome");
         else
             this.biomes = new ArrayList<>();
+        this.biomeSet = resolveBiomes(biomes, structureName);
 
         if (cs.contains("DistanceFromOthers"))
             this.distanceFromOthers = Math.max(0, cs.getDouble("DistanceFromOthers"));
@@ -69,6 +89,9 @@ public class StructureLocation implements StructureProperty {
                 zLimitation = cs.getInt("spawn_distance.z");
             }
         }
+
+        if (cs.isConfigurationSection("Placement"))
+            this.placement = new StructurePlacement(cs.getConfigurationSection("Placement"));
     }
 
     /**
@@ -84,6 +107,7 @@ public class StructureLocation implements StructureProperty {
         this.worlds = worlds;
         this.spawnY = spawnSettings;
         this.biomes = biomes;
+        this.biomeSet = resolveBiomes(biomes, null);
         this.distanceFromOthers = 100;
         this.xLimitation = 0;
         this.zLimitation = 0;
@@ -116,6 +140,7 @@ public class StructureLocation implements StructureProperty {
 
     /**
      * Get the list of biomes.
+     * <p>The list is resolved into biomes when it is set, so use {@link #setBiomes(List)} to change it.</p>
      *
      * @return The list of biomes.
      */
@@ -125,6 +150,8 @@ public class StructureLocation implements StructureProperty {
 
     /**
      * Set the list of worlds.
+     * <p>If the structure is already loaded, call {@link com.ryandw11.structure.structure.StructureIndex#invalidate()}
+     * afterwards.</p>
      *
      * @param worlds The list of worlds to set.
      */
@@ -144,11 +171,14 @@ public class StructureLocation implements StructureProperty {
     /**
      * Set the list of biomes.
      * <p>An empty list is assumed to mean all biomes.</p>
+     * <p>If the structure is already loaded, call {@link com.ryandw11.structure.structure.StructureIndex#invalidate()}
+     * afterwards.</p>
      *
      * @param biomes The list of biomes to set.
      */
     public void setBiomes(List<String> biomes) {
         this.biomes = biomes;
+        this.biomeSet = resolveBiomes(biomes, null);
     }
 
     /**
@@ -161,11 +191,32 @@ public class StructureLocation implements StructureProperty {
     public boolean hasBiome(Biome b) {
         if (biomes.isEmpty())
             return true;
-        for (String biome : biomes) {
-            if (b.toString().equalsIgnoreCase(biome.replace("minecraft:", "")))
-                return true;
+        return biomeSet.contains(b);
+    }
+
+    /**
+     * Resolve a list of biome names into a set of biomes.
+     *
+     * <p>Names that are not a biome are skipped with a warning.</p>
+     *
+     * @param names         The biome names.
+     * @param structureName The name of the structure. (Null if it is not known).
+     * @return The set of biomes.
+     */
+    private static Set<Biome> resolveBiomes(List<String> names, @Nullable String structureName) {
+        Set<Biome> resolved = EnumSet.noneOf(Biome.class);
+        for (String name : names) {
+            try {
+                resolved.add(Biome.valueOf(name.replace("minecraft:", "").toUpperCase(Locale.ROOT)));
+            } catch (IllegalArgumentException ex) {
+                // Not a biome in this version of Minecraft.
+                CustomStructures plugin = CustomStructures.getInstance();
+                if (plugin != null)
+                    plugin.getLogger().warning(String.format("Unknown biome '%s' in the structure %s, it is skipped.",
+                            name, structureName == null ? "(unknown)" : structureName));
+            }
         }
-        return false;
+        return resolved;
     }
 
     /**
@@ -224,6 +275,24 @@ public class StructureLocation implements StructureProperty {
         this.distanceFromOthers = distance;
     }
 
+    /**
+     * Get the seed based placement of the structure.
+     *
+     * @return The seed based placement. (Empty if the structure can spawn in any chunk).
+     */
+    public Optional<StructurePlacement> getPlacement() {
+        return Optional.ofNullable(placement);
+    }
+
+    /**
+     * Set the seed based placement of the structure.
+     *
+     * @param placement The seed based placement. (Null to let the structure spawn in any chunk).
+     */
+    public void setPlacement(StructurePlacement placement) {
+        this.placement = placement;
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -238,5 +307,7 @@ public class StructureLocation implements StructureProperty {
             configurationSection.set("spawn_distance.x", xLimitation);
         if (zLimitation > 0)
             configurationSection.set("spawn_distance.z", zLimitation);
+        if (placement != null)
+            placement.saveToFile(configurationSection.createSection("Placement"));
     }
 }
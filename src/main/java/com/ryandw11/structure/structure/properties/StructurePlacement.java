@@ -0,0 +1,223 @@
+package com.ryandw11.structure.structure.properties;
+
+import com.ryandw11.structure.exceptions.StructureConfigurationException;
+import org.bukkit.configuration.ConfigurationSection;
+
+import java.util.Optional;
+import java.util.Random;
+
+/**
+ * The seed based placement of a structure.
+ *
+ * <p>The world is split into square regions of {@link #getSpacing()} chunks. The world seed, the coordinates of a
+ * region and the salt of the structure pick a single chunk in every region where the structure can spawn. This
+ * works the same way as the random spread structure sets of vanilla Minecraft.</p>
+ *
+ * <p>Checking if a chunk is a candidate is done with a few calculations, so it can be done before the world is
+ * looked at. Since the candidates only depend on the world seed, they stay the same across restarts and can be
+ * found without a log of the spawned structures. Two candidates of the same structure are always at least
+ * {@link #getSeparation()} chunks apart.</p>
+ *
+ * <p>Candidates are only places where the structure may spawn. The other spawn rules of the structure (such as the
+ * chance, biome and the structure limitations) still have to pass.</p>
+ */
+public class StructurePlacement implements StructureProperty {
+
+    private int spacing;
+    private int separation;
+    private Integer salt;
+
+    /**
+     * Create the Placement configuration section.
+     *
+     * @param section The Placement section of the Structure Location.
+     * @throws StructureConfigurationException If the spacing or separation are not valid.
+     */
+    public StructurePlacement(ConfigurationSection section) {
+        this(section.getInt("spacing", 32), section.getInt("separation", 8),
+                section.contains("salt") ? section.getInt("salt") : null);
+    }
+
+    /**
+     * Construct the placement without a config.
+     *
+     * @param spacing    The size of a region in chunks.
+     * @param separation The minimum number of chunks between two candidates.
+     * @param salt       The salt of the structure. (Null to use the name of the structure).
+     * @throws StructureConfigurationException If the spacing or separation are not valid.
+     */
+    public StructurePlacement(int spacing, int separation, Integer salt) {
+        if (spacing <= 0)
+            throw new StructureConfigurationException("The placement spacing must be greater than 0.");
+        if (separation < 0 || separation >= spacing)
+            throw new StructureConfigurationException("The placement separation must be at least 0 and less than the spacing.");
+        this.spacing = spacing;
+        this.separation = separation;
+        this.salt = salt;
+    }
+
+    /**
+     * Get the size of a region in chunks.
+     *
+     * @return The size of a region in chunks.
+     */
+    public int getSpacing() {
+        return spacing;
+    }
+
+    /**
+     * Get the minimum number of chunks between two candidates.
+     *
+     * @return The minimum number of chunks between two candidates.
+     */
+    public int getSeparation() {
+        return separation;
+    }
+
+    /**
+     * Set the size of a region and the minimum number of chunks between two candidates.
+     *
+     * @param spacing    The size of a region in chunks.
+     * @param separation The minimum number of chunks between two candidates. (Must be less than the spacing).
+     */
+    public void setSpacing(int spacing, int separation) {
+        if (spacing <= 0 || separation < 0 || separation >= spacing)
+            throw new IllegalArgumentException("The separation must be at least 0 and less than the spacing!");
+        this.spacing = spacing;
+        this.separation = separation;
+    }
+
+    /**
+     * Get the salt of the structure.
+     *
+     * <p>Structures with different salts pick different chunks in the same region.</p>
+     *
+     * @return The salt of the structure. (Empty if the name of the structure is used).
+     */
+    public Optional<Integer> getSalt() {
+        return Optional.ofNullable(salt);
+    }
+
+    /**
+     * Set the salt of the structure.
+     *
+     * @param salt The salt of the structure. (Null to use the name of the structure).
+     */
+    public void setSalt(Integer salt) {
+        this.salt = salt;
+    }
+
+    /**
+     * Get the salt of the structure, using the name of the structure if none is set.
+     *
+     * @param structureName The name of the structure.
+     * @return The salt of the structure.
+     */
+    public int getSalt(String structureName) {
+        // String#hashCode is the same on every JVM, so the salt does not change across restarts.
+        return salt != null ? salt : structureName.hashCode();
+    }
+
+    /**
+     * Check if a chunk is the candidate of its region.
+     *
+     * @param seed   The seed of the world.
+     * @param salt   The salt of the structure.
+     * @param chunkX The x coordinate of the chunk.
+     * @param chunkZ The z coordinate of the chunk.
+     * @return If the structure can spawn in the chunk.
+     */
+    public boolean isCandidate(long seed, int salt, int chunkX, int chunkZ) {
+        long candidate = getCandidate(seed, salt, Math.floorDiv(chunkX, spacing), Math.floorDiv(chunkZ, spacing));
+        return candidateX(candidate) == chunkX && candidateZ(candidate) == chunkZ;
+    }
+
+    /**
+     * Find the closest candidate to a chunk.
+     *
+     * <p>The regions are searched in rings around the chunk until the ring cannot contain a closer
+     * candidate.</p>
+     *
+     * @param seed      The seed of the world.
+     * @param salt      The salt of the structure.
+     * @param chunkX    The x coordinate of the chunk.
+     * @param chunkZ    The z coordinate of the chunk.
+     * @param maxRadius The maximum number of regions to search in every direction.
+     * @return The x and z coordinates of the closest candidate chunk. (Empty if there is none within the radius).
+     */
+    public Optional<int[]> findNearest(long seed, int salt, int chunkX, int chunkZ, int maxRadius) {
+        int regionX = Math.floorDiv(chunkX, spacing);
+        int regionZ = Math.floorDiv(chunkZ, spacing);
+        int[] nearest = null;
+        long nearestDistance = Long.MAX_VALUE;
+        for (int radius = 0; radius <= maxRadius; radius++) {
+            // Every chunk in this ring is at least (radius - 1) regions away.
+            long ringDistance = (long) Math.max(0, radius - 1) * spacing;
+            if (nearest != null && ringDistance * ringDistance > nearestDistance)
+                break;
+            for (int x = -radius; x <= radius; x++) {
+                for (int z = -radius; z <= radius; z++) {
+                    if (Math.abs(x) != radius && Math.abs(z) != radius)
+                        continue;
+                    long candidate = getCandidate(seed, salt, regionX + x, regionZ + z);
+                    long dx = candidateX(candidate) - chunkX;
+                    long dz = candidateZ(candidate) - chunkZ;
+                    long distance = dx * dx + dz * dz;
+                    if (distance < nearestDistance) {
+                        nearestDistance = distance;
+                        nearest = new int[]{candidateX(candidate), candidateZ(candidate)};
+                    }
+                }
+            }
+        }
+        return Optional.ofNullable(nearest);
+    }
+
+    /**
+     * Get the candidate chunk of a region.
+     *
+     * @param seed    The seed of the world.
+     * @param salt    The salt of the structure.
+     * @param regionX The x coordinate of the region.
+     * @param regionZ The z coordinate of the region.
+     * @return The x and z coordinates of the chunk packed into a long.
+     */
+    private long getCandidate(long seed, int salt, int regionX, int regionZ) {
+        Random random = new Random(regionX * 341873128712L + regionZ * 132897987541L + seed + salt);
+        int range = spacing - separation;
+        int x = regionX * spacing + random.nextInt(range);
+        int z = regionZ * spacing + random.nextInt(range);
+        return ((long) x << 32) | (z & 0xFFFFFFFFL);
+    }
+
+    /**
+     * Get the x coordinate of a packed candidate chunk.
+     *
+     * @param candidate The packed candidate chunk.
+     * @return The x coordinate of the chunk.
+     */
+    private static int candidateX(long candidate) {
+        return (int) (candidate >> 32);
+    }
+
+    /**
+     * Get the z coordinate of a packed candidate chunk.
+     *
+     * @param candidate The packed candidate chunk.
+     * @return The z coordinate of the chunk.
+     */
+    private static int candidateZ(long candidate) {
+        return (int) candidate;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void saveToFile(ConfigurationSection configurationSection) {
+        configurationSection.set("spacing", spacing);
+        configurationSection.set("separation", separation);
+        if (salt != null)
+            configurationSection.set("salt", salt);
+    }
+}
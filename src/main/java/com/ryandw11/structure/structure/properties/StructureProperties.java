@@ -15,6 +15,7 @@ public class StructureProperties {
     private boolean spawnInLavaLakes;
     private boolean spawnInVoid;
     private boolean ignoreWater;
+    private boolean cacheRotations;
 
     /**
      * Create StructureProperties from a config file.
@@ -39,6 +40,7 @@ public class StructureProperties {
         this.spawnInLavaLakes = cs.contains("spawnInLavaLakes") && cs.getBoolean("spawnInLavaLakes");
         this.spawnInVoid = cs.contains("spawnInVoid") && cs.getBoolean("spawnInVoid");
         this.ignoreWater = cs.contains("ignoreWater") && cs.getBoolean("ignoreWater");
+        this.cacheRotations = cs.contains("cacheRotations") && cs.getBoolean("cacheRotations");
     }
 
     /**
@@ -52,6 +54,7 @@ public class StructureProperties {
         this.spawnInLavaLakes = true;
         this.spawnInVoid = false;
         this.ignoreWater = false;
+        this.cacheRotations = false;
     }
 
     /**
@@ -181,4 +184,25 @@ public class StructureProperties {
     public void setIgnoreWater(boolean ignoreWater) {
         this.ignoreWater = ignoreWater;
     }
+
+    /**
+     * Get if the rotated versions of the schematic should be cached.
+     *
+     * <p>When enabled, the schematic is rotated once for each 90 degree rotation and kept in the clipboard cache.
+     * Rotated pastes then copy the pre-rotated clipboard instead of rotating every block during the paste.</p>
+     *
+     * @return If the rotated versions of the schematic should be cached.
+     */
+    public boolean isCachingRotations() {
+        return cacheRotations;
+    }
+
+    /**
+     * Set if the rotated versions of the schematic should be cached.
+     *
+     * @param cacheRotations If the rotated versions of the schematic should be cached.
+     */
+    public void setCacheRotations(boolean cacheRotations) {
+        this.cacheRotations = cacheRotations;
+    }
 }
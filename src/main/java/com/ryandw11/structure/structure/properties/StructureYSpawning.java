@@ -3,21 +3,25 @@ package com.ryandw11.structure.structure.properties;
 import com.ryandw11.structure.exceptions.StructureConfigurationException;
 import org.bukkit.HeightMap;
 import org.bukkit.Location;
+import org.bukkit.World;
 import org.bukkit.block.Block;
 import org.bukkit.configuration.file.FileConfiguration;
 import org.jetbrains.annotations.Nullable;
 
 import java.util.Objects;
-import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.ToIntFunction;
 
 /**
  * This handles the SpawnY of a structure.
+ *
+ * <p>The SpawnY value is compiled into a {@link SpawnYRule} when it is loaded.</p>
  */
 public class StructureYSpawning {
 
     private boolean top = false;
     private boolean calculateSpawnYFirst = true;
     private final String value;
+    private final SpawnYRule rule;
     private final HeightMap heightMap;
 
     /**
@@ -40,6 +44,7 @@ public class StructureYSpawning {
         assert value != null;
         if (value.equalsIgnoreCase("top"))
             top = true;
+        rule = SpawnYRule.compile(value);
 
         if (fc.contains("StructureLocation.CalculateSpawnFirst")) {
             calculateSpawnYFirst = fc.getBoolean("StructureLocation.CalculateSpawnFirst");
@@ -52,12 +57,14 @@ public class StructureYSpawning {
      * @param value                The value of SpawnY.
      * @param heightMap            The height map for the Structure to use to spawn.
      * @param calculateSpawnYFirst If you want the SpawnY to be calculated before the other checks are completed (ex: block whitelist).
+     * @throws com.ryandw11.structure.exceptions.StructureConfigurationException If the value is not valid.
      */
     public StructureYSpawning(String value, HeightMap heightMap, boolean calculateSpawnYFirst) {
         this.value = value;
         this.heightMap = heightMap;
         if (value.equalsIgnoreCase("top"))
             top = true;
+        this.rule = SpawnYRule.compile(value);
         this.calculateSpawnYFirst = calculateSpawnYFirst;
     }
 
@@ -70,6 +77,15 @@ public class StructureYSpawning {
         return value;
     }
 
+    /**
+     * Get the compiled SpawnY value.
+     *
+     * @return The compiled SpawnY value.
+     */
+    public SpawnYRule getRule() {
+        return rule;
+    }
+
     /**
      * Get the SpawnY Height Map.
      *
@@ -132,107 +148,42 @@ public class StructureYSpawning {
 
         // Ensure that the spawnY is configured correctly for the void.
         if (location == null) {
-            if (top) throw new StructureConfigurationException("A structure that can spawn in the void must have an " +
-                    "absolute spawn y value. Top is not absolute.");
-            if (value.startsWith("+"))
-                throw new StructureConfigurationException("A structure that can spawn in the void must have an " +
-                        "absolute spawn y value. Relative value is not absolute.");
-            if (value.startsWith("-"))
+            if (!rule.isAbsolute())
                 throw new StructureConfigurationException("A structure that can spawn in the void must have an " +
-                        "absolute spawn y value. Relative value is not absolute.");
+                        "absolute spawn y value. '" + value + "' is not absolute.");
+            return rule.getHeight(-1, map -> -1);
         }
 
         // Get the highest block at the specified location.
-        int currentHeight = -1;
-        if (location != null) {
-            currentHeight = Objects.requireNonNull(location.getWorld()).getHighestBlockYAt(location, heightMap);
-        }
+        World world = Objects.requireNonNull(location.getWorld());
+        int currentHeight = world.getHighestBlockYAt(location, heightMap);
+        return rule.getHeight(currentHeight, map -> map == heightMap ? currentHeight : world.getHighestBlockYAt(location, map));
+    }
 
-        if (top) return currentHeight;
-        // If it is a range
-        if (value.contains(";")) {
-            //If +[num;num]
-            if (value.startsWith("+")) {
-                String v = value.replace("[", "").replace("]", "").replace("+", "");
-                String[] out = v.split(";");
-                try {
-                    int num1 = Integer.parseInt(out[0]);
-                    int num2 = Integer.parseInt(out[1]);
-
-                    if (num1 > num2)
-                        throw new StructureConfigurationException("SpawnY Value 1 must be greater than value 2 in '[value1;value2]'.");
-
-                    int randomValue = ThreadLocalRandom.current().nextInt(num1, num2 + 1);
-                    return currentHeight + randomValue;
-
-                } catch (NumberFormatException | ArrayIndexOutOfBoundsException ex) {
-                    return currentHeight;
-                }
-            }
-            // if -[num;num]
-            else if (value.startsWith("-")) {
-                String v = value.replace("[", "").replace("]", "").replace("-", "");
-                String[] out = v.split(";");
-                try {
-                    int num1 = Integer.parseInt(out[0]);
-                    int num2 = Integer.parseInt(out[1]);
-
-                    if (num1 > num2)
-                        throw new StructureConfigurationException("SpawnY Value 1 must be greater than value 2 in '[value1;value2]'.");
-
-                    int randomValue = ThreadLocalRandom.current().nextInt(num1, num2 + 1);
-                    return currentHeight - randomValue;
-
-                } catch (NumberFormatException | ArrayIndexOutOfBoundsException ex) {
-                    return currentHeight;
-                }
-            }
-            // if just [num;num]
-            else {
-                String v = value.replace("[", "").replace("]", "");
-                String[] out = v.split(";");
-                try {
-                    int num1 = Integer.parseInt(out[0]);
-                    int num2 = Integer.parseInt(out[1]);
-
-                    if (num1 > num2)
-                        throw new StructureConfigurationException("SpawnY Value 1 must be greater than value 2 in '[value1;value2]'.");
-
-                    return ThreadLocalRandom.current().nextInt(num1, num2 + 1);
-
-                } catch (NumberFormatException | ArrayIndexOutOfBoundsException ex) {
-                    return currentHeight;
-                }
-            }
-        }
-        // if +[num]
-        else if (value.startsWith("+[")) {
-            String v = value.replace("+", "").replace("[", "").replace("]", "");
-            try {
-                int num = Integer.parseInt(v);
-                return currentHeight + num;
-            } catch (NumberFormatException ex) {
-                return currentHeight;
-            }
-        }
-        // if -[num]
-        else if (value.startsWith("-[")) {
-            String v = value.replace("-", "").replace("[", "").replace("]", "");
-
-            try {
-                int num = Integer.parseInt(v);
-                return currentHeight - num;
-            } catch (NumberFormatException ex) {
-                return currentHeight;
-            }
-        }
-        // if just num
-        else {
-            try {
-                return Integer.parseInt(value);
-            } catch (NumberFormatException ex) {
-                return currentHeight;
-            }
-        }
+    /**
+     * Get the height from SpawnY value using an already known highest block.
+     *
+     * <p>This does not access the world, so it is safe to call off of the main thread. Height maps in the SpawnY
+     * value resolve to the known highest block.</p>
+     *
+     * @param currentHeight The Y value of the highest block according to the Height Map. (-1 if spawning in the void).
+     * @return The height according to the rules of SpawnY.
+     */
+    public int getHeight(int currentHeight) {
+        return rule.getHeight(currentHeight, map -> currentHeight);
+    }
+
+    /**
+     * Get the height from SpawnY value using already known highest blocks.
+     *
+     * <p>This does not access the world, so it is safe to call off of the main thread as long as the height
+     * supplier is.</p>
+     *
+     * @param currentHeight The Y value of the highest block according to the Height Map. (-1 if spawning in the void).
+     * @param heights       Supplies the Y value of the highest block of other height maps.
+     * @return The height according to the rules of SpawnY.
+     */
+    public int getHeight(int currentHeight, ToIntFunction<HeightMap> heights) {
+        return rule.getHeight(currentHeight, heights);
     }
 }
@@ -1,21 +1,23 @@
 package com.ryandw11.structure.threading;
 
-import com.ryandw11.structure.structure.Structure;
+import com.ryandw11.structure.structure.SpawnedStructureStore;
 import com.ryandw11.structure.structure.StructureHandler;
-import com.ryandw11.structure.utils.Pair;
-import org.bukkit.Location;
 import org.bukkit.scheduler.BukkitRunnable;
 
-import java.util.HashSet;
-import java.util.Map;
-import java.util.Set;
-
 /**
  * This ensures that there is not a memory leak with the structure list.
+ *
+ * <p>Removes the spawned structures that are older than their time to live. Structures over the capacity
+ * are already removed when they are added.</p>
  */
 public class CheckStructureList extends BukkitRunnable {
 
-    public static final int MAX_STORED_STRUCTURES = 300;
+    /**
+     * @deprecated The capacity is now configured in the spawnedStructures section of the config.
+     * See {@link SpawnedStructureStore#DEFAULT_CAPACITY}.
+     */
+    @Deprecated
+    public static final int MAX_STORED_STRUCTURES = SpawnedStructureStore.DEFAULT_CAPACITY;
 
     private final StructureHandler handler;
 
@@ -25,15 +27,6 @@ public class CheckStructureList extends BukkitRunnable {
 
     @Override
     public void run() {
-        synchronized (handler.getSpawnedStructures()) {
-            Set<Pair<Location, Long>> locationsToRemove = new HashSet<>();
-            for (Map.Entry<Pair<Location, Long>, Structure> entry : handler.getSpawnedStructures().entrySet()) {
-                if (System.currentTimeMillis() - entry.getKey().getRight() > 2.592e+8) {
-                    locationsToRemove.add(entry.getKey());
-                } else if (handler.getSpawnedStructures().size() - locationsToRemove.size() > MAX_STORED_STRUCTURES)
-                    locationsToRemove.add(entry.getKey());
-            }
-            handler.getSpawnedStructures().keySet().removeAll(locationsToRemove);
-        }
+        handler.getSpawnedStructureStore().evictExpired();
     }
 }
@@ -0,0 +1,121 @@
+package com.ryandw11.structure.threading;
+
+import com.ryandw11.structure.CustomStructures;
+import com.sk89q.worldedit.WorldEditException;
+import org.bukkit.scheduler.BukkitRunnable;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * Pastes the queued {@link PasteTask}s a few layers at a time.
+ *
+ * <p>Every tick, layers are pasted until the time budget for that tick is used up. The rest of the paste is
+ * resumed on the next tick. Pastes are done one at a time in the order they were scheduled.</p>
+ *
+ * <p>This runs on the main Server thread every tick.</p>
+ */
+public class PasteScheduler extends BukkitRunnable {
+
+    private final CustomStructures plugin;
+    private final Deque<PasteTask> queue = new ArrayDeque<>();
+    private long timeBudget;
+    private long completedPastes;
+
+    /**
+     * Construct the paste scheduler.
+     *
+     * @param plugin     The instance of the plugin.
+     * @param timeBudget The number of milliseconds that can be spent pasting per tick. (0 or less to paste every
+     *                   structure in a single tick).
+     */
+    public PasteScheduler(CustomStructures plugin, long timeBudget) {
+        this.plugin = plugin;
+        this.timeBudget = timeBudget;
+    }
+
+    @Override
+    public void run() {
+        long deadline = System.nanoTime() + timeBudget * 1_000_000;
+        while (!queue.isEmpty()) {
+            PasteTask task = queue.peek();
+            try {
+                task.pasteNextLayer();
+            } catch (WorldEditException | RuntimeException ex) {
+                plugin.getLogger().severe("An error occurred while pasting a structure at " + task.getLocation().getBlockX()
+                        + ", " + task.getLocation().getBlockY() + ", " + task.getLocation().getBlockZ() + "!");
+                if (plugin.isDebug())
+                    ex.printStackTrace();
+                queue.poll();
+                task.getOnFailed().run();
+                continue;
+            }
+
+            if (task.isDone()) {
+                queue.poll();
+                completedPastes++;
+                task.getOnComplete().run();
+            }
+
+            if (timeBudget > 0 && System.nanoTime() >= deadline)
+                break;
+        }
+    }
+
+    /**
+     * Add a paste to the end of the queue.
+     *
+     * @param task The paste to add.
+     */
+    public void schedule(PasteTask task) {
+        queue.add(task);
+    }
+
+    /**
+     * Set the number of milliseconds that can be spent pasting per tick.
+     *
+     * @param timeBudget The number of milliseconds that can be spent pasting per tick. (0 or less to paste every
+     *                   structure in a single tick).
+     */
+    public void setTimeBudget(long timeBudget) {
+        this.timeBudget = timeBudget;
+    }
+
+    /**
+     * Get the number of milliseconds that can be spent pasting per tick.
+     *
+     * @return The number of milliseconds that can be spent pasting per tick.
+     */
+    public long getTimeBudget() {
+        return timeBudget;
+    }
+
+    /**
+     * Get the number of pastes that are waiting or in progress.
+     *
+     * @return The number of pastes that are waiting or in progress.
+     */
+    public int getQueueLength() {
+        return queue.size();
+    }
+
+    /**
+     * Get the paste that is currently in progress.
+     *
+     * @return The paste that is currently in progress. (Null if the queue is empty).
+     */
+    @Nullable
+    public PasteTask getCurrentTask() {
+        return queue.peek();
+    }
+
+    /**
+     * Get the number of pastes that were completed since the plugin was enabled.
+     *
+     * @return The number of completed pastes.
+     */
+    public long getCompletedPastes() {
+        return completedPastes;
+    }
+}
@@ -0,0 +1,151 @@
+package com.ryandw11.structure.threading;
+
+import com.sk89q.worldedit.EditSession;
+import com.sk89q.worldedit.WorldEdit;
+import com.sk89q.worldedit.WorldEditException;
+import com.sk89q.worldedit.bukkit.BukkitAdapter;
+import com.sk89q.worldedit.extent.Extent;
+import com.sk89q.worldedit.extent.clipboard.Clipboard;
+import com.sk89q.worldedit.extent.transform.BlockTransformExtent;
+import com.sk89q.worldedit.function.mask.ExistingBlockMask;
+import com.sk89q.worldedit.function.mask.Mask;
+import com.sk89q.worldedit.function.mask.MaskIntersection;
+import com.sk89q.worldedit.function.operation.ForwardExtentCopy;
+import com.sk89q.worldedit.function.operation.Operations;
+import com.sk89q.worldedit.math.BlockVector3;
+import com.sk89q.worldedit.math.transform.AffineTransform;
+import com.sk89q.worldedit.regions.CuboidRegion;
+import com.sk89q.worldedit.regions.Region;
+import org.bukkit.Location;
+
+import java.util.Objects;
+import java.util.function.Supplier;
+
+/**
+ * A paste of a clipboard that is split up into horizontal layers.
+ *
+ * <p>Each layer is pasted with its own WorldEdit operation, so the paste can be spread out over multiple
+ * ticks by the {@link PasteScheduler}. Layers are pasted from the bottom of the clipboard up.</p>
+ *
+ * <p>This class is to be used on the main Server thread.</p>
+ */
+public class PasteTask {
+
+    private final Clipboard clipboard;
+    private final AffineTransform transform;
+    private final Location location;
+    private final Supplier<Mask> sourceMask;
+    private final boolean ignoreAir;
+    private final Runnable onComplete;
+    private final Runnable onFailed;
+
+    private final int minY;
+    private final int maxY;
+    private int currentY;
+
+    /**
+     * Construct a paste task.
+     *
+     * @param clipboard  The clipboard to paste.
+     * @param transform  The transform to apply to the clipboard while pasting.
+     * @param location   The location to paste the clipboard at.
+     * @param sourceMask Supplies the mask for the blocks of the clipboard. This is called right before every layer
+     *                   is pasted. (The supplier may return null if there is no mask).
+     * @param ignoreAir  If air blocks in the clipboard should not be pasted.
+     * @param onComplete Ran once every layer of the clipboard is pasted.
+     * @param onFailed   Ran instead of onComplete if WorldEdit is unable to paste a layer.
+     */
+    public PasteTask(Clipboard clipboard, AffineTransform transform, Location location, Supplier<Mask> sourceMask,
+                     boolean ignoreAir, Runnable onComplete, Runnable onFailed) {
+        this.clipboard = clipboard;
+        this.transform = transform;
+        this.location = location;
+        this.sourceMask = sourceMask;
+        this.ignoreAir = ignoreAir;
+        this.onComplete = onComplete;
+        this.onFailed = onFailed;
+
+        this.minY = clipboard.getRegion().getMinimumPoint().getBlockY();
+        this.maxY = clipboard.getRegion().getMaximumPoint().getBlockY();
+        this.currentY = minY;
+    }
+
+    /**
+     * Paste the next layer of the clipboard.
+     *
+     * @throws WorldEditException If WorldEdit has a problem pasting the layer.
+     */
+    public void pasteNextLayer() throws WorldEditException {
+        if (isDone())
+            return;
+
+        Region region = clipboard.getRegion();
+        BlockVector3 min = region.getMinimumPoint();
+        BlockVector3 max = region.getMaximumPoint();
+        Region layer = new CuboidRegion(min.withY(currentY), max.withY(currentY));
+
+        try (EditSession editSession = WorldEdit.getInstance().getEditSessionFactory()
+                .getEditSession(BukkitAdapter.adapt(Objects.requireNonNull(location.getWorld())), -1)) {
+            Extent source = transform.isIdentity() ? clipboard : new BlockTransformExtent(clipboard, transform);
+            ForwardExtentCopy copy = new ForwardExtentCopy(source, layer, clipboard.getOrigin(), editSession,
+                    BlockVector3.at(location.getX(), location.getY(), location.getZ()));
+            copy.setTransform(transform);
+
+            Mask mask = sourceMask.get();
+            if (ignoreAir) {
+                Mask existing = new ExistingBlockMask(clipboard);
+                mask = mask == null ? existing : new MaskIntersection(mask, existing);
+            }
+            if (mask != null)
+                copy.setSourceMask(mask);
+
+            Operations.complete(copy);
+        }
+        currentY++;
+    }
+
+    /**
+     * Check if every layer of the clipboard has been pasted.
+     *
+     * @return If every layer of the clipboard has been pasted.
+     */
+    public boolean isDone() {
+        return currentY > maxY;
+    }
+
+    /**
+     * Get the progress of the paste.
+     *
+     * @return The fraction of layers that were pasted. (0 to 1).
+     */
+    public double getProgress() {
+        return (double) (currentY - minY) / (maxY - minY + 1);
+    }
+
+    /**
+     * Get the location that the clipboard is pasted at.
+     *
+     * @return The location that the clipboard is pasted at.
+     */
+    public Location getLocation() {
+        return location;
+    }
+
+    /**
+     * Get the task that is ran once every layer is pasted.
+     *
+     * @return The task that is ran once every layer is pasted.
+     */
+    Runnable getOnComplete() {
+        return onComplete;
+    }
+
+    /**
+     * Get the task that is ran if a layer could not be pasted.
+     *
+     * @return The task that is ran if a layer could not be pasted.
+     */
+    Runnable getOnFailed() {
+        return onFailed;
+    }
+}
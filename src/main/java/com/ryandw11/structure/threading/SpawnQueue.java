@@ -0,0 +1,565 @@
+package com.ryandw11.structure.threading;
+
+import com.ryandw11.structure.CustomStructures;
+import com.ryandw11.structure.SchematicHandler;
+import com.ryandw11.structure.structure.Structure;
+import com.ryandw11.structure.structure.StructureHandler;
+import com.ryandw11.structure.utils.SnapshotStructurePicker;
+import com.ryandw11.structure.utils.StructurePicker;
+import org.bukkit.Bukkit;
+import org.bukkit.Chunk;
+import org.bukkit.ChunkSnapshot;
+import org.bukkit.Location;
+import org.bukkit.World;
+import org.bukkit.entity.Player;
+import org.bukkit.scheduler.BukkitRunnable;
+
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * The central queue for spawning structures in newly loaded chunks.
+ *
+ * <p>Every tick, the queue checks if structures can spawn in the waiting chunks, one (chunk, structure) pair at a
+ * time, until the time budget for that tick is used up. The waiting chunk that is closest to an online player is
+ * checked first. The waiting chunks are ranked once at the start of every tick, and chunks that were unloaded while
+ * waiting are dropped.</p>
+ *
+ * <p>Only a limited number of picked structures are spawned at the same time. A structure is spawning from the
+ * moment it is pasted until its containers and signs are processed. Other picked structures wait for a spot.</p>
+ *
+ * <p>When async evaluation is enabled, snapshots of the waiting chunks are checked on async worker threads instead.
+ * Only the checks of addon structure sections and the paste are done on the main Server thread.</p>
+ *
+ * <p>A chunk that is already waiting or being processed is not added to the queue a second time.</p>
+ *
+ * <p>This runs on the main Server thread every tick. All methods are to be called on the main Server thread.</p>
+ */
+public class SpawnQueue extends BukkitRunnable {
+
+    private final CustomStructures plugin;
+    private final Map<ChunkKey, SpawnJob> pending = new LinkedHashMap<>();
+    // The waiting chunks in the order they are checked in this tick.
+    private final PriorityQueue<RankedJob> order = new PriorityQueue<>(
+            Comparator.comparingDouble(RankedJob::distance).thenComparingLong(RankedJob::sequence));
+    // Chunks that are being checked, waiting to spawn or spawning.
+    private final Set<ChunkKey> inProgress = new HashSet<>();
+    private final Deque<PickedStructure> picked = new ArrayDeque<>();
+    private final Set<ChunkKey> spawning = new HashSet<>();
+    private Evaluation current;
+    private long timeBudget;
+    private int maxConcurrentSpawns;
+    private boolean asyncEvaluation;
+    // The number of chunks being checked on async worker threads.
+    private int asyncEvaluations;
+    private final int maxAsyncEvaluations = Math.max(1, Runtime.getRuntime().availableProcessors());
+
+    private long submittedJobs;
+    private long coalescedJobs;
+    private long decidedJobs;
+    private long completedJobs;
+    private long evaluatedPairs;
+    private long totalDecisionLatency;
+    private long maxDecisionLatency;
+
+    /**
+     * Construct the spawn queue.
+     *
+     * @param plugin              The instance of the plugin.
+     * @param timeBudget          The number of milliseconds that can be spent checking chunks per tick. (0 or less
+     *                            to check every waiting chunk in a single tick).
+     * @param maxConcurrentSpawns The maximum number of structures that can spawn at the same time.
+     *                            (0 or less for no limit).
+     */
+    public SpawnQueue(CustomStructures plugin, long timeBudget, int maxConcurrentSpawns) {
+        this.plugin = plugin;
+        this.timeBudget = timeBudget;
+        this.maxConcurrentSpawns = maxConcurrentSpawns;
+    }
+
+    @Override
+    public void run() {
+        startSpawns();
+        rankPendingJobs();
+
+        long deadline = System.nanoTime() + timeBudget * 1_000_000;
+        if (asyncEvaluation && current == null) {
+            startAsyncEvaluations(deadline);
+        } else {
+            evaluate(deadline);
+        }
+
+        startSpawns();
+    }
+
+    /**
+     * Check the waiting chunks on the main Server thread, one (chunk, structure) pair at a time.
+     *
+     * @param deadline The time (from {@link System#nanoTime()}) to stop checking at.
+     */
+    private void evaluate(long deadline) {
+        while (current != null || !order.isEmpty()) {
+            if (current == null) {
+                current = startEvaluation(pollClosestJob());
+                if (current == null)
+                    continue;
+            }
+
+            boolean decided = current.picker().evaluateNext();
+            evaluatedPairs++;
+            if (decided) {
+                decide(current);
+                current = null;
+            }
+
+            if (timeBudget > 0 && System.nanoTime() >= deadline)
+                break;
+        }
+    }
+
+    /**
+     * Capture snapshots of the waiting chunks and check them on async worker threads.
+     *
+     * <p>Only the capturing of the snapshots counts towards the time budget. At most one chunk per processor
+     * is checked at the same time.</p>
+     *
+     * @param deadline The time (from {@link System#nanoTime()}) to stop capturing snapshots at.
+     */
+    private void startAsyncEvaluations(long deadline) {
+        StructureHandler structureHandler = plugin.getStructureHandler();
+        if (structureHandler == null)
+            return;
+
+        while (!order.isEmpty() && asyncEvaluations < maxAsyncEvaluations) {
+            SpawnJob job = pollClosestJob();
+            ChunkKey key = ChunkKey.of(job.chunk());
+            // The biomes are taken from the snapshot instead of the live world.
+            ChunkSnapshot snapshot = job.chunk().getChunkSnapshot(true, true, false);
+            List<Structure> structures = structureHandler.getStructureIndex().getCandidates(job.chunk().getWorld(), snapshot);
+            SnapshotStructurePicker picker = SnapshotStructurePicker.capture(job.chunk(), snapshot, structures,
+                    plugin.getBlockIgnoreManager(), plugin.getLogger());
+            inProgress.add(key);
+            asyncEvaluations++;
+
+            Bukkit.getScheduler().runTaskAsynchronously(plugin, () -> {
+                List<SnapshotStructurePicker.Candidate> candidates;
+                try {
+                    candidates = picker.evaluate();
+                } catch (RuntimeException ex) {
+                    plugin.getLogger().severe("An error was encountered when checking which structure can spawn in a chunk.");
+                    if (plugin.isDebug())
+                        ex.printStackTrace();
+                    candidates = Collections.emptyList();
+                }
+                List<SnapshotStructurePicker.Candidate> finalCandidates = candidates;
+                Bukkit.getScheduler().runTask(plugin, () -> {
+                    asyncEvaluations--;
+                    evaluatedPairs += structures.size();
+                    decide(key, job, finalCandidates);
+                });
+            });
+
+            if (timeBudget > 0 && System.nanoTime() >= deadline)
+                break;
+        }
+    }
+
+    /**
+     * Add a newly loaded chunk to the queue.
+     *
+     * @param chunk The chunk to spawn a structure in.
+     * @return If the chunk was added. (False if the chunk is already waiting or being processed).
+     */
+    public boolean submit(Chunk chunk) {
+        ChunkKey key = ChunkKey.of(chunk);
+        submittedJobs++;
+        if (pending.containsKey(key) || inProgress.contains(key)) {
+            coalescedJobs++;
+            return false;
+        }
+        pending.put(key, new SpawnJob(chunk, System.currentTimeMillis()));
+        return true;
+    }
+
+    /**
+     * Rank the waiting chunks by their distance to the closest online player.
+     *
+     * <p>The positions of the players are read once per world. Chunks that are no longer loaded are dropped from
+     * the queue. Chunks in worlds without players are processed in the order they were added.</p>
+     */
+    private void rankPendingJobs() {
+        order.clear();
+        Map<UUID, double[]> playerPositions = new HashMap<>();
+        long sequence = 0;
+        Iterator<SpawnJob> iterator = pending.values().iterator();
+        while (iterator.hasNext()) {
+            SpawnJob job = iterator.next();
+            Chunk chunk = job.chunk();
+            if (!chunk.isLoaded()) {
+                iterator.remove();
+                completedJobs++;
+                continue;
+            }
+            double[] positions = playerPositions.computeIfAbsent(chunk.getWorld().getUID(),
+                    uid -> getPlayerPositions(chunk.getWorld()));
+            order.add(new RankedJob(job, getDistanceToPlayers(chunk, positions), sequence++));
+        }
+    }
+
+    /**
+     * Remove the waiting chunk that is closest to an online player from the queue.
+     *
+     * @return The waiting chunk that is closest to an online player.
+     */
+    private SpawnJob pollClosestJob() {
+        SpawnJob job = order.poll().job();
+        pending.remove(ChunkKey.of(job.chunk()));
+        return job;
+    }
+
+    /**
+     * Get the horizontal positions of the players in a world.
+     *
+     * @param world The world.
+     * @return The x and z coordinates of the players, one pair after another.
+     */
+    private static double[] getPlayerPositions(World world) {
+        List<Player> players = world.getPlayers();
+        double[] positions = new double[players.size() * 2];
+        for (int i = 0; i < players.size(); i++) {
+            Location location = players.get(i).getLocation();
+            positions[i * 2] = location.getX();
+            positions[i * 2 + 1] = location.getZ();
+        }
+        return positions;
+    }
+
+    /**
+     * Get the squared horizontal distance between the center of a chunk and the closest player in its world.
+     *
+     * @param chunk           The chunk.
+     * @param playerPositions The x and z coordinates of the players in the world of the chunk.
+     * @return The squared distance to the closest player. (Infinity if there are no players in the world).
+     */
+    private static double getDistanceToPlayers(Chunk chunk, double[] playerPositions) {
+        double centerX = (chunk.getX() << 4) + 8;
+        double centerZ = (chunk.getZ() << 4) + 8;
+        double closest = Double.POSITIVE_INFINITY;
+        for (int i = 0; i < playerPositions.length; i += 2) {
+            double dx = playerPositions[i] - centerX;
+            double dz = playerPositions[i + 1] - centerZ;
+            closest = Math.min(closest, dx * dx + dz * dz);
+        }
+        return closest;
+    }
+
+    /**
+     * Start checking which structure can spawn in a chunk.
+     *
+     * @param job The chunk to check.
+     * @return The evaluation of the chunk. (Null if the structures cannot be checked).
+     */
+    private Evaluation startEvaluation(SpawnJob job) {
+        ChunkKey key = ChunkKey.of(job.chunk());
+        try {
+            StructurePicker picker = new StructurePicker(job.chunk().getBlock(8, 5, 8), job.chunk(), plugin);
+            inProgress.add(key);
+            return new Evaluation(key, job, picker);
+        } catch (RuntimeException ex) {
+            // ignore, error already logged.
+            return null;
+        }
+    }
+
+    /**
+     * Handle a chunk that is done being checked.
+     *
+     * @param evaluation The evaluation of the chunk.
+     */
+    private void decide(Evaluation evaluation) {
+        recordDecision(evaluation.job());
+
+        StructurePicker picker = evaluation.picker();
+        if (picker.getPickedStructure() != null && picker.getPickedBlock() != null) {
+            picked.add(new PickedStructure(evaluation.key(), picker.getPickedStructure(), picker.getPickedBlock().getLocation()));
+        } else {
+            inProgress.remove(evaluation.key());
+            completedJobs++;
+        }
+    }
+
+    /**
+     * Handle a chunk that is done being checked on an async worker thread.
+     *
+     * <p>The structures that passed their checks still need to pass the checks of their addon structure sections,
+     * which are done here on the main Server thread. The first structure that passes everything is picked.</p>
+     *
+     * @param key        The key of the chunk.
+     * @param job        The queued chunk.
+     * @param candidates The structures that passed their checks, in order of priority.
+     */
+    private void decide(ChunkKey key, SpawnJob job, List<SnapshotStructurePicker.Candidate> candidates) {
+        recordDecision(job);
+
+        StructureHandler structureHandler = plugin.getStructureHandler();
+        for (SnapshotStructurePicker.Candidate candidate : candidates) {
+            if (structureHandler == null)
+                break;
+            if (!candidate.inVoid()) {
+                if (!StructurePicker.checkStructureSections(plugin, candidate.structure(),
+                        candidate.location().getBlock(), job.chunk()))
+                    continue;
+                // Another chunk could have picked a structure nearby while this chunk was being checked.
+                if (!structureHandler.validDistance(candidate.structure(), candidate.location()))
+                    continue;
+            }
+
+            structureHandler.putSpawnedStructure(candidate.location(), candidate.structure());
+            picked.add(new PickedStructure(key, candidate.structure(), candidate.location()));
+            return;
+        }
+
+        inProgress.remove(key);
+        completedJobs++;
+    }
+
+    /**
+     * Record the time it took to make a decision for a chunk.
+     *
+     * @param job The queued chunk.
+     */
+    private void recordDecision(SpawnJob job) {
+        long latency = System.currentTimeMillis() - job.submitTime();
+        decidedJobs++;
+        totalDecisionLatency += latency;
+        maxDecisionLatency = Math.max(maxDecisionLatency, latency);
+    }
+
+    /**
+     * Spawn the picked structures while there is room.
+     */
+    private void startSpawns() {
+        while (!picked.isEmpty() && (maxConcurrentSpawns <= 0 || spawning.size() < maxConcurrentSpawns)) {
+            PickedStructure pickedStructure = picked.poll();
+            spawning.add(pickedStructure.key());
+            Structure structure = pickedStructure.structure();
+            new SchematicHandler().schemHandleAsync(pickedStructure.location(), structure.getSchematic(),
+                    structure.getStructureProperties().canPlaceAir(), structure, () -> finish(pickedStructure.key()));
+        }
+    }
+
+    /**
+     * Free up the spot of a structure that is done spawning.
+     *
+     * @param key The key of the chunk.
+     */
+    private void finish(ChunkKey key) {
+        if (spawning.remove(key)) {
+            inProgress.remove(key);
+            completedJobs++;
+        }
+    }
+
+    /**
+     * Set the number of milliseconds that can be spent checking chunks per tick.
+     *
+     * @param timeBudget The number of milliseconds that can be spent checking chunks per tick. (0 or less to check
+     *                   every waiting chunk in a single tick).
+     */
+    public void setTimeBudget(long timeBudget) {
+        this.timeBudget = timeBudget;
+    }
+
+    /**
+     * Get the number of milliseconds that can be spent checking chunks per tick.
+     *
+     * @return The number of milliseconds that can be spent checking chunks per tick.
+     */
+    public long getTimeBudget() {
+        return timeBudget;
+    }
+
+    /**
+     * Set if chunks are checked on async worker threads using snapshots of the chunks.
+     *
+     * @param asyncEvaluation If chunks are checked on async worker threads.
+     */
+    public void setAsyncEvaluation(boolean asyncEvaluation) {
+        this.asyncEvaluation = asyncEvaluation;
+    }
+
+    /**
+     * Get if chunks are checked on async worker threads using snapshots of the chunks.
+     *
+     * @return If chunks are checked on async worker threads.
+     */
+    public boolean isAsyncEvaluation() {
+        return asyncEvaluation;
+    }
+
+    /**
+     * Set the maximum number of structures that can spawn at the same time.
+     *
+     * @param maxConcurrentSpawns The maximum number of structures that can spawn at the same time.
+     *                            (0 or less for no limit).
+     */
+    public void setMaxConcurrentSpawns(int maxConcurrentSpawns) {
+        this.maxConcurrentSpawns = maxConcurrentSpawns;
+    }
+
+    /**
+     * Get the maximum number of structures that can spawn at the same time.
+     *
+     * @return The maximum number of structures that can spawn at the same time.
+     */
+    public int getMaxConcurrentSpawns() {
+        return maxConcurrentSpawns;
+    }
+
+    /**
+     * Get the number of chunks waiting to be checked.
+     *
+     * @return The number of chunks waiting to be checked.
+     */
+    public int getPendingCount() {
+        return pending.size() + (current == null ? 0 : 1) + asyncEvaluations;
+    }
+
+    /**
+     * Get the number of picked structures waiting to spawn.
+     *
+     * @return The number of picked structures waiting to spawn.
+     */
+    public int getPickedCount() {
+        return picked.size();
+    }
+
+    /**
+     * Get the number of structures currently spawning.
+     *
+     * @return The number of structures currently spawning.
+     */
+    public int getSpawningCount() {
+        return spawning.size();
+    }
+
+    /**
+     * Get the number of chunks that were added to the queue since the plugin was enabled.
+     *
+     * <p>This includes chunks that were coalesced.</p>
+     *
+     * @return The number of chunks that were added to the queue.
+     */
+    public long getSubmittedJobs() {
+        return submittedJobs;
+    }
+
+    /**
+     * Get the number of chunks that were not added because they were already waiting or being processed.
+     *
+     * @return The number of coalesced chunks.
+     */
+    public long getCoalescedJobs() {
+        return coalescedJobs;
+    }
+
+    /**
+     * Get the number of chunks that were fully processed since the plugin was enabled.
+     *
+     * @return The number of fully processed chunks.
+     */
+    public long getCompletedJobs() {
+        return completedJobs;
+    }
+
+    /**
+     * Get the number of (chunk, structure) pairs that were checked since the plugin was enabled.
+     *
+     * @return The number of checked (chunk, structure) pairs.
+     */
+    public long getEvaluatedPairs() {
+        return evaluatedPairs;
+    }
+
+    /**
+     * Get the average time between a chunk being loaded and a structure being picked (or none of the structures
+     * being able to spawn) for it.
+     *
+     * @return The average decision latency in milliseconds.
+     */
+    public double getAverageDecisionLatency() {
+        return decidedJobs == 0 ? 0 : (double) totalDecisionLatency / decidedJobs;
+    }
+
+    /**
+     * Get the longest time between a chunk being loaded and a decision being made for it.
+     *
+     * @return The maximum decision latency in milliseconds.
+     */
+    public long getMaxDecisionLatency() {
+        return maxDecisionLatency;
+    }
+
+    /**
+     * Identifies a chunk in a world.
+     *
+     * @param world The uuid of the world.
+     * @param x     The x coordinate of the chunk.
+     * @param z     The z coordinate of the chunk.
+     */
+    private record ChunkKey(UUID world, int x, int z) {
+        static ChunkKey of(Chunk chunk) {
+            return new ChunkKey(chunk.getWorld().getUID(), chunk.getX(), chunk.getZ());
+        }
+    }
+
+    /**
+     * A chunk waiting to be processed.
+     *
+     * @param chunk      The chunk.
+     * @param submitTime The time the chunk was added to the queue.
+     */
+    private record SpawnJob(Chunk chunk, long submitTime) {
+    }
+
+    /**
+     * A waiting chunk ranked for the current tick.
+     *
+     * @param job      The queued chunk.
+     * @param distance The squared distance to the closest player.
+     * @param sequence The position of the chunk in the order the chunks were added.
+     */
+    private record RankedJob(SpawnJob job, double distance, long sequence) {
+    }
+
+    /**
+     * A chunk that is being checked on the main Server thread.
+     *
+     * @param key    The key of the chunk.
+     * @param job    The queued chunk.
+     * @param picker The picker checking the structures for the chunk.
+     */
+    private record Evaluation(ChunkKey key, SpawnJob job, StructurePicker picker) {
+    }
+
+    /**
+     * A structure that was picked for a chunk and is waiting to spawn or spawning.
+     *
+     * @param key       The key of the chunk.
+     * @param structure The picked structure.
+     * @param location  The location to spawn the structure at.
+     */
+    private record PickedStructure(ChunkKey key, Structure structure, Location location) {
+    }
+}
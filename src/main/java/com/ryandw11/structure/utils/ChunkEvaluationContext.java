@@ -0,0 +1,156 @@
+package com.ryandw11.structure.utils;
+
+import com.ryandw11.structure.ignoreblocks.IgnoreBlocks;
+import org.bukkit.Chunk;
+import org.bukkit.ChunkSnapshot;
+import org.bukkit.HeightMap;
+import org.bukkit.Material;
+import org.bukkit.World;
+import org.bukkit.block.Block;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The terrain of a chunk that is read while checking which structure can spawn in it.
+ *
+ * <p>Every structure is checked against the same column in the center of the chunk, so the highest blocks,
+ * the surface below plants and the blocks around the column are read from the world once and then shared by every
+ * structure that is checked.</p>
+ *
+ * <p>This is short-lived: a context is only used while a single chunk is being checked. Changes made to the world
+ * while the chunk is being checked are not seen.</p>
+ *
+ * <p>This class is to be used on the main Server thread.</p>
+ */
+public class ChunkEvaluationContext {
+
+    /**
+     * Returned by {@link #getSurfaceY(int)} when there is no surface block.
+     */
+    public static final int NO_SURFACE = Integer.MIN_VALUE;
+
+    private final World world;
+    private final IgnoreBlocks ignoreBlocks;
+    private final int x;
+    private final int z;
+    private final Map<HeightMap, Block> highestBlocks = new EnumMap<>(HeightMap.class);
+    private final Map<Integer, Integer> surfaces = new HashMap<>();
+    private final Map<Long, Material> types = new HashMap<>();
+    private final Map<Long, ChunkSnapshot> snapshots = new HashMap<>();
+    private FlatnessMap flatnessMap;
+
+    /**
+     * Construct the context of a chunk.
+     *
+     * @param chunk        The chunk.
+     * @param ignoreBlocks The blocks to ignore when looking for the surface.
+     */
+    public ChunkEvaluationContext(Chunk chunk, IgnoreBlocks ignoreBlocks) {
+        this.world = chunk.getWorld();
+        this.ignoreBlocks = ignoreBlocks;
+        this.x = (chunk.getX() << 4) + 8;
+        this.z = (chunk.getZ() << 4) + 8;
+    }
+
+    /**
+     * Get the highest block of the center column according to a height map.
+     *
+     * @param heightMap The height map.
+     * @return The highest block.
+     */
+    public Block getHighestBlock(HeightMap heightMap) {
+        return highestBlocks.computeIfAbsent(heightMap, map -> world.getHighestBlockAt(x, z, map));
+    }
+
+    /**
+     * Get the Y value of the highest block of the center column according to a height map.
+     *
+     * @param heightMap The height map.
+     * @return The Y value of the highest block.
+     */
+    public int getHighestBlockY(HeightMap heightMap) {
+        return getHighestBlock(heightMap).getY();
+    }
+
+    /**
+     * Find the first block of the center column that is not air or an ignored block, going down from a Y value.
+     *
+     * @param startY The Y value to start at.
+     * @return The Y value of the surface block. ({@link #NO_SURFACE} if there is none above Y 4).
+     */
+    public int getSurfaceY(int startY) {
+        return surfaces.computeIfAbsent(startY, start -> {
+            for (int y = start; y >= 4; y--) {
+                Material type = getType(x, y, z);
+                if (!ignoreBlocks.isIgnored(type) && !type.isAir())
+                    return y;
+            }
+            return NO_SURFACE;
+        });
+    }
+
+    /**
+     * Get the flatness map of an area around the center column.
+     *
+     * <p>The map is built from chunk snapshots the first time it is needed and grown when a larger area is
+     * requested, so the ground is only read once for every structure that is checked. Chunks are not loaded for
+     * this, so there is no map if the area reaches a chunk that is not loaded.</p>
+     *
+     * @param x1 The x coordinate of the first corner.
+     * @param z1 The z coordinate of the first corner.
+     * @param x2 The x coordinate of the second corner.
+     * @param z2 The z coordinate of the second corner.
+     * @return A flatness map that covers the area. (Null if a chunk in the area is not loaded).
+     */
+    @Nullable
+    public FlatnessMap getFlatnessMap(int x1, int z1, int x2, int z2) {
+        if (flatnessMap != null && flatnessMap.covers(x1, z1, x2, z2))
+            return flatnessMap;
+        int minX = Math.min(Math.min(x1, x2), x);
+        int maxX = Math.max(Math.max(x1, x2), x);
+        int minZ = Math.min(Math.min(z1, z2), z);
+        int maxZ = Math.max(Math.max(z1, z2), z);
+        if (flatnessMap != null) {
+            minX = Math.min(minX, flatnessMap.getMinX());
+            maxX = Math.max(maxX, flatnessMap.getMaxX());
+            minZ = Math.min(minZ, flatnessMap.getMinZ());
+            maxZ = Math.max(maxZ, flatnessMap.getMaxZ());
+        }
+        for (int chunkX = minX >> 4; chunkX <= maxX >> 4; chunkX++) {
+            for (int chunkZ = minZ >> 4; chunkZ <= maxZ >> 4; chunkZ++) {
+                if (!world.isChunkLoaded(chunkX, chunkZ))
+                    return null;
+            }
+        }
+        flatnessMap = FlatnessMap.fromSnapshots(this::getSnapshot, ignoreBlocks, world.getMinHeight(), minX, minZ, maxX, maxZ);
+        return flatnessMap;
+    }
+
+    /**
+     * Get the snapshot of a chunk, including its height map.
+     *
+     * @param chunkX The x coordinate of the chunk. (The chunk must be loaded).
+     * @param chunkZ The z coordinate of the chunk.
+     * @return The snapshot of the chunk.
+     */
+    private ChunkSnapshot getSnapshot(int chunkX, int chunkZ) {
+        long key = ((long) chunkX << 32) | (chunkZ & 0xFFFFFFFFL);
+        return snapshots.computeIfAbsent(key, k -> world.getChunkAt(chunkX, chunkZ).getChunkSnapshot(true, false, false));
+    }
+
+    /**
+     * Get the type of a block.
+     *
+     * @param blockX The x coordinate of the block.
+     * @param blockY The y coordinate of the block.
+     * @param blockZ The z coordinate of the block.
+     * @return The type of the block.
+     */
+    public Material getType(int blockX, int blockY, int blockZ) {
+        long key = ((long) (blockX & 0x3FFFFFF) << 38) | ((long) (blockZ & 0x3FFFFFF) << 12) | (blockY & 0xFFF);
+        return types.computeIfAbsent(key, k -> world.getBlockAt(blockX, blockY, blockZ).getType());
+    }
+}
@@ -0,0 +1,509 @@
+package com.ryandw11.structure.utils;
+
+import com.ryandw11.structure.ignoreblocks.IgnoreBlocks;
+import com.ryandw11.structure.structure.properties.BlockLevelLimit;
+import org.bukkit.ChunkSnapshot;
+import org.bukkit.Material;
+
+/**
+ * The surface heights of an area, used to quickly check how flat the ground is.
+ *
+ * <p>The surface of a column is the highest block that is not air or an ignored block (like plants). The heights
+ * are taken from chunk snapshots once, and then min/max and prefix sum tables are built, so the lowest, highest and
+ * average surface height of any rectangle in the area can be found in constant time.</p>
+ *
+ * <p>The ground of a rectangle is flat at a Y value when every surface is at that Y value or one block below it:
+ * nothing above the Y value blocks the structure and the ground below the structure is solid.</p>
+ *
+ * <p>This class is immutable and thread safe.</p>
+ */
+public class FlatnessMap {
+
+    private final int minX;
+    private final int minZ;
+    private final int width;
+    private final int length;
+    private final int[] heights;
+    // Sparse tables: the min/max of every 2^kx by 2^kz rectangle, for every kx and kz.
+    private final int[][] minTables;
+    private final int[][] maxTables;
+    private final int levelsZ;
+    // Prefix sums of the heights and the squared heights.
+    private final long[] sums;
+    private final long[] squaredSums;
+
+    /**
+     * Construct a flatness map from surface heights.
+     *
+     * @param minX    The x coordinate of the first column.
+     * @param minZ    The z coordinate of the first column.
+     * @param width   The number of columns on the x axis.
+     * @param length  The number of columns on the z axis.
+     * @param heights The surface heights, indexed by <code>(x - minX) * length + (z - minZ)</code>.
+     */
+    public FlatnessMap(int minX, int minZ, int width, int length, int[] heights) {
+        if (width <= 0 || length <= 0 || heights.length != width * length)
+            throw new IllegalArgumentException("The heights do not match the size of the area!");
+        this.minX = minX;
+        this.minZ = minZ;
+        this.width = width;
+        this.length = length;
+        this.heights = heights.clone();
+
+        int levelsX = log2(width) + 1;
+        this.levelsZ = log2(length) + 1;
+        this.minTables = new int[levelsX * levelsZ][];
+        this.maxTables = new int[levelsX * levelsZ][];
+        minTables[0] = this.heights;
+        maxTables[0] = this.heights;
+        for (int kx = 0; kx < levelsX; kx++) {
+            for (int kz = 0; kz < levelsZ; kz++) {
+                if (kx == 0 && kz == 0)
+                    continue;
+                int rows = length - (1 << kz) + 1;
+                int columns = width - (1 << kx) + 1;
+                int[] min = new int[columns * rows];
+                int[] max = new int[columns * rows];
+                if (kx == 0) {
+                    // Combine two rectangles next to each other on the z axis.
+                    int[] previousMin = minTables[kz - 1];
+                    int[] previousMax = maxTables[kz - 1];
+                    int previousRows = length - (1 << (kz - 1)) + 1;
+                    int half = 1 << (kz - 1);
+                    for (int x = 0; x < columns; x++) {
+                        for (int z = 0; z < rows; z++) {
+                            min[x * rows + z] = Math.min(previousMin[x * previousRows + z], previousMin[x * previousRows + z + half]);
+                            max[x * rows + z] = Math.max(previousMax[x * previousRows + z], previousMax[x * previousRows + z + half]);
+                        }
+                    }
+                } else {
+                    // Combine two rectangles next to each other on the x axis.
+                    int[] previousMin = minTables[(kx - 1) * levelsZ + kz];
+                    int[] previousMax = maxTables[(kx - 1) * levelsZ + kz];
+                    int half = 1 << (kx - 1);
+                    for (int x = 0; x < columns; x++) {
+                        for (int z = 0; z < rows; z++) {
+                            min[x * rows + z] = Math.min(previousMin[x * rows + z], previousMin[(x + half) * rows + z]);
+                            max[x * rows + z] = Math.max(previousMax[x * rows + z], previousMax[(x + half) * rows + z]);
+                        }
+                    }
+                }
+                minTables[kx * levelsZ + kz] = min;
+                maxTables[kx * levelsZ + kz] = max;
+            }
+        }
+
+        this.sums = new long[(width + 1) * (length + 1)];
+        this.squaredSums = new long[(width + 1) * (length + 1)];
+        for (int x = 0; x < width; x++) {
+            for (int z = 0; z < length; z++) {
+                long height = this.heights[x * length + z];
+                int index = (x + 1) * (length + 1) + (z + 1);
+                sums[index] = height + sums[x * (length + 1) + (z + 1)] + sums[(x + 1) * (length + 1) + z]
+                        - sums[x * (length + 1) + z];
+                squaredSums[index] = height * height + squaredSums[x * (length + 1) + (z + 1)]
+                        + squaredSums[(x + 1) * (length + 1) + z] - squaredSums[x * (length + 1) + z];
+            }
+        }
+    }
+
+    /**
+     * Build a flatness map of an area from chunk snapshots.
+     *
+     * @param snapshots    Supplies the snapshot of a chunk from its chunk coordinates. Every chunk in the area must
+     *                     have a snapshot.
+     * @param ignoreBlocks The blocks that are not part of the surface.
+     * @param minHeight    The minimum height of the world.
+     * @param minX         The x coordinate of the first column.
+     * @param minZ         The z coordinate of the first column.
+     * @param maxX         The x coordinate of the last column.
+     * @param maxZ         The z coordinate of the last column.
+     * @return The flatness map of the area.
+     */
+    public static FlatnessMap fromSnapshots(SnapshotSupplier snapshots, IgnoreBlocks ignoreBlocks, int minHeight,
+                                            int minX, int minZ, int maxX, int maxZ) {
+        int width = maxX - minX + 1;
+        int length = maxZ - minZ + 1;
+        int[] heights = new int[width * length];
+        for (int x = minX; x <= maxX; x++) {
+            for (int z = minZ; z <= maxZ; z++) {
+                ChunkSnapshot snapshot = snapshots.get(x >> 4, z >> 4);
+                // The snapshot must include its height map.
+                int y = snapshot.getHighestBlockYAt(x & 15, z & 15);
+                // Go below plants and other ignored blocks.
+                while (y >= minHeight) {
+                    Material type = snapshot.getBlockType(x & 15, y, z & 15);
+                    if (!type.isAir() && !ignoreBlocks.isIgnored(type))
+                        break;
+                    y--;
+                }
+                heights[(x - minX) * length + (z - minZ)] = y;
+            }
+        }
+        return new FlatnessMap(minX, minZ, width, length, heights);
+    }
+
+    /**
+     * Check if the map covers a rectangle.
+     *
+     * @param x1 The x coordinate of the first corner.
+     * @param z1 The z coordinate of the first corner.
+     * @param x2 The x coordinate of the second corner.
+     * @param z2 The z coordinate of the second corner.
+     * @return If every column of the rectangle is in the map.
+     */
+    public boolean covers(int x1, int z1, int x2, int z2) {
+        return Math.min(x1, x2) >= minX && Math.max(x1, x2) < minX + width
+                && Math.min(z1, z2) >= minZ && Math.max(z1, z2) < minZ + length;
+    }
+
+    /**
+     * Get the x coordinate of the first column of the map.
+     *
+     * @return The x coordinate of the first column.
+     */
+    public int getMinX() {
+        return minX;
+    }
+
+    /**
+     * Get the z coordinate of the first column of the map.
+     *
+     * @return The z coordinate of the first column.
+     */
+    public int getMinZ() {
+        return minZ;
+    }
+
+    /**
+     * Get the x coordinate of the last column of the map.
+     *
+     * @return The x coordinate of the last column.
+     */
+    public int getMaxX() {
+        return minX + width - 1;
+    }
+
+    /**
+     * Get the z coordinate of the last column of the map.
+     *
+     * @return The z coordinate of the last column.
+     */
+    public int getMaxZ() {
+        return minZ + length - 1;
+    }
+
+    /**
+     * Get the surface height of a column.
+     *
+     * @param x The x coordinate of the column.
+     * @param z The z coordinate of the column.
+     * @return The surface height.
+     */
+    public int getSurfaceY(int x, int z) {
+        checkCovers(x, z, x, z);
+        return heights[(x - minX) * length + (z - minZ)];
+    }
+
+    /**
+     * Get the lowest surface height in a rectangle.
+     *
+     * @param x1 The x coordinate of the first corner.
+     * @param z1 The z coordinate of the first corner.
+     * @param x2 The x coordinate of the second corner.
+     * @param z2 The z coordinate of the second corner.
+     * @return The lowest surface height.
+     */
+    public int getMinY(int x1, int z1, int x2, int z2) {
+        return query(minTables, x1, z1, x2, z2, true);
+    }
+
+    /**
+     * Get the highest surface height in a rectangle.
+     *
+     * @param x1 The x coordinate of the first corner.
+     * @param z1 The z coordinate of the first corner.
+     * @param x2 The x coordinate of the second corner.
+     * @param z2 The z coordinate of the second corner.
+     * @return The highest surface height.
+     */
+    public int getMaxY(int x1, int z1, int x2, int z2) {
+        return query(maxTables, x1, z1, x2, z2, false);
+    }
+
+    /**
+     * Get the average surface height in a rectangle.
+     *
+     * @param x1 The x coordinate of the first corner.
+     * @param z1 The z coordinate of the first corner.
+     * @param x2 The x coordinate of the second corner.
+     * @param z2 The z coordinate of the second corner.
+     * @return The average surface height.
+     */
+    public double getMeanY(int x1, int z1, int x2, int z2) {
+        return (double) sum(sums, x1, z1, x2, z2) / getColumns(x1, z1, x2, z2);
+    }
+
+    /**
+     * Get the standard deviation of the surface heights in a rectangle.
+     *
+     * @param x1 The x coordinate of the first corner.
+     * @param z1 The z coordinate of the first corner.
+     * @param x2 The x coordinate of the second corner.
+     * @param z2 The z coordinate of the second corner.
+     * @return The standard deviation of the surface heights.
+     */
+    public double getStandardDeviation(int x1, int z1, int x2, int z2) {
+        double columns = getColumns(x1, z1, x2, z2);
+        double mean = sum(sums, x1, z1, x2, z2) / columns;
+        double variance = sum(squaredSums, x1, z1, x2, z2) / columns - mean * mean;
+        return Math.sqrt(Math.max(0, variance));
+    }
+
+    /**
+     * Check if the ground of a rectangle is flat at a Y value.
+     *
+     * @param x1 The x coordinate of the first corner.
+     * @param z1 The z coordinate of the first corner.
+     * @param x2 The x coordinate of the second corner.
+     * @param z2 The z coordinate of the second corner.
+     * @param y  The Y value of the block the structure spawns on.
+     * @return If every surface in the rectangle is at the Y value or one block below it.
+     */
+    public boolean isFlat(int x1, int z1, int x2, int z2, int y) {
+        return getDeviation(x1, z1, x2, z2, y) == 0;
+    }
+
+    /**
+     * Get how many blocks the ground of a rectangle is from being flat at a Y value.
+     *
+     * @param x1 The x coordinate of the first corner.
+     * @param z1 The z coordinate of the first corner.
+     * @param x2 The x coordinate of the second corner.
+     * @param z2 The z coordinate of the second corner.
+     * @param y  The Y value of the block the structure spawns on.
+     * @return The number of blocks the furthest surface is above the Y value or below the block under it.
+     * (0 if the ground is flat).
+     */
+    public int getDeviation(int x1, int z1, int x2, int z2, int y) {
+        int above = getMaxY(x1, z1, x2, z2) - y;
+        int below = (y - 1) - getMinY(x1, z1, x2, z2);
+        return Math.max(0, Math.max(above, below));
+    }
+
+    /**
+     * Get the fraction of checks that fail when checking if the ground of a rectangle is flat at a Y value.
+     *
+     * <p>Every column has two checks: the surface must not be above the Y value, and it must not be more than
+     * one block below it. This approximates the error of the flat_error block level limit from the surface
+     * heights.</p>
+     * <p>If the ground is flat this is found in constant time. Otherwise, this goes through every column of the
+     * rectangle, but does not access the world.</p>
+     *
+     * @param x1 The x coordinate of the first corner.
+     * @param z1 The z coordinate of the first corner.
+     * @param x2 The x coordinate of the second corner.
+     * @param z2 The z coordinate of the second corner.
+     * @param y  The Y value of the block the structure spawns on.
+     * @return The fraction of checks that fail. (0 to 1).
+     */
+    public double getErrorRate(int x1, int z1, int x2, int z2, int y) {
+        // Every check passes, so there is no need to go through the columns.
+        if (isFlat(x1, z1, x2, z2, y))
+            return 0;
+        int errors = 0;
+        for (int x = Math.min(x1, x2); x <= Math.max(x1, x2); x++) {
+            for (int z = Math.min(z1, z2); z <= Math.max(z1, z2); z++) {
+                int height = heights[(x - minX) * length + (z - minZ)];
+                if (height > y)
+                    errors++;
+                if (height < y - 1)
+                    errors++;
+            }
+        }
+        return (double) errors / (2 * getColumns(x1, z1, x2, z2));
+    }
+
+    /**
+     * Count the columns of a rectangle whose surface is exactly one block above a Y value.
+     *
+     * <p>The block above the structure is part of the ground in those columns, so the top check of the flat and
+     * flat_error block level limits fails there for certain. (Other columns can still fail the checks of the
+     * blocks.) If no surface can be at that height, this is found in constant time.</p>
+     *
+     * @param x1 The x coordinate of the first corner.
+     * @param z1 The z coordinate of the first corner.
+     * @param x2 The x coordinate of the second corner.
+     * @param z2 The z coordinate of the second corner.
+     * @param y  The Y value of the block the structure spawns on.
+     * @return The number of columns whose surface is at <code>y + 1</code>.
+     */
+    public int getBlockedColumns(int x1, int z1, int x2, int z2, int y) {
+        if (getMinY(x1, z1, x2, z2) > y + 1 || getMaxY(x1, z1, x2, z2) < y + 1)
+            return 0;
+        int blocked = 0;
+        for (int x = Math.min(x1, x2); x <= Math.max(x1, x2); x++) {
+            for (int z = Math.min(z1, z2); z <= Math.max(z1, z2); z++) {
+                if (heights[(x - minX) * length + (z - minZ)] == y + 1)
+                    blocked++;
+            }
+        }
+        return blocked;
+    }
+
+    /**
+     * Check if a structure fails the flat or flat_error mode of its block level limit for certain.
+     *
+     * <p>This only uses the columns where the top check is known to fail (see
+     * {@link #getBlockedColumns(int, int, int, int, int)}), so it can be used to skip the checks of the blocks. If
+     * it returns false, the blocks still have to be checked.</p>
+     *
+     * @param limit The block level limit of the structure.
+     * @param x     The x coordinate of the block the structure spawns on.
+     * @param y     The y coordinate of the block the structure spawns on.
+     * @param z     The z coordinate of the block the structure spawns on.
+     * @return If the structure fails its block level limit for certain.
+     */
+    public boolean failsFlatCheck(BlockLevelLimit limit, int x, int y, int z) {
+        int x1 = limit.getX1() + x;
+        int z1 = limit.getZ1() + z;
+        int x2 = limit.getX2() + x;
+        int z2 = limit.getZ2() + z;
+        if (limit.getMode().equalsIgnoreCase("flat"))
+            return getBlockedColumns(x1, z1, x2, z2, y) > 0;
+        if (limit.getMode().equalsIgnoreCase("flat_error"))
+            return (double) getBlockedColumns(x1, z1, x2, z2, y) / (2 * getColumns(x1, z1, x2, z2)) > limit.getError();
+        return false;
+    }
+
+    /**
+     * Check if a structure passes its block level limit.
+     *
+     * <p>The flat and flat_error modes are approximated from the surface heights. The structure pickers only use
+     * this for the graded mode. For the other modes they use {@link #failsFlatCheck(BlockLevelLimit, int, int, int)}
+     * and then check the blocks above and below the structure.</p>
+     *
+     * @param limit The block level limit of the structure.
+     * @param x     The x coordinate of the block the structure spawns on.
+     * @param y     The y coordinate of the block the structure spawns on.
+     * @param z     The z coordinate of the block the structure spawns on.
+     * @return If the structure passes its block level limit.
+     */
+    public boolean passes(BlockLevelLimit limit, int x, int y, int z) {
+        int x1 = limit.getX1() + x;
+        int z1 = limit.getZ1() + z;
+        int x2 = limit.getX2() + x;
+        int z2 = limit.getZ2() + z;
+        if (limit.getMode().equalsIgnoreCase("flat"))
+            return isFlat(x1, z1, x2, z2, y);
+        if (limit.getMode().equalsIgnoreCase("flat_error"))
+            return getErrorRate(x1, z1, x2, z2, y) <= limit.getError();
+        if (limit.getMode().equalsIgnoreCase("graded"))
+            return getDeviation(x1, z1, x2, z2, y) <= limit.getTolerance();
+        return true;
+    }
+
+    /**
+     * Look up the min or max of a rectangle in a sparse table.
+     *
+     * @param tables The sparse tables.
+     * @param x1     The x coordinate of the first corner.
+     * @param z1     The z coordinate of the first corner.
+     * @param x2     The x coordinate of the second corner.
+     * @param z2     The z coordinate of the second corner.
+     * @param min    If the min is looked up instead of the max.
+     * @return The min or max of the rectangle.
+     */
+    private int query(int[][] tables, int x1, int z1, int x2, int z2, boolean min) {
+        checkCovers(x1, z1, x2, z2);
+        int startX = Math.min(x1, x2) - minX;
+        int endX = Math.max(x1, x2) - minX;
+        int startZ = Math.min(z1, z2) - minZ;
+        int endZ = Math.max(z1, z2) - minZ;
+        int kx = log2(endX - startX + 1);
+        int kz = log2(endZ - startZ + 1);
+        int[] table = tables[kx * levelsZ + kz];
+        int rows = length - (1 << kz) + 1;
+        int otherX = endX - (1 << kx) + 1;
+        int otherZ = endZ - (1 << kz) + 1;
+
+        // The four (possibly overlapping) power of two rectangles cover the whole rectangle.
+        int a = table[startX * rows + startZ];
+        int b = table[startX * rows + otherZ];
+        int c = table[otherX * rows + startZ];
+        int d = table[otherX * rows + otherZ];
+        return min ? Math.min(Math.min(a, b), Math.min(c, d)) : Math.max(Math.max(a, b), Math.max(c, d));
+    }
+
+    /**
+     * Get the sum of a rectangle from a prefix sum table.
+     *
+     * @param table The prefix sum table.
+     * @param x1    The x coordinate of the first corner.
+     * @param z1    The z coordinate of the first corner.
+     * @param x2    The x coordinate of the second corner.
+     * @param z2    The z coordinate of the second corner.
+     * @return The sum of the rectangle.
+     */
+    private long sum(long[] table, int x1, int z1, int x2, int z2) {
+        checkCovers(x1, z1, x2, z2);
+        int startX = Math.min(x1, x2) - minX;
+        int endX = Math.max(x1, x2) - minX + 1;
+        int startZ = Math.min(z1, z2) - minZ;
+        int endZ = Math.max(z1, z2) - minZ + 1;
+        return table[endX * (length + 1) + endZ] - table[startX * (length + 1) + endZ]
+                - table[endX * (length + 1) + startZ] + table[startX * (length + 1) + startZ];
+    }
+
+    /**
+     * Get the number of columns in a rectangle.
+     *
+     * @param x1 The x coordinate of the first corner.
+     * @param z1 The z coordinate of the first corner.
+     * @param x2 The x coordinate of the second corner.
+     * @param z2 The z coordinate of the second corner.
+     * @return The number of columns.
+     */
+    private static int getColumns(int x1, int z1, int x2, int z2) {
+        return (Math.abs(x2 - x1) + 1) * (Math.abs(z2 - z1) + 1);
+    }
+
+    /**
+     * Make sure the map covers a rectangle.
+     *
+     * @param x1 The x coordinate of the first corner.
+     * @param z1 The z coordinate of the first corner.
+     * @param x2 The x coordinate of the second corner.
+     * @param z2 The z coordinate of the second corner.
+     * @throws IllegalArgumentException If the rectangle is not in the map.
+     */
+    private void checkCovers(int x1, int z1, int x2, int z2) {
+        if (!covers(x1, z1, x2, z2))
+            throw new IllegalArgumentException("The rectangle is not in the flatness map!");
+    }
+
+    /**
+     * Get the base 2 logarithm of a positive number, rounded down.
+     *
+     * @param value The number.
+     * @return The logarithm.
+     */
+    private static int log2(int value) {
+        return 31 - Integer.numberOfLeadingZeros(value);
+    }
+
+    /**
+     * Supplies the snapshot of a chunk.
+     */
+    @FunctionalInterface
+    public interface SnapshotSupplier {
+        /**
+         * Get the snapshot of a chunk.
+         *
+         * @param chunkX The x coordinate of the chunk.
+         * @param chunkZ The z coordinate of the chunk.
+         * @return The snapshot of the chunk.
+         */
+        ChunkSnapshot get(int chunkX, int chunkZ);
+    }
+}
@@ -0,0 +1,483 @@
+package com.ryandw11.structure.utils;
+
+import com.ryandw11.structure.exceptions.StructureConfigurationException;
+import com.ryandw11.structure.ignoreblocks.IgnoreBlocks;
+import com.ryandw11.structure.structure.Structure;
+import com.ryandw11.structure.structure.properties.BlockLevelLimit;
+import com.ryandw11.structure.structure.properties.StructureYSpawning;
+import org.bukkit.Chunk;
+import org.bukkit.ChunkSnapshot;
+import org.bukkit.HeightMap;
+import org.bukkit.Location;
+import org.bukkit.Material;
+import org.bukkit.Tag;
+import org.bukkit.World;
+import org.bukkit.block.Biome;
+import org.bukkit.block.data.BlockData;
+import org.bukkit.block.data.Waterlogged;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.logging.Logger;
+
+/**
+ * Checks which structures can spawn in a chunk using snapshots of the chunk instead of the live world.
+ *
+ * <p>The snapshots are captured on the main Server thread by {@link #capture(Chunk, ChunkSnapshot, List, IgnoreBlocks, Logger)}.
+ * The cheap rules that only need the column (like the chance) are checked while capturing, so only the structures
+ * that pass them are checked later. When one of those structures has a block level limit that reaches into a
+ * neighbouring chunk, a snapshot of that chunk is captured as well if it is loaded. Neighbouring chunks are never
+ * loaded for this: a structure whose block level limit reaches a chunk that is not loaded cannot spawn in the chunk.
+ * After that, {@link #evaluate()} can run on any thread.</p>
+ *
+ * <p>This performs the same checks as {@link StructurePicker}, except for the checks of addon structure sections.
+ * Those need the live world, so they are left for the main Server thread.</p>
+ */
+public class SnapshotStructurePicker {
+
+    private final World world;
+    private final int chunkX;
+    private final int chunkZ;
+    private final int minHeight;
+    private final int maxHeight;
+    private final Map<Long, ChunkSnapshot> snapshots;
+    // The structures that passed the column checks, in order of priority.
+    private final List<Structure> structures;
+    // The structures whose block level limit reaches a chunk that was not loaded.
+    private final Set<Structure> unloadedLimits;
+    private final IgnoreBlocks ignoreBlocks;
+    private final Logger logger;
+    private final Map<HeightMap, Integer> highestBlocks = new EnumMap<>(HeightMap.class);
+    // The surface below plants of the center column, shared by every structure. (Keyed by the starting Y value).
+    private final Map<Integer, Integer> surfaces = new HashMap<>();
+    // The area covered by the snapshots that the block level limits reach. (minX, minZ, maxX, maxZ).
+    private final int[] flatnessArea;
+    private FlatnessMap flatnessMap;
+
+    private SnapshotStructurePicker(World world, int chunkX, int chunkZ, Map<Long, ChunkSnapshot> snapshots,
+                                    List<Structure> structures, Set<Structure> unloadedLimits,
+                                    IgnoreBlocks ignoreBlocks, Logger logger, int[] flatnessArea) {
+        this.world = world;
+        this.chunkX = chunkX;
+        this.chunkZ = chunkZ;
+        this.minHeight = world.getMinHeight();
+        this.maxHeight = world.getMaxHeight();
+        this.snapshots = snapshots;
+        this.structures = structures;
+        this.unloadedLimits = unloadedLimits;
+        this.ignoreBlocks = ignoreBlocks;
+        this.logger = logger;
+        this.flatnessArea = flatnessArea;
+    }
+
+    /**
+     * Capture the snapshots needed to check the structures in a chunk.
+     * <p>This also checks the rules of the structures that only need the column.</p>
+     * <p>This method is to be called on the main Server thread.</p>
+     *
+     * @param chunk        The chunk.
+     * @param snapshot     The snapshot of the chunk, including its height map and biomes.
+     * @param structures   The structures to check, in order of priority.
+     * @param ignoreBlocks The blocks to ignore.
+     * @param logger       The logger to report configuration errors to.
+     * @return The picker for the chunk.
+     */
+    public static SnapshotStructurePicker capture(Chunk chunk, ChunkSnapshot snapshot, List<Structure> structures,
+                                                  IgnoreBlocks ignoreBlocks, Logger logger) {
+        World world = chunk.getWorld();
+        int blockX = chunk.getX() << 4;
+        int blockZ = chunk.getZ() << 4;
+
+        // Check the cheap rules (like the chance) first, so only the structures that pass them are looked at.
+        List<Structure> survivors = new ArrayList<>();
+        Set<Structure> unloadedLimits = new HashSet<>();
+        // Find out how far the block level limits reach from the center of the chunk.
+        int minX = 8, maxX = 8, minZ = 8, maxZ = 8;
+        for (Structure structure : structures) {
+            if (!structure.canSpawnInColumn(world, blockX + 8, blockZ + 8))
+                continue;
+            survivors.add(structure);
+
+            BlockLevelLimit limit = structure.getStructureLimitations().getBlockLevelLimit();
+            if (!limit.isEnabled())
+                continue;
+            int limitMinX = 8 + Math.min(limit.getX1(), limit.getX2());
+            int limitMaxX = 8 + Math.max(limit.getX1(), limit.getX2());
+            int limitMinZ = 8 + Math.min(limit.getZ1(), limit.getZ2());
+            int limitMaxZ = 8 + Math.max(limit.getZ1(), limit.getZ2());
+            if (!areChunksLoaded(world, (blockX + limitMinX) >> 4, (blockZ + limitMinZ) >> 4,
+                    (blockX + limitMaxX) >> 4, (blockZ + limitMaxZ) >> 4)) {
+                unloadedLimits.add(structure);
+                continue;
+            }
+            minX = Math.min(minX, limitMinX);
+            maxX = Math.max(maxX, limitMaxX);
+            minZ = Math.min(minZ, limitMinZ);
+            maxZ = Math.max(maxZ, limitMaxZ);
+        }
+
+        Map<Long, ChunkSnapshot> snapshots = new HashMap<>();
+        snapshots.put(getChunkKey(chunk.getX(), chunk.getZ()), snapshot);
+        for (int x = (blockX + minX) >> 4; x <= (blockX + maxX) >> 4; x++) {
+            for (int z = (blockZ + minZ) >> 4; z <= (blockZ + maxZ) >> 4; z++) {
+                long key = getChunkKey(x, z);
+                if (!snapshots.containsKey(key))
+                    snapshots.put(key, world.getChunkAt(x, z).getChunkSnapshot(true, false, false));
+            }
+        }
+        return new SnapshotStructurePicker(world, chunk.getX(), chunk.getZ(), snapshots, survivors, unloadedLimits,
+                ignoreBlocks, logger, new int[]{blockX + minX, blockZ + minZ, blockX + maxX, blockZ + maxZ});
+    }
+
+    /**
+     * Check if every chunk in an area is loaded.
+     *
+     * @param world The world.
+     * @param minX  The x coordinate of the first chunk.
+     * @param minZ  The z coordinate of the first chunk.
+     * @param maxX  The x coordinate of the last chunk.
+     * @param maxZ  The z coordinate of the last chunk.
+     * @return If every chunk in the area is loaded.
+     */
+    private static boolean areChunksLoaded(World world, int minX, int minZ, int maxX, int maxZ) {
+        for (int x = minX; x <= maxX; x++) {
+            for (int z = minZ; z <= maxZ; z++) {
+                if (!world.isChunkLoaded(x, z))
+                    return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Check every structure against the snapshots.
+     *
+     * <p>This is safe to call off of the main thread.</p>
+     *
+     * @return The structures that passed their checks, in order of priority.
+     */
+    public List<Candidate> evaluate() {
+        List<Candidate> candidates = new ArrayList<>();
+        for (Structure structure : structures) {
+            try {
+                Candidate candidate = evaluate(structure);
+                if (candidate != null)
+                    candidates.add(candidate);
+            } catch (StructureConfigurationException ex) {
+                logger.severe("A configuration error was encountered when attempting to spawn the structure: "
+                        + structure.getName());
+                logger.severe(ex.getMessage());
+                // Stop here, just like the structure picker does.
+                break;
+            } catch (RuntimeException ex) {
+                logger.severe("An error was encountered when checking if the structure " + structure.getName() + " can spawn.");
+                logger.severe(ex.toString());
+                break;
+            }
+        }
+        return candidates;
+    }
+
+    /**
+     * Check if a structure can spawn in the chunk.
+     *
+     * @param structure The structure to check.
+     * @return The structure and the location it would spawn at. (Null if it cannot spawn).
+     */
+    private Candidate evaluate(Structure structure) {
+        StructureYSpawning structureSpawnSettings = structure.getStructureLocation().getSpawnSettings();
+        int x = (chunkX << 4) + 8;
+        int z = (chunkZ << 4) + 8;
+
+        // Get the highest block according to the settings for the structure.
+        int highestY = getHighestBlockY(x, z, structureSpawnSettings.getHeightMap());
+        // If the block is the void, the structure spawns in the void.
+        boolean isVoid = getType(x, highestY, z) == Material.VOID_AIR;
+
+        if (isVoid) {
+            if (!structure.canSpawnAt(world, x, z, null, () -> getBiome((chunkX << 4), 20, (chunkZ << 4))))
+                return null;
+            return new Candidate(structure, new Location(world, x, structureSpawnSettings.getHeight(null), z), true);
+        }
+        if (!structure.canSpawnAt(world, x, z, new Location(world, x, highestY, z), () -> getBiome(x, highestY, z)))
+            return null;
+
+        int y = highestY;
+        Material type = getType(x, y, z);
+
+        // Allows the structures to no longer spawn on plant life.
+        if (structure.getStructureProperties().isIgnoringPlants() && ignoreBlocks.isIgnored(type)) {
+            int surfaceY = getSurfaceY(x, y, z);
+            if (surfaceY != ChunkEvaluationContext.NO_SURFACE) {
+                y = surfaceY;
+                type = getType(x, y, z);
+            }
+        }
+
+        // calculate SpawnY if first is true
+        if (structureSpawnSettings.isCalculateSpawnYFirst()) {
+            y = structureSpawnSettings.getHeight(highestY, heightMap -> getHighestBlockY(x, z, heightMap));
+            type = getType(x, y, z);
+        }
+
+        if (!structure.getStructureLimitations().hasWhitelistBlock(type))
+            return null;
+
+        if (structure.getStructureLimitations().hasBlacklistBlock(type))
+            return null;
+
+        // If it can spawn in water
+        if (!structure.getStructureProperties().canSpawnInWater() && type == Material.WATER)
+            return null;
+
+        // If the structure can spawn in lava
+        if (!structure.getStructureProperties().canSpawnInLavaLakes() && type == Material.LAVA)
+            return null;
+
+        // calculate SpawnY if first is false
+        if (!structureSpawnSettings.isCalculateSpawnYFirst()) {
+            y = structureSpawnSettings.getHeight(highestY, heightMap -> getHighestBlockY(x, z, heightMap));
+        }
+
+        // If the structure is going to be cut off by the world height limit, pick a new structure.
+        if (structure.getStructureLimitations().getWorldHeightRestriction() != -1 &&
+                y > maxHeight - structure.getStructureLimitations().getWorldHeightRestriction())
+            return null;
+
+        // If the structure can follows block level limit.
+        BlockLevelLimit limit = structure.getStructureLimitations().getBlockLevelLimit();
+        if (limit.isEnabled()) {
+            // The ground the limit reaches was not loaded, so it cannot be checked.
+            if (unloadedLimits.contains(structure))
+                return null;
+            // The graded mode compares the surface heights of the ground instead of checking blocks.
+            if (limit.getMode().equalsIgnoreCase("graded")) {
+                if (!getFlatnessMap().passes(limit, x, y, z))
+                    return null;
+            } else if (getFlatnessMap().failsFlatCheck(limit, x, y, z)) {
+                // The surface heights show that the ground is not flat, so the blocks do not need to be checked.
+                return null;
+            } else if (!checkBlockLevelLimit(limit, x, y, z)) {
+                return null;
+            }
+        }
+
+        return new Candidate(structure, new Location(world, x, y, z), false);
+    }
+
+    /**
+     * Check the block level limit of a structure.
+     *
+     * @param limit The block level limit.
+     * @param x     The x coordinate of the structure.
+     * @param y     The y coordinate of the structure.
+     * @param z     The z coordinate of the structure.
+     * @return If the structure passes the block level limit.
+     */
+    private boolean checkBlockLevelLimit(BlockLevelLimit limit, int x, int y, int z) {
+        if (limit.getMode().equalsIgnoreCase("flat")) {
+            for (int currentX = limit.getX1() + x; currentX <= limit.getX2() + x; currentX++) {
+                for (int currentZ = limit.getZ1() + z; currentZ <= limit.getZ2() + z; currentZ++) {
+                    Material top = getType(currentX, y + 1, currentZ);
+                    Material bottom = getType(currentX, y - 1, currentZ);
+                    if (!(top.isAir() || ignoreBlocks.isIgnored(top)))
+                        return false;
+                    if (bottom.isAir())
+                        return false;
+                }
+            }
+        } else if (limit.getMode().equalsIgnoreCase("flat_error")) {
+            int total = 0;
+            int error = 0;
+            for (int currentX = limit.getX1() + x; currentX <= limit.getX2() + x; currentX++) {
+                for (int currentZ = limit.getZ1() + z; currentZ <= limit.getZ2() + z; currentZ++) {
+                    Material top = getType(currentX, y + 1, currentZ);
+                    Material bottom = getType(currentX, y - 1, currentZ);
+                    if (!(top.isAir() || ignoreBlocks.isIgnored(top)))
+                        error++;
+                    if (bottom.isAir())
+                        error++;
+
+                    total += 2;
+                }
+            }
+
+            return ((double) error / total) <= limit.getError();
+        }
+        return true;
+    }
+
+    /**
+     * Get the flatness map of the area that the block level limits reach.
+     *
+     * <p>The map is built the first time it is needed and shared by every structure.</p>
+     *
+     * @return The flatness map.
+     */
+    private FlatnessMap getFlatnessMap() {
+        if (flatnessMap == null) {
+            flatnessMap = FlatnessMap.fromSnapshots((snapshotX, snapshotZ) -> snapshots.get(getChunkKey(snapshotX, snapshotZ)),
+                    ignoreBlocks, minHeight, flatnessArea[0], flatnessArea[1], flatnessArea[2], flatnessArea[3]);
+        }
+        return flatnessMap;
+    }
+
+    /**
+     * Find the first block of a column that is not air or an ignored block, going down from a Y value.
+     *
+     * @param x      The x coordinate of the column.
+     * @param startY The Y value to start at.
+     * @param z      The z coordinate of the column.
+     * @return The Y value of the surface block. ({@link ChunkEvaluationContext#NO_SURFACE} if there is none above Y 4).
+     */
+    private int getSurfaceY(int x, int startY, int z) {
+        return surfaces.computeIfAbsent(startY, start -> {
+            for (int y = start; y >= 4; y--) {
+                Material current = getType(x, y, z);
+                if (!ignoreBlocks.isIgnored(current) && !current.isAir())
+                    return y;
+            }
+            return ChunkEvaluationContext.NO_SURFACE;
+        });
+    }
+
+    /**
+     * Get the Y value of the highest block in the center column of the chunk according to a Height Map.
+     *
+     * <p>The snapshot only stores the blocks, so the Height Map is calculated from them. This is only an
+     * approximation of {@link World#getHighestBlockYAt(int, int, HeightMap)}: the Height Maps are decided from
+     * the material of the blocks (for example, OCEAN_FLOOR uses {@link Material#isSolid()}) instead of the collision
+     * shapes Minecraft uses, so the result can differ for blocks like carpets, snow layers or scaffolding.</p>
+     *
+     * @param x         The x coordinate of the center of the chunk.
+     * @param z         The z coordinate of the center of the chunk.
+     * @param heightMap The Height Map.
+     * @return The Y value of the highest block. (One below the minimum height of the world if the column is empty).
+     */
+    private int getHighestBlockY(int x, int z, HeightMap heightMap) {
+        Integer cached = highestBlocks.get(heightMap);
+        if (cached != null)
+            return cached;
+
+        int highest = getHighestBlockY(getSnapshot(x, z), x & 15, z & 15, heightMap, minHeight, maxHeight);
+        highestBlocks.put(heightMap, highest);
+        return highest;
+    }
+
+    /**
+     * Get the Y value of the highest block of a column in a snapshot according to a Height Map.
+     *
+     * <p>This is the calculation used by the picker, see {@link #getHighestBlockY(int, int, HeightMap)}.</p>
+     *
+     * @param snapshot  The snapshot of the chunk. (Must include the block data).
+     * @param x         The x coordinate of the column inside the chunk. (0 - 15).
+     * @param z         The z coordinate of the column inside the chunk. (0 - 15).
+     * @param heightMap The Height Map.
+     * @param minHeight The minimum height of the world.
+     * @param maxHeight The maximum height of the world.
+     * @return The Y value of the highest block. (One below the minimum height if the column is empty).
+     */
+    public static int getHighestBlockY(ChunkSnapshot snapshot, int x, int z, HeightMap heightMap, int minHeight, int maxHeight) {
+        for (int y = maxHeight - 1; y >= minHeight; y--) {
+            if (isHeightMapBlock(snapshot.getBlockData(x, y, z), heightMap))
+                return y;
+        }
+        return minHeight - 1;
+    }
+
+    /**
+     * Check if a block counts for a Height Map.
+     *
+     * @param data      The block.
+     * @param heightMap The Height Map.
+     * @return If the block counts for the Height Map.
+     */
+    private static boolean isHeightMapBlock(BlockData data, HeightMap heightMap) {
+        Material type = data.getMaterial();
+        return switch (heightMap) {
+            case WORLD_SURFACE, WORLD_SURFACE_WG -> !type.isAir();
+            case OCEAN_FLOOR, OCEAN_FLOOR_WG -> type.isSolid();
+            case MOTION_BLOCKING -> type.isSolid() || hasFluid(data);
+            case MOTION_BLOCKING_NO_LEAVES -> (type.isSolid() || hasFluid(data)) && !Tag.LEAVES.isTagged(type);
+        };
+    }
+
+    /**
+     * Check if a block contains a fluid.
+     *
+     * @param data The block.
+     * @return If the block contains a fluid.
+     */
+    private static boolean hasFluid(BlockData data) {
+        return switch (data.getMaterial()) {
+            case WATER, LAVA, BUBBLE_COLUMN, KELP, KELP_PLANT, SEAGRASS, TALL_SEAGRASS -> true;
+            default -> data instanceof Waterlogged waterlogged && waterlogged.isWaterlogged();
+        };
+    }
+
+    /**
+     * Get the type of a block from the snapshots.
+     *
+     * @param x The x coordinate of the block.
+     * @param y The y coordinate of the block.
+     * @param z The z coordinate of the block.
+     * @return The type of the block. (VOID_AIR if the block is outside the world height).
+     */
+    private Material getType(int x, int y, int z) {
+        if (y < minHeight || y >= maxHeight)
+            return Material.VOID_AIR;
+        return getSnapshot(x, z).getBlockType(x & 15, y, z & 15);
+    }
+
+    /**
+     * Get the biome of a block in the chunk.
+     *
+     * @param x The x coordinate of the block.
+     * @param y The y coordinate of the block.
+     * @param z The z coordinate of the block.
+     * @return The biome of the block.
+     */
+    private Biome getBiome(int x, int y, int z) {
+        return getSnapshot(x, z).getBiome(x & 15, Math.max(minHeight, Math.min(maxHeight - 1, y)), z & 15);
+    }
+
+    /**
+     * Get the snapshot of the chunk that contains a column.
+     *
+     * @param x The x coordinate of the column.
+     * @param z The z coordinate of the column.
+     * @return The snapshot of the chunk.
+     */
+    private ChunkSnapshot getSnapshot(int x, int z) {
+        ChunkSnapshot snapshot = snapshots.get(getChunkKey(x >> 4, z >> 4));
+        if (snapshot == null)
+            throw new IllegalStateException("No snapshot was captured for the chunk at " + (x >> 4) + ", " + (z >> 4) + ".");
+        return snapshot;
+    }
+
+    /**
+     * Pack the coordinates of a chunk into a single key.
+     *
+     * @param chunkX The x coordinate of the chunk.
+     * @param chunkZ The z coordinate of the chunk.
+     * @return The key of the chunk.
+     */
+    private static long getChunkKey(int chunkX, int chunkZ) {
+        return ((long) chunkX << 32) | (chunkZ & 0xFFFFFFFFL);
+    }
+
+    /**
+     * A structure that passed its checks.
+     *
+     * @param structure The structure.
+     * @param location  The location the structure would spawn at.
+     * @param inVoid    If the structure would spawn in the void.
+     */
+    public record Candidate(Structure structure, Location location, boolean inVoid) {
+    }
+}
@@ -0,0 +1,162 @@
+package com.ryandw11.structure.utils;
+
+import org.bukkit.Location;
+
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A uniform grid of locations, used to quickly find out if anything is near a location.
+ *
+ * <p>Every world is split up into square cells on the X and Z axis. A query only has to look at the cells that
+ * overlap the search radius instead of every location in the grid. Distances are compared squared, so no square
+ * roots are calculated.</p>
+ *
+ * <p>This class is thread safe. Inserts, removals and queries can be done at the same time without a global lock.</p>
+ *
+ * @param <T> The type of value stored at a location.
+ */
+public class SpatialGrid<T> {
+
+    private final int cellShift;
+    private final Map<UUID, Map<Long, Set<Entry<T>>>> worlds = new ConcurrentHashMap<>();
+
+    /**
+     * Construct a spatial grid.
+     *
+     * @param cellShift The size of a cell as a power of two. (Ex: 9 for cells of 512 by 512 blocks).
+     */
+    public SpatialGrid(int cellShift) {
+        this.cellShift = cellShift;
+    }
+
+    /**
+     * Add a value to the grid.
+     *
+     * @param location The location of the value.
+     * @param value    The value.
+     */
+    public void insert(Location location, T value) {
+        UUID world = Objects.requireNonNull(location.getWorld()).getUID();
+        long cell = getCellKey(location.getBlockX() >> cellShift, location.getBlockZ() >> cellShift);
+        Entry<T> entry = new Entry<>(location.getX(), location.getY(), location.getZ(), value);
+        // The cell is updated atomically, so it cannot be dropped by a removal while the value is being added.
+        worlds.computeIfAbsent(world, uuid -> new ConcurrentHashMap<>()).compute(cell, (key, entries) -> {
+            if (entries == null)
+                entries = ConcurrentHashMap.newKeySet();
+            entries.add(entry);
+            return entries;
+        });
+    }
+
+    /**
+     * Remove a value from the grid.
+     *
+     * @param location The location the value was added at.
+     * @param value    The value to remove.
+     * @return If the value was removed.
+     */
+    public boolean remove(Location location, T value) {
+        Map<Long, Set<Entry<T>>> cells = worlds.get(Objects.requireNonNull(location.getWorld()).getUID());
+        if (cells == null)
+            return false;
+        boolean[] removed = new boolean[1];
+        // Empty cells are dropped so the grid does not keep growing.
+        cells.computeIfPresent(getCellKey(location.getBlockX() >> cellShift, location.getBlockZ() >> cellShift), (key, entries) -> {
+            removed[0] = entries.removeIf(entry -> entry.value() == value);
+            return entries.isEmpty() ? null : entries;
+        });
+        return removed[0];
+    }
+
+    /**
+     * Check if any value in the grid is within a radius of a location.
+     *
+     * @param location The location to check.
+     * @param radius   The radius in blocks. (A value exactly on the radius counts as within it).
+     * @return If any value is within the radius.
+     */
+    public boolean hasWithin(Location location, double radius) {
+        if (radius < 0)
+            return false;
+        Map<Long, Set<Entry<T>>> cells = worlds.get(Objects.requireNonNull(location.getWorld()).getUID());
+        if (cells == null || cells.isEmpty())
+            return false;
+
+        double radiusSquared = radius * radius;
+        int minCellX = (int) Math.floor(location.getX() - radius) >> cellShift;
+        int maxCellX = (int) Math.floor(location.getX() + radius) >> cellShift;
+        int minCellZ = (int) Math.floor(location.getZ() - radius) >> cellShift;
+        int maxCellZ = (int) Math.floor(location.getZ() + radius) >> cellShift;
+
+        // With a huge radius there are more cells to check than cells that hold something.
+        if ((long) (maxCellX - minCellX + 1) * (maxCellZ - minCellZ + 1) > cells.size()) {
+            for (Set<Entry<T>> cell : cells.values()) {
+                if (cellHasWithin(cell, location, radiusSquared))
+                    return true;
+            }
+            return false;
+        }
+
+        for (int cellX = minCellX; cellX <= maxCellX; cellX++) {
+            for (int cellZ = minCellZ; cellZ <= maxCellZ; cellZ++) {
+                Set<Entry<T>> cell = cells.get(getCellKey(cellX, cellZ));
+                if (cell != null && cellHasWithin(cell, location, radiusSquared))
+                    return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Check if any value in a cell is within a radius of a location.
+     *
+     * @param cell          The cell.
+     * @param location      The location to check.
+     * @param radiusSquared The squared radius.
+     * @return If any value in the cell is within the radius.
+     */
+    private boolean cellHasWithin(Set<Entry<T>> cell, Location location, double radiusSquared) {
+        for (Entry<T> entry : cell) {
+            double dx = entry.x() - location.getX();
+            double dy = entry.y() - location.getY();
+            double dz = entry.z() - location.getZ();
+            if (dx * dx + dy * dy + dz * dz <= radiusSquared)
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * Remove every value from the grid.
+     */
+    public void clear() {
+        worlds.clear();
+    }
+
+    /**
+     * Pack the coordinates of a cell into a single key.
+     *
+     * @param cellX The x coordinate of the cell.
+     * @param cellZ The z coordinate of the cell.
+     * @return The key of the cell.
+     */
+    private static long getCellKey(int cellX, int cellZ) {
+        return ((long) cellX << 32) | (cellZ & 0xFFFFFFFFL);
+    }
+
+    /**
+     * A value in the grid.
+     *
+     * @param x     The x coordinate of the value.
+     * @param y     The y coordinate of the value.
+     * @param z     The z coordinate of the value.
+     * @param value The value.
+     * @param <T>   The type of the value.
+     */
+    private record Entry<T>(double x, double y, double z, T value) {
+    }
+}
@@ -9,14 +9,13 @@ import com.ryandw11.structure.structure.Structure;
 import com.ryandw11.structure.structure.StructureHandler;
 import com.ryandw11.structure.structure.properties.BlockLevelLimit;
 import com.ryandw11.structure.structure.properties.StructureYSpawning;
-import com.sk89q.worldedit.WorldEditException;
 import org.bukkit.Chunk;
 import org.bukkit.Material;
 import org.bukkit.block.Block;
 import org.bukkit.scheduler.BukkitRunnable;
 import org.jetbrains.annotations.Nullable;
 
-import java.io.IOException;
+import java.util.List;
 
 /**
  * This class prevents the server from crashing when it attempts to pick a
@@ -24,6 +23,10 @@ import java.io.IOException;
  * <p>
  * The server will still lag a bit thanks to the nature of 1.14.
  * </p>
+ * <p>
+ * One structure is checked at a time, either by the {@link com.ryandw11.structure.threading.SpawnQueue}
+ * or every 10 ticks when scheduled as a task.
+ * </p>
  *
  * @author Ryandw11
  */
@@ -34,14 +37,38 @@ public class StructurePicker extends BukkitRunnable {
     private int currentStructure;
     private final StructureHandler structureHandler;
     private final IgnoreBlocks ignoreBlocks;
+    // The structures that can spawn in the world and biomes of the chunk.
+    private final List<Structure> structures;
+    // The terrain of the chunk, shared by every structure that is checked.
+    private final ChunkEvaluationContext context;
 
     private final Block bl;
     private final Chunk ch;
     // Variable that contains the structureBlock of the current structure being processed.
     private Block structureBlock;
+    // Ran once this picker is done with the chunk when it is scheduled as a task.
+    private final Runnable onFinished;
+    private boolean done;
+    private Structure pickedStructure;
+    private Block pickedBlock;
 
     public StructurePicker(@Nullable Block bl, Chunk ch, CustomStructures plugin) {
+        this(bl, ch, plugin, () -> {
+        });
+    }
+
+    /**
+     * Construct a structure picker.
+     *
+     * @param bl         The block to check.
+     * @param ch         The chunk to spawn a structure in.
+     * @param plugin     The instance of the plugin.
+     * @param onFinished Ran on the main thread once no structure is picked or the picked structure is fully spawned.
+     *                   (Only when this picker is scheduled as a task).
+     */
+    public StructurePicker(@Nullable Block bl, Chunk ch, CustomStructures plugin, Runnable onFinished) {
         this.plugin = plugin;
+        this.onFinished = onFinished;
         currentStructure = -1;
         this.bl = bl;
         this.ch = ch;
@@ -53,112 +80,145 @@ public class StructurePicker extends BukkitRunnable {
             plugin.getLogger().warning("If you are using a fork of Spigot, this likely means that the fork does not adhere to the API standard properly.");
             throw new RuntimeException("Plugin Not Initialized.");
         }
+        this.context = new ChunkEvaluationContext(ch, ignoreBlocks);
+        // Sample the biomes the same way the structures are checked below.
+        this.structures = structureHandler.getStructureIndex().getCandidates(ch.getWorld(), heightMap -> {
+            Block block = context.getHighestBlock(heightMap);
+            if (context.getType(block.getX(), block.getY(), block.getZ()) == Material.VOID_AIR)
+                return ch.getBlock(0, 20, 0).getBiome();
+            return block.getBiome();
+        });
     }
 
     @Override
     public void run() {
+        if (!evaluateNext())
+            return;
+        this.cancel();
+        if (pickedStructure != null) {
+            spawn(onFinished);
+        } else {
+            onFinished.run();
+        }
+    }
+
+    /**
+     * Check if the next structure can spawn in the chunk.
+     *
+     * <p>Only one structure is checked per call. Once a structure passes all of its checks, it is picked and
+     * added to the list of spawned structures, but it is not pasted until {@link #spawn(Runnable)} is called.</p>
+     * <p>This method is to be called on the main Server thread.</p>
+     *
+     * @return If the picker is done with the chunk. (Either a structure was picked or none of them can spawn).
+     */
+    public boolean evaluateNext() {
+        if (done)
+            return true;
         try {
             currentStructure++;
-            if (currentStructure >= structureHandler.getStructures().size()) {
-                this.cancel();
-                return;
+            if (currentStructure >= structures.size()) {
+                done = true;
+                return true;
             }
 
-            Structure structure = structureHandler.getStructure(currentStructure);
+            Structure structure = structures.get(currentStructure);
             StructureYSpawning structureSpawnSettings = structure.getStructureLocation().getSpawnSettings();
 
+            // Check the cheap rules (like the chance) before looking for the highest block.
+            if (!structure.canSpawnInColumn(ch.getWorld(), bl.getX(), bl.getZ()))
+                return false;
 
             // Get the highest block according to the settings for the structure.
-            structureBlock = structureSpawnSettings.getHighestBlock(bl.getLocation());
+            structureBlock = context.getHighestBlock(structureSpawnSettings.getHeightMap());
 
             // If the block is the void, then set it to null to maintain compatibility.
-            if (structureBlock.getType() == Material.VOID_AIR) {
+            if (context.getType(structureBlock.getX(), structureBlock.getY(), structureBlock.getZ()) == Material.VOID_AIR) {
                 structureBlock = null;
             }
 
-            // Calculate the chance.
-            if (!structure.canSpawn(structureBlock, ch))
-                return;
+            Block block = structureBlock;
+            if (!structure.canSpawnAt(ch.getWorld(), bl.getX(), bl.getZ(), block == null ? null : block.getLocation(),
+                    () -> block == null ? ch.getBlock(0, 20, 0).getBiome() : block.getBiome()))
+                return false;
 
             // If the block is null, Skip the other steps and spawn.
             if (structureBlock == null) {
                 structureBlock = ch.getBlock(8, structureSpawnSettings.getHeight(null), 8);
-                // Now to finally paste the schematic
-                SchematicHandler sh = new SchematicHandler();
-                plugin.getServer().getScheduler().scheduleSyncDelayedTask(plugin, () -> {
-                    // It is assumed at this point that the structure has been spawned.
-                    // Add it to the list of spawned structures.
-                    plugin.getStructureHandler().putSpawnedStructure(structureBlock.getLocation(),
-                            structure);
-                    try {
-                        sh.schemHandle(structureBlock.getLocation(),
-                                structure.getSchematic(),
-                                structure.getStructureProperties().canPlaceAir(),
-                                structure);
-                    } catch (IOException | WorldEditException e) {
-                        e.printStackTrace();
-                    }
-                });
-
-                // Cancel the process and return.
-                this.cancel();
-                return;
+                // Now to finally pick the structure
+                pick(structure, structureBlock);
+                return true;
             }
 
             // Allows the structures to no longer spawn on plant life.
-            if (structure.getStructureProperties().isIgnoringPlants() && ignoreBlocks.getBlocks().contains(structureBlock.getType())) {
-                for (int i = structureBlock.getY(); i >= 4; i--) {
-                    if (!ignoreBlocks.getBlocks().contains(ch.getBlock(8, i, 8).getType()) && !ch.getBlock(8, i, 8).getType().isAir()) {
-                        structureBlock = ch.getBlock(8, i, 8);
-                        break;
-                    }
-                }
+            if (structure.getStructureProperties().isIgnoringPlants()
+                    && ignoreBlocks.isIgnored(context.getType(structureBlock.getX(), structureBlock.getY(), structureBlock.getZ()))) {
+                int surfaceY = context.getSurfaceY(structureBlock.getY());
+                if (surfaceY != ChunkEvaluationContext.NO_SURFACE)
+                    structureBlock = ch.getBlock(8, surfaceY, 8);
             }
 
+            // The SpawnY is calculated from the highest block of the column.
+            int highestY = context.getHighestBlockY(structureSpawnSettings.getHeightMap());
+
             // calculate SpawnY if first is true
             if (structureSpawnSettings.isCalculateSpawnYFirst()) {
-                structureBlock = ch.getBlock(8, structureSpawnSettings.getHeight(structureBlock.getLocation()), 8);
+                structureBlock = ch.getBlock(8, structureSpawnSettings.getHeight(highestY, context::getHighestBlockY), 8);
             }
 
-            if (!structure.getStructureLimitations().hasWhitelistBlock(structureBlock))
-                return;
+            Material type = context.getType(structureBlock.getX(), structureBlock.getY(), structureBlock.getZ());
+            if (!structure.getStructureLimitations().hasWhitelistBlock(type))
+                return false;
 
-            if (structure.getStructureLimitations().hasBlacklistBlock(structureBlock))
-                return;
+            if (structure.getStructureLimitations().hasBlacklistBlock(type))
+                return false;
 
             // If it can spawn in water
             if (!structure.getStructureProperties().canSpawnInWater()) {
-                if (structureBlock.getType() == Material.WATER) return;
+                if (type == Material.WATER) return false;
             }
 
             // If the structure can spawn in lava
             if (!structure.getStructureProperties().canSpawnInLavaLakes()) {
-                if (structureBlock.getType() == Material.LAVA) return;
+                if (type == Material.LAVA) return false;
             }
 
             // calculate SpawnY if first is false
             if (!structureSpawnSettings.isCalculateSpawnYFirst()) {
-                structureBlock = ch.getBlock(8, structureSpawnSettings.getHeight(structureBlock.getLocation()), 8);
+                structureBlock = ch.getBlock(8, structureSpawnSettings.getHeight(highestY, context::getHighestBlockY), 8);
             }
 
             // If the structure is going to be cut off by the world height limit, pick a new structure.
             if(structure.getStructureLimitations().getWorldHeightRestriction() != -1 &&
                     structureBlock.getLocation().getY() > ch.getWorld().getMaxHeight() - structure.getStructureLimitations().getWorldHeightRestriction())
-                return;
+                return false;
 
             // If the structure can follows block level limit.
             // This only triggers if it spawns on the top.
             if (structure.getStructureLimitations().getBlockLevelLimit().isEnabled()) {
                 BlockLevelLimit limit = structure.getStructureLimitations().getBlockLevelLimit();
-                if (limit.getMode().equalsIgnoreCase("flat")) {
+                // Null if the ground reaches a chunk that is not loaded.
+                FlatnessMap flatnessMap = context.getFlatnessMap(limit.getX1() + structureBlock.getX(),
+                        limit.getZ1() + structureBlock.getZ(), limit.getX2() + structureBlock.getX(),
+                        limit.getZ2() + structureBlock.getZ());
+                // The graded mode compares the surface heights of the ground instead of checking blocks.
+                if (limit.getMode().equalsIgnoreCase("graded")) {
+                    if (flatnessMap == null)
+                        return false;
+                    if (!flatnessMap.passes(limit, structureBlock.getX(), structureBlock.getY(), structureBlock.getZ()))
+                        return false;
+                } else if (flatnessMap != null
+                        && flatnessMap.failsFlatCheck(limit, structureBlock.getX(), structureBlock.getY(), structureBlock.getZ())) {
+                    // The surface heights show that the ground is not flat, so the blocks do not need to be checked.
+                    return false;
+                } else if (limit.getMode().equalsIgnoreCase("flat")) {
                     for (int x = limit.getX1() + structureBlock.getX(); x <= limit.getX2() + structureBlock.getX(); x++) {
                         for (int z = limit.getZ1() + structureBlock.getZ(); z <= limit.getZ2() + structureBlock.getZ(); z++) {
-                            Block top = ch.getWorld().getBlockAt(x, structureBlock.getY() + 1, z);
-                            Block bottom = ch.getWorld().getBlockAt(x, structureBlock.getY() - 1, z);
-                            if (!(top.getType().isAir() || ignoreBlocks.getBlocks().contains(top.getType())))
-                                return;
-                            if (bottom.getType().isAir())
-                                return;
+                            Material top = context.getType(x, structureBlock.getY() + 1, z);
+                            Material bottom = context.getType(x, structureBlock.getY() - 1, z);
+                            if (!(top.isAir() || ignoreBlocks.isIgnored(top)))
+                                return false;
+                            if (bottom.isAir())
+                                return false;
                         }
                     }
                 } else if (limit.getMode().equalsIgnoreCase("flat_error")) {
@@ -166,11 +226,11 @@ public class StructurePicker extends BukkitRunnable {
                     int error = 0;
                     for (int x = limit.getX1() + structureBlock.getX(); x <= limit.getX2() + structureBlock.getX(); x++) {
                         for (int z = limit.getZ1() + structureBlock.getZ(); z <= limit.getZ2() + structureBlock.getZ(); z++) {
-                            Block top = ch.getWorld().getBlockAt(x, structureBlock.getY() + 1, z);
-                            Block bottom = ch.getWorld().getBlockAt(x, structureBlock.getY() - 1, z);
-                            if (!(top.getType().isAir() || ignoreBlocks.getBlocks().contains(top.getType())))
+                            Material top = context.getType(x, structureBlock.getY() + 1, z);
+                            Material bottom = context.getType(x, structureBlock.getY() - 1, z);
+                            if (!(top.isAir() || ignoreBlocks.isIgnored(top)))
                                 error++;
-                            if (bottom.getType().isAir())
+                            if (bottom.isAir())
                                 error++;
 
                             total += 2;
@@ -178,60 +238,123 @@ public class StructurePicker extends BukkitRunnable {
                     }
 
                     if (((double) error / total) > limit.getError())
-                        return;
+                        return false;
                 }
             }
 
-            for (StructureSection section : structure.getStructureSections()) {
-                // Check if the structure can spawn according to the section.
-                // If an error occurs, report it to the user.
-                try {
-                    if (!section.checkStructureConditions(structure, structureBlock, ch)) return;
-                } catch (Exception ex) {
-                    plugin.getLogger().severe(String.format("[CS Addon] An error has occurred when attempting to spawn " +
-                            "the structure %s with the custom property %s!", structure.getName(), section.getName()));
-                    plugin.getLogger().severe("This is not a CustomStructures error! Please report " +
-                            "this to the developer of the addon.");
-                    if (plugin.isDebug()) {
-                        ex.printStackTrace();
-                    } else {
-                        plugin.getLogger().severe("Enable debug mode to see the stack trace.");
-                    }
-                    return;
-                }
-            }
+            if (!checkStructureSections(plugin, structure, structureBlock, ch))
+                return false;
 
-            // Now to finally paste the schematic
-            SchematicHandler sh = new SchematicHandler();
-            plugin.getServer().getScheduler().scheduleSyncDelayedTask(plugin, () -> {
-                // It is assumed at this point that the structure has been spawned.
-                // Add it to the list of spawned structures.
-                plugin.getStructureHandler().putSpawnedStructure(structureBlock.getLocation(),
-                        structure);
-                try {
-                    sh.schemHandle(structureBlock.getLocation(),
-                            structure.getSchematic(),
-                            structure.getStructureProperties().canPlaceAir(),
-                            structure);
-                } catch (IOException | WorldEditException e) {
-                    e.printStackTrace();
-                }
-            });
-
-            this.cancel();// return after pasting
+            // Now to finally pick the structure
+            pick(structure, structureBlock);
+            return true;
         } catch (StructureConfigurationException ex) {
-            this.cancel();
+            done = true;
             plugin.getLogger().severe("A configuration error was encountered when attempting to spawn the structure: "
-                    + structureHandler.getStructure(currentStructure).getName());
+                    + structures.get(currentStructure).getName());
             plugin.getLogger().severe(ex.getMessage());
         } catch (Exception ex) {
-            this.cancel();
+            done = true;
             plugin.getLogger().severe("An error was encountered during the schematic pasting section.");
             plugin.getLogger().severe("The task was stopped for the safety of your server!");
             plugin.getLogger().severe("For more information enable debug mode.");
             if (plugin.isDebug())
                 ex.printStackTrace();
         }
+        return true;
+    }
+
+    /**
+     * Pick a structure that passed all of its checks.
+     *
+     * <p>The structure is added to the list of spawned structures right away so other chunks keep their distance.</p>
+     *
+     * @param structure The structure to spawn.
+     * @param block     The block to spawn the structure at.
+     */
+    private void pick(Structure structure, Block block) {
+        // It is assumed at this point that the structure has been spawned.
+        // Add it to the list of spawned structures.
+        plugin.getStructureHandler().putSpawnedStructure(block.getLocation(), structure);
+        pickedStructure = structure;
+        pickedBlock = block;
+        done = true;
+    }
+
+    /**
+     * Spawn the picked structure.
+     *
+     * <p>The schematic is read and decoded on a worker thread, only the paste itself happens on the
+     * main thread.</p>
+     * <p>This method is to be called on the main Server thread.</p>
+     *
+     * @param onSpawned Ran on the main thread once the structure is fully spawned or failed to spawn.
+     */
+    public void spawn(Runnable onSpawned) {
+        if (pickedStructure == null) {
+            onSpawned.run();
+            return;
+        }
+        SchematicHandler sh = new SchematicHandler();
+        sh.schemHandleAsync(pickedBlock.getLocation(),
+                pickedStructure.getSchematic(),
+                pickedStructure.getStructureProperties().canPlaceAir(),
+                pickedStructure,
+                onSpawned);
+    }
+
+    /**
+     * Check if a structure can spawn according to its addon structure sections.
+     *
+     * <p>If an addon throws an error, it is reported to the user and the structure cannot spawn.</p>
+     * <p>This method is to be called on the main Server thread.</p>
+     *
+     * @param plugin    The instance of the plugin.
+     * @param structure The structure to check.
+     * @param block     The block the structure would spawn at.
+     * @param chunk     The chunk the structure would spawn in.
+     * @return If the structure can spawn according to its structure sections.
+     */
+    public static boolean checkStructureSections(CustomStructures plugin, Structure structure, Block block, Chunk chunk) {
+        for (StructureSection section : structure.getStructureSections()) {
+            // Check if the structure can spawn according to the section.
+            // If an error occurs, report it to the user.
+            try {
+                if (!section.checkStructureConditions(structure, block, chunk)) return false;
+            } catch (Exception ex) {
+                plugin.getLogger().severe(String.format("[CS Addon] An error has occurred when attempting to spawn " +
+                        "the structure %s with the custom property %s!", structure.getName(), section.getName()));
+                plugin.getLogger().severe("This is not a CustomStructures error! Please report " +
+                        "this to the developer of the addon.");
+                if (plugin.isDebug()) {
+                    ex.printStackTrace();
+                } else {
+                    plugin.getLogger().severe("Enable debug mode to see the stack trace.");
+                }
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Get the block the picked structure spawns at.
+     *
+     * @return The block the picked structure spawns at. (Null if no structure was picked).
+     */
+    @Nullable
+    public Block getPickedBlock() {
+        return pickedBlock;
+    }
+
+    /**
+     * Get the structure that was picked for the chunk.
+     *
+     * @return The picked structure. (Null if no structure was picked).
+     */
+    @Nullable
+    public Structure getPickedStructure() {
+        return pickedStructure;
     }
 
 }